@@ -0,0 +1,57 @@
+package com.nhn.flow.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 진입 토큰 발급/검증 벤치마크 (이전 SHA-256 hex 토큰 생성과 비교)
+ * 실행: ./gradlew jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AdmissionTokenBenchmark {
+
+    private AdmissionTokenService tokenService;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        tokenService = new AdmissionTokenService("previous:benchmark-previous-secret-0123456789,current:benchmark-current-secret-0123456789",
+            "current", 300, Clock.systemUTC());
+        token = tokenService.issue("default", 100L);
+    }
+
+    @Benchmark
+    public String issue() {
+        return tokenService.issue("default", 100L);
+    }
+
+    @Benchmark
+    public boolean verify() {
+        return tokenService.verify("default", 100L, token);
+    }
+
+    // 이전 방식: 요청마다 MessageDigest 생성 + 바이트마다 String.format
+    @Benchmark
+    public String legacySha256() throws NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        byte[] encodedHash = digest.digest("user-queue-%s-%d".formatted("default", 100L).getBytes(StandardCharsets.UTF_8));
+        StringBuilder builder = new StringBuilder();
+        for (byte hash : encodedHash) {
+            builder.append(String.format("%02x", hash));
+        }
+        return builder.toString();
+    }
+}
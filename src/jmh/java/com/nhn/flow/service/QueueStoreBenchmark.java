@@ -0,0 +1,96 @@
+package com.nhn.flow.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 대기열 저장소 벤치마크 (인메모리 순서 통계 구조 vs Redis sorted set)
+ * Redis 쪽은 저장소 스크립트가 내부에서 사용하는 ZRANK / ZADD + ZPOPMIN 왕복을 그대로 잰다.
+ * 실행: ./gradlew jmh (로컬 Redis 필요, -Dbenchmark.redis.port=6379)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class QueueStoreBenchmark {
+
+    private static final String QUEUE = "benchmark";
+    private static final String REDIS_KEY = "users:queue:benchmark:wait";
+
+    @Param({"10000", "100000"})
+    private int waiting;
+
+    private MemoryQueueStore memoryStore;
+    private LettuceConnectionFactory connectionFactory;
+    private ReactiveRedisTemplate<String, String> redisTemplate;
+    private long nextUserId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        memoryStore = new MemoryQueueStore(new PriorityTiers("vip:3,normal:1"));
+        connectionFactory = new LettuceConnectionFactory("localhost", Integer.getInteger("benchmark.redis.port", 6379));
+        connectionFactory.afterPropertiesSet();
+        redisTemplate = new ReactiveRedisTemplate<>(connectionFactory, RedisSerializationContext.string());
+        redisTemplate.delete(REDIS_KEY).block();
+
+        List<ZSetOperations.TypedTuple<String>> tuples = new ArrayList<>(waiting);
+        for (long userId = 1; userId <= waiting; userId++) {
+            memoryStore.register(QUEUE, userId, 1, 0).block();
+            tuples.add(ZSetOperations.TypedTuple.of(String.valueOf(userId), (double) userId));
+        }
+        redisTemplate.opsForZSet().addAll(REDIS_KEY, tuples).block();
+        nextUserId = waiting + 1L;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        redisTemplate.delete(REDIS_KEY).block();
+        connectionFactory.destroy();
+    }
+
+    @Benchmark
+    public Long memoryRank() {
+        return memoryStore.rank(QUEUE, randomWaitingUser()).block();
+    }
+
+    @Benchmark
+    public Long redisRank() {
+        return redisTemplate.opsForZSet().rank(REDIS_KEY, String.valueOf(randomWaitingUser())).block();
+    }
+
+    // 1명 등록 + 1명 진입 허용 (대기 인원 유지)
+    @Benchmark
+    public List<Long> memoryRegisterAndAdmit() {
+        memoryStore.register(QUEUE, nextUserId++, 1, 0).block();
+        return memoryStore.admit(QUEUE, 1L, "").block();
+    }
+
+    @Benchmark
+    public Long redisRegisterAndAdmit() {
+        long userId = nextUserId++;
+        return redisTemplate.opsForZSet().add(REDIS_KEY, String.valueOf(userId), (double) userId)
+            .then(redisTemplate.opsForZSet().popMin(REDIS_KEY).map(tuple -> Long.parseLong(tuple.getValue())))
+            .block();
+    }
+
+    // 등록 / 진입 허용 벤치마크가 앞쪽 사용자를 꺼내므로 최근 등록된 범위에서 고른다.
+    private long randomWaitingUser() {
+        return nextUserId - 1 - ThreadLocalRandom.current().nextInt(waiting);
+    }
+}
@@ -1,15 +1,18 @@
 package com.nhn.flow.controller;
 
-import com.nhn.flow.service.QueueNotificationService;
+import com.nhn.flow.dto.NotificationMetricsResponse;
+import com.nhn.flow.dto.QueueEvent;
+import com.nhn.flow.dto.WaitingRoomEvent;
+import com.nhn.flow.service.QueueNotificationHub;
+import com.nhn.flow.service.UserQueueService;
+import com.nhn.flow.service.WaitingRoomEventService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.redis.connection.ReactiveSubscription;
-import org.springframework.data.redis.core.ReactiveRedisTemplate;
-import org.springframework.data.redis.listener.ChannelTopic;
 import org.springframework.http.MediaType;
 import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.time.Duration;
 
@@ -22,95 +25,118 @@ import java.time.Duration;
 @RequestMapping("/api/v1/queue/notifications")
 public class QueueNotificationController {
 
-    private final QueueNotificationService queueNotificationService;
-    private final ReactiveRedisTemplate<String, String> reactiveRedisTemplate;
+    private static final String LAST_EVENT_ID_HEADER = "Last-Event-ID";
+    // 대기실 연결이 끊겼을 때 브라우저의 재연결 간격
+    private static final Duration WAITING_ROOM_RETRY = Duration.ofSeconds(3);
+
+    private final QueueNotificationHub queueNotificationHub;
+    private final WaitingRoomEventService waitingRoomEventService;
+    private final UserQueueService userQueueService;
 
     /**
      * 대기열 실시간 알림 구독 (SSE)
+     * 재연결 시 Last-Event-ID 헤더를 보내면 그 이후 이벤트를 재전송한다.
      * 사용법: curl -N http://localhost:9010/api/v1/queue/notifications/stream?queue=default
      */
     @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     public Flux<ServerSentEvent<String>> streamNotifications(
-            @RequestParam(value = "queue", defaultValue = "default") String queue) {
-        
-        log.info("[SSE] 알림 스트림 시작 - queue: {}", queue);
+            @RequestParam(value = "queue", defaultValue = "default") String queue,
+            @RequestHeader(value = LAST_EVENT_ID_HEADER, required = false) String lastEventId) {
         
-        ChannelTopic topic = queueNotificationService.getChannelTopic(queue);
+        log.info("[SSE] 알림 스트림 시작 - queue: {}, lastEventId: {}", queue, lastEventId);
         
-        return reactiveRedisTemplate.listenTo(topic)
-            .map(ReactiveSubscription.Message::getMessage)
-            .map(message -> {
-                // 메시지 파싱: userId:event:data
-                String[] parts = message.split(":", 3);
-                Long userId = Long.parseLong(parts[0]);
-                String event = parts[1];
-                String data = parts.length > 2 ? parts[2] : "";
-                
-                String eventData = String.format("{\"queue\":\"%s\",\"userId\":%d,\"event\":\"%s\",\"data\":\"%s\"}",
-                    queue, userId, event, data);
-                
-                log.debug("[SSE] 이벤트 전송 - queue: {}, userId: {}, event: {}", queue, userId, event);
-                
-                return ServerSentEvent.<String>builder()
-                    .event(event)
-                    .data(eventData)
-                    .build();
+        return queueNotificationHub.subscribeQueue(queue, lastEventId)
+            .map(event -> {
+                log.debug("[SSE] 이벤트 전송 - queue: {}, userId: {}, event: {}", queue, event.userId(), event.event());
+                return toServerSentEvent(event);
             })
-            // Heartbeat: 30초마다 keep-alive 전송
-            .mergeWith(
-                Flux.interval(Duration.ofSeconds(30))
-                    .map(seq -> ServerSentEvent.<String>builder()
-                        .comment("heartbeat")
-                        .build())
-            )
+            // Heartbeat: 30초마다 keep-alive 전송 (공유 타이머)
+            .transform(events -> withBackground(events, heartbeat()))
             .doOnCancel(() -> log.info("[SSE] 알림 스트림 종료 - queue: {}", queue))
             .doOnError(e -> log.error("[SSE] 알림 스트림 에러 - queue: {}, error: {}", queue, e.getMessage()));
     }
 
     /**
-     * 특정 사용자 알림 구독 (필터링)
+     * 특정 사용자 알림 구독 (허브가 해당 사용자 이벤트만 라우팅, Last-Event-ID 재전송 지원)
      */
     @GetMapping(value = "/stream/user", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     public Flux<ServerSentEvent<String>> streamUserNotifications(
             @RequestParam(value = "queue", defaultValue = "default") String queue,
-            @RequestParam(name = "user_id") Long userId) {
+            @RequestParam(name = "user_id") Long userId,
+            @RequestHeader(value = LAST_EVENT_ID_HEADER, required = false) String lastEventId) {
         
-        log.info("[SSE] 사용자별 알림 스트림 시작 - queue: {}, userId: {}", queue, userId);
+        log.info("[SSE] 사용자별 알림 스트림 시작 - queue: {}, userId: {}, lastEventId: {}", queue, userId, lastEventId);
         
-        ChannelTopic topic = queueNotificationService.getChannelTopic(queue);
-        
-        return reactiveRedisTemplate.listenTo(topic)
-            .map(ReactiveSubscription.Message::getMessage)
-            .filter(message -> {
-                // userId 필터링
-                String[] parts = message.split(":", 2);
-                Long messageUserId = Long.parseLong(parts[0]);
-                return messageUserId.equals(userId);
-            })
-            .map(message -> {
-                String[] parts = message.split(":", 3);
-                String event = parts[1];
-                String data = parts.length > 2 ? parts[2] : "";
-                
-                String eventData = String.format("{\"queue\":\"%s\",\"userId\":%d,\"event\":\"%s\",\"data\":\"%s\"}",
-                    queue, userId, event, data);
-                
-                log.debug("[SSE] 사용자 이벤트 전송 - queue: {}, userId: {}, event: {}", queue, userId, event);
-                
-                return ServerSentEvent.<String>builder()
-                    .event(event)
-                    .data(eventData)
-                    .build();
+        return queueNotificationHub.subscribeUser(queue, userId, lastEventId)
+            .map(event -> {
+                log.debug("[SSE] 사용자 이벤트 전송 - queue: {}, userId: {}, event: {}", queue, userId, event.event());
+                return toServerSentEvent(new QueueEvent(queue, userId, event.event(), event.data(), event.id()));
             })
-            .mergeWith(
-                Flux.interval(Duration.ofSeconds(30))
-                    .map(seq -> ServerSentEvent.<String>builder()
-                        .comment("heartbeat")
-                        .build())
-            )
+            // 연결이 유지되는 동안 heartbeat와 대기 사용자 liveness 갱신
+            .transform(events -> withBackground(events, this.<String>heartbeat()
+                .mergeWith(userQueueService.keepWaiterAlive(queue, userId).then(Mono.empty()))))
             .doOnCancel(() -> log.info("[SSE] 사용자 알림 스트림 종료 - queue: {}, userId: {}", queue, userId))
             .doOnError(e -> log.error("[SSE] 사용자 알림 스트림 에러 - queue: {}, userId: {}, error: {}", 
                 queue, userId, e.getMessage()));
     }
-}
 
+    /**
+     * 대기실 순위 알림 구독 (SSE)
+     * 순위/예상 대기 시간(RANK)을 push 하고, 진입 허용되면 토큰과 함께 ALLOWED를 보낸 뒤 종료한다.
+     * 이벤트마다 id를 붙이므로 연결이 끊기면 브라우저가 Last-Event-ID와 함께 다시 연결해 이어서 받는다.
+     * 사용법: curl -N "http://localhost:9010/api/v1/queue/notifications/stream/waiting-room?queue=default&user_id=100"
+     */
+    @GetMapping(value = "/stream/waiting-room", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<WaitingRoomEvent>> streamWaitingRoom(
+            @RequestParam(value = "queue", defaultValue = "default") String queue,
+            @RequestParam(name = "user_id") Long userId,
+            @RequestHeader(value = LAST_EVENT_ID_HEADER, required = false) String lastEventId) {
+
+        log.info("[SSE] 대기실 스트림 시작 - queue: {}, userId: {}, lastEventId: {}", queue, userId, lastEventId);
+
+        return waitingRoomEventService.streamWaitingRoom(queue, userId, lastEventId)
+            .map(event -> ServerSentEvent.<WaitingRoomEvent>builder()
+                .id(event.id())
+                .event(event.event())
+                .retry(WAITING_ROOM_RETRY)
+                .data(event)
+                .build())
+            .transform(events -> withBackground(events, heartbeat()))
+            .takeUntil(sse -> "ALLOWED".equals(sse.event()))
+            .doOnCancel(() -> log.info("[SSE] 대기실 스트림 종료 - queue: {}, userId: {}", queue, userId))
+            .doOnError(e -> log.error("[SSE] 대기실 스트림 에러 - queue: {}, userId: {}, error: {}",
+                queue, userId, e.getMessage()));
+    }
+
+    /**
+     * 알림 전달 지표 (로컬 연결 수, coalesce/drop 된 이벤트 수)
+     */
+    @GetMapping("/metrics")
+    public NotificationMetricsResponse getMetrics() {
+        return queueNotificationHub.getMetrics();
+    }
+
+    // 공유 타이머 heartbeat (30초마다 keep-alive 주석)
+    private <T> Flux<ServerSentEvent<T>> heartbeat() {
+        return queueNotificationHub.heartbeat()
+            .map(seq -> ServerSentEvent.<T>builder()
+                .comment("heartbeat")
+                .build());
+    }
+
+    // 이벤트 스트림에 heartbeat 같은 부가 스트림을 붙인다.
+    // 이벤트 스트림이 끝나면(전송 버퍼 초과로 허브가 끊은 경우 등) 부가 스트림도 끝내 SSE 연결을 닫는다. (클라이언트는 Last-Event-ID로 재연결)
+    private <T> Flux<ServerSentEvent<T>> withBackground(final Flux<ServerSentEvent<T>> events, final Flux<ServerSentEvent<T>> background) {
+        return events.publish(shared -> Flux.merge(shared, background.takeUntilOther(shared.then())));
+    }
+
+    private ServerSentEvent<String> toServerSentEvent(final QueueEvent event) {
+        String eventData = String.format("{\"queue\":\"%s\",\"userId\":%d,\"event\":\"%s\",\"data\":\"%s\"}",
+            event.queue(), event.userId(), event.event(), event.data());
+        return ServerSentEvent.<String>builder()
+            .id(event.id())
+            .event(event.event())
+            .data(eventData)
+            .build();
+    }
+}
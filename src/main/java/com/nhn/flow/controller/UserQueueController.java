@@ -2,15 +2,24 @@ package com.nhn.flow.controller;
 
 import com.nhn.flow.dto.AllowedUserResponse;
 import com.nhn.flow.dto.AllowUserResponse;
+import com.nhn.flow.dto.BatchRegisterRequest;
+import com.nhn.flow.dto.BatchRegisterResponse;
+import com.nhn.flow.dto.QueueHeadResponse;
 import com.nhn.flow.dto.QueueHistoryResponse;
+import com.nhn.flow.dto.QueueLookupRequest;
+import com.nhn.flow.dto.QueueLookupResponse;
+import com.nhn.flow.dto.QueueReadMetricsResponse;
 import com.nhn.flow.dto.QueueStatisticsResponse;
 import com.nhn.flow.dto.RankNumberResponse;
 import com.nhn.flow.dto.RegisterUserResponse;
+import com.nhn.flow.dto.TierRankResponse;
 import com.nhn.flow.service.QueueHistoryService;
+import com.nhn.flow.service.QueueReadService;
 import com.nhn.flow.service.UserQueueService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseCookie;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ServerWebExchange;
@@ -27,6 +36,7 @@ public class UserQueueController {
 
     private final UserQueueService userQueueService;
     private final QueueHistoryService queueHistoryService;
+    private final QueueReadService queueReadService;
     
     @Value("${queue.token.max-age-seconds}")
     private int tokenMaxAgeSeconds;
@@ -35,12 +45,25 @@ public class UserQueueController {
     public Mono<RegisterUserResponse> registerWaitQueue(
                                             @RequestParam(value = "queue", defaultValue = "default") String queue,
                                             @RequestParam(name="user_id") Long userId,
-                                            @RequestParam(name="is_vip", defaultValue = "false") Boolean isVip) {
-        log.info("[대기열 등록 요청] queue: {}, userId: {}, isVip: {}", queue, userId, isVip);
-        return userQueueService.registerWaitQueue(queue, userId, isVip)
-            .doOnSuccess(rank -> log.info("[대기열 등록 성공] queue: {}, userId: {}, isVip: {}, rank: {}", queue, userId, isVip, rank))
-            .doOnError(e -> log.error("[대기열 등록 실패] queue: {}, userId: {}, isVip: {}, error: {}", queue, userId, isVip, e.getMessage()))
-            .map(RegisterUserResponse::new);
+                                            @RequestParam(name="is_vip", defaultValue = "false") Boolean isVip,
+                                            @RequestParam(name="tier", required = false) String tier) {
+        log.info("[대기열 등록 요청] queue: {}, userId: {}, isVip: {}, tier: {}", queue, userId, isVip, tier);
+        return userQueueService.registerWaitQueueWithPosition(queue, userId, isVip, tier)
+            .doOnSuccess(response -> log.info("[대기열 등록 성공] queue: {}, userId: {}, isVip: {}, tier: {}, rank: {}, position: {}",
+                queue, userId, isVip, tier, response.rank(), response.position()))
+            .doOnError(e -> log.error("[대기열 등록 실패] queue: {}, userId: {}, isVip: {}, tier: {}, error: {}", queue, userId, isVip, tier, e.getMessage()));
+    }
+
+    // 일괄 등록 (사용자별 결과, 이미 등록됨 / 용량 초과도 에러 대신 status로 알린다)
+    @PostMapping("/batch")
+    public Flux<BatchRegisterResponse> registerWaitQueueBatch(
+                                            @RequestParam(value = "queue", defaultValue = "default") String queue,
+                                            @RequestBody BatchRegisterRequest request) {
+        int size = request.users() != null ? request.users().size() : 0;
+        log.info("[대기열 일괄 등록 요청] queue: {}, size: {}", queue, size);
+        return userQueueService.registerWaitQueueBatch(queue, request.users())
+            .doOnComplete(() -> log.info("[대기열 일괄 등록 완료] queue: {}, size: {}", queue, size))
+            .doOnError(e -> log.error("[대기열 일괄 등록 실패] queue: {}, size: {}, error: {}", queue, size, e.getMessage()));
     }
 
     @PostMapping("/allow")
@@ -57,14 +80,48 @@ public class UserQueueController {
     @GetMapping("allowed")
     public Mono<?> isAllowedUser(@RequestParam(value = "queue", defaultValue = "default") String queue,
                                             @RequestParam(name="user_id") Long userId) {
-        return userQueueService.isAllowed(queue, userId).map(AllowedUserResponse::new);
+        return queueReadService.isAllowed(queue, userId).map(AllowedUserResponse::new);
+    }
+
+    // 세션 lease 갱신 (heartbeat): 갱신하지 않으면 lease-seconds 이후 자리가 회수된다.
+    @PostMapping("/lease")
+    public Mono<AllowedUserResponse> renewLease(@RequestParam(value = "queue", defaultValue = "default") String queue,
+                                                @RequestParam(name="user_id") Long userId) {
+        return userQueueService.renewLease(queue, userId).map(AllowedUserResponse::new);
+    }
+
+    // 세션 lease 반납 (사용자가 떠날 때 자리를 바로 비운다)
+    @DeleteMapping("/lease")
+    public Mono<Void> releaseLease(@RequestParam(value = "queue", defaultValue = "default") String queue,
+                                   @RequestParam(name="user_id") Long userId) {
+        return userQueueService.releaseLease(queue, userId).then();
     }
 
     @GetMapping("/rank")
     public Mono<RankNumberResponse> getRankUser(@RequestParam(value = "queue", defaultValue = "default") String queue,
                                                 @RequestParam(name="user_id") Long userId) {
 
-        return userQueueService.getRank(queue,  userId).map(RankNumberResponse::new);
+        return queueReadService.getRank(queue, userId).map(RankNumberResponse::new);
+    }
+
+    // 등급과 순위 조회 (전체 순위 = 진입 예상 순서, 등급 순위 = 같은 등급 안 순서)
+    @GetMapping("/rank/tier")
+    public Mono<TierRankResponse> getTierRank(@RequestParam(value = "queue", defaultValue = "default") String queue,
+                                              @RequestParam(name="user_id") Long userId) {
+        return userQueueService.getTierRank(queue, userId);
+    }
+
+    // 일괄 순위 / 진입 허용 여부 조회 (NDJSON으로 조회되는 대로 내보낸다)
+    @PostMapping(value = "/lookup", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<QueueLookupResponse> lookup(@RequestParam(value = "queue", defaultValue = "default") String queue,
+                                            @RequestBody QueueLookupRequest request) {
+        return queueReadService.lookup(queue, request.userIds());
+    }
+
+    // 현재 head (누적 진입 인원): 진입 진행 정도만 나타낸다. (등급 우선순위와 이탈자 정리 때문에 순위는 /rank 로 조회)
+    @GetMapping("/head")
+    public Mono<QueueHeadResponse> getHead(@RequestParam(value = "queue", defaultValue = "default") String queue) {
+        return userQueueService.getHead(queue).map(head -> new QueueHeadResponse(queue, head));
     }
 
     @GetMapping("/touch")
@@ -87,18 +144,16 @@ public class UserQueueController {
     public Mono<QueueStatisticsResponse> getQueueStatistics(
             @RequestParam(value = "queue", defaultValue = "default") String queue) {
         log.debug("[통계 조회 요청] queue: {}", queue);
-        // 대기 중인 사용자 수와 진입 허용된 사용자 수를 조회
-        return Mono.zip(
-            userQueueService.getWaitQueueSize(queue),
-            userQueueService.getProceedQueueSize(queue)
-        )
-            .doOnSuccess(tuple -> log.debug("[통계 조회 완료] queue: {}, waitingCount: {}, allowedCount: {}", 
-                queue, tuple.getT1(), tuple.getT2()))
-            .map(tuple -> new QueueStatisticsResponse(
-                queue,
-                tuple.getT1(),  // waitingCount
-                tuple.getT2()   // allowedCount
-            ));
+        // 대기 중인 사용자 수와 진입 허용된 사용자 수를 한 번에 조회 (진행 중인 같은 대기열 조회와 결과 공유)
+        return queueReadService.getStatistics(queue)
+            .doOnSuccess(statistics -> log.debug("[통계 조회 완료] queue: {}, waitingCount: {}, allowedCount: {}",
+                queue, statistics.waitingCount(), statistics.allowedCount()));
+    }
+
+    // 조회 묶음 처리 지표 (요청 수 대비 Redis 호출 수)
+    @GetMapping("/read-metrics")
+    public QueueReadMetricsResponse getReadMetrics() {
+        return queueReadService.getMetrics();
     }
 
     @GetMapping("/history")
@@ -111,12 +166,15 @@ public class UserQueueController {
             .doOnComplete(() -> log.debug("[이력 조회 완료] queue: {}, userId: {}", queue, userId));
     }
 
+    // 최신순 페이지 조회: cursor(이전 페이지 마지막 항목의 id) 또는 until(epoch second) 이전 항목부터 count개
     @GetMapping("/history/all")
     public Flux<QueueHistoryResponse> getQueueHistory(
             @RequestParam(value = "queue", defaultValue = "default") String queue,
-            @RequestParam(name="count", defaultValue = "50") int count) {
-        log.debug("[전체 이력 조회 요청] queue: {}, count: {}", queue, count);
-        return queueHistoryService.getQueueHistory(queue, count)
+            @RequestParam(name="count", defaultValue = "50") int count,
+            @RequestParam(name="cursor", required = false) String cursor,
+            @RequestParam(name="until", required = false) Long until) {
+        log.debug("[전체 이력 조회 요청] queue: {}, count: {}, cursor: {}, until: {}", queue, count, cursor, until);
+        return queueHistoryService.getQueueHistory(queue, count, cursor, until)
             .doOnComplete(() -> log.debug("[전체 이력 조회 완료] queue: {}", queue));
     }
 
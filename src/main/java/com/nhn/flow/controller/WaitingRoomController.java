@@ -1,8 +1,11 @@
 package com.nhn.flow.controller;
 
+import com.nhn.flow.exception.ApplicationException;
+import com.nhn.flow.exception.ErrorCode;
 import com.nhn.flow.service.UserQueueService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -31,14 +34,22 @@ public class WaitingRoomController {
             .filter(allowed -> allowed)
             .flatMap(allowed -> Mono.just(Rendering.redirectTo(redirectUrl).build()))
             .switchIfEmpty(
-                userQueueService.registerWaitQueue(queue, userId)
-                    .onErrorResume(ex -> userQueueService.getRank(queue, userId))
+                // 이미 등록된 사용자는 기존 순위를 받으므로 별도 순위 조회가 필요 없다.
+                userQueueService.registerOrGetRank(queue, userId)
                     .map(rank -> Rendering.view("waiting-room.html")
                         .modelAttribute("number", rank)
                         .modelAttribute("userId", userId)
                         .modelAttribute("queue", queue)
                         .build()
                     )
+                    // 대기열이 가득 찼으면 안내 페이지, 그 외 에러는 그대로 전달한다.
+                    .onErrorResume(ApplicationException.class, e -> ErrorCode.QUEUE_CAPACITY_EXCEEDED.matches(e)
+                        ? Mono.just(Rendering.view("queue-full.html")
+                            .status(HttpStatus.SERVICE_UNAVAILABLE)
+                            .modelAttribute("queue", queue)
+                            .modelAttribute("reason", e.getReason())
+                            .build())
+                        : Mono.error(e))
             );
     }
 }
@@ -0,0 +1,16 @@
+package com.nhn.flow.dto;
+
+import java.util.List;
+
+public record BatchRegisterRequest(
+    List<User> users
+) {
+
+    public record User(
+        Long userId,
+        Boolean vip,  // tier가 없을 때 true면 가장 높은 등급
+        String tier  // 등급 이름 (queue.priority.tiers, 없으면 vip 여부로 정한다)
+    ) {
+
+    }
+}
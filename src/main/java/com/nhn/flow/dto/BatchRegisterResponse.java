@@ -0,0 +1,10 @@
+package com.nhn.flow.dto;
+
+public record BatchRegisterResponse(
+    Long userId,
+    String status,  // CREATED, EXISTING(이미 등록됨), CAPACITY_EXCEEDED, INVALID_USER_ID, INVALID_TIER
+    Long rank,  // 등록되지 않았으면 -1
+    Long position  // 가입 순번 (등록되지 않았으면 -1)
+) {
+
+}
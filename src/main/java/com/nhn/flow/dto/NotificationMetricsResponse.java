@@ -0,0 +1,11 @@
+package com.nhn.flow.dto;
+
+public record NotificationMetricsResponse(
+    int subscribedQueues,  // Redis 구독 중인 대기열 수
+    int connections,  // 로컬 SSE 연결 수
+    long coalescedEvents,  // 최신 값으로 덮어쓴 이벤트 수
+    long droppedEvents,  // 버퍼 초과로 전달하지 않은 이벤트 수 (해당 연결은 끊고 재연결 시 이벤트 로그에서 재전송)
+    long replayedConnections  // Last-Event-ID로 이벤트 로그를 재전송한 연결 수
+) {
+
+}
@@ -0,0 +1,11 @@
+package com.nhn.flow.dto;
+
+public record QueueEvent(
+    String queue,
+    Long userId,  // 0이면 대기열 전체 알림 (HEAD 등)
+    String event,  // REGISTERED, ALLOWED, HEAD, etc
+    String data,
+    String id  // 이벤트 로그 ID (Redis Stream ID, SSE id / Last-Event-ID로 사용, 없으면 null)
+) {
+
+}
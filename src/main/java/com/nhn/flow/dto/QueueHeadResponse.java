@@ -0,0 +1,5 @@
+package com.nhn.flow.dto;
+
+public record QueueHeadResponse(String queue, Long head) {
+
+}
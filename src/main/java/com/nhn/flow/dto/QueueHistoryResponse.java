@@ -7,11 +7,12 @@ public record QueueHistoryResponse(
     Long userId,
     String action,  // REGISTER, ALLOW, EXPIRED
     Long timestamp,
-    String formattedTime
+    String formattedTime,
+    String id  // 전체 이력 stream ID (다음 페이지 cursor, 사용자별 이력은 null)
 ) {
     public QueueHistoryResponse(String queue, Long userId, String action, Long timestamp) {
         this(queue, userId, action, timestamp, 
-            Instant.ofEpochSecond(timestamp).toString());
+            Instant.ofEpochSecond(timestamp).toString(), null);
     }
 }
 
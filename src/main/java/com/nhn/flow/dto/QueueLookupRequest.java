@@ -0,0 +1,9 @@
+package com.nhn.flow.dto;
+
+import java.util.List;
+
+public record QueueLookupRequest(
+    List<Long> userIds
+) {
+
+}
@@ -0,0 +1,9 @@
+package com.nhn.flow.dto;
+
+public record QueueLookupResponse(
+    Long userId,
+    Long rank,  // 대기 중이 아니면 -1
+    Boolean allowed
+) {
+
+}
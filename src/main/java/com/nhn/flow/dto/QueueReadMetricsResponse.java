@@ -0,0 +1,10 @@
+package com.nhn.flow.dto;
+
+public record QueueReadMetricsResponse(
+    long requests,  // 순위 / 진입 허용 여부 / 통계 조회 요청 수
+    long redisCalls,  // 묶어서 실제로 보낸 Redis 조회 수
+    long nearCacheHits,  // 진입 허용 near cache에서 응답한 조회 수
+    long mirrorHits  // 인스턴스별 wait queue mirror에서 응답한 순위 조회 수
+) {
+
+}
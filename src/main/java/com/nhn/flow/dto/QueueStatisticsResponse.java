@@ -1,9 +1,12 @@
 package com.nhn.flow.dto;
 
+import java.util.Map;
+
 public record QueueStatisticsResponse(
     String queue,
     Long waitingCount,
-    Long allowedCount
+    Long allowedCount,
+    Map<String, Long> waitingByTier  // 등급별 대기 인원 (높은 등급부터)
 ) {
 }
 
@@ -1,5 +1,8 @@
 package com.nhn.flow.dto;
 
-public record RegisterUserResponse(Long rank) {
+public record RegisterUserResponse(
+    Long rank,  // 등록 시점의 전체 순위 (이후 순위는 /rank, 등급 안 순위는 /rank/tier 로 조회)
+    Long position  // 가입 순번 (대기열 전체 등록 순서, 등급 우선순위와 이탈자 정리가 반영되지 않으므로 순위 계산에 쓰지 않는다)
+) {
 
 }
@@ -0,0 +1,9 @@
+package com.nhn.flow.dto;
+
+public record TierRankResponse(
+    String tier,  // 등급 이름 (대기 중이 아니면 null)
+    Long rank,  // 전체 순위 (진입 예상 순서, 대기 중이 아니면 -1)
+    Long tierRank  // 같은 등급 안 순위 (대기 중이 아니면 -1)
+) {
+
+}
@@ -0,0 +1,23 @@
+package com.nhn.flow.dto;
+
+public record WaitingRoomEvent(
+    String queue,
+    Long userId,
+    String event,  // RANK, ALLOWED, NOT_WAITING
+    Long rank,
+    Long etaSeconds,  // 예상 대기 시간 (알 수 없으면 -1)
+    String token,  // ALLOWED 이벤트에서만 전달
+    String id  // 반영된 마지막 알림 이벤트 로그 ID (SSE id / Last-Event-ID로 사용, 없으면 null)
+) {
+    public static WaitingRoomEvent rank(String queue, Long userId, long rank, long etaSeconds, String id) {
+        return new WaitingRoomEvent(queue, userId, "RANK", rank, etaSeconds, null, id);
+    }
+
+    public static WaitingRoomEvent allowed(String queue, Long userId, String token, String id) {
+        return new WaitingRoomEvent(queue, userId, "ALLOWED", 0L, 0L, token, id);
+    }
+
+    public static WaitingRoomEvent notWaiting(String queue, Long userId, String id) {
+        return new WaitingRoomEvent(queue, userId, "NOT_WAITING", -1L, -1L, null, id);
+    }
+}
@@ -11,6 +11,10 @@ public enum ErrorCode {
     INVALID_QUEUE_NAME(HttpStatus.BAD_REQUEST, "UQ-003", "유효하지 않은 큐 이름입니다. 큐 이름은 비어있을 수 없습니다."),
     INVALID_COUNT(HttpStatus.BAD_REQUEST, "UQ-004", "유효하지 않은 count 값입니다. count는 0 이상이어야 합니다."),
     QUEUE_CAPACITY_EXCEEDED(HttpStatus.BAD_REQUEST, "UQ-005", "대기열이 가득 찼습니다. 최대 용량: %s명"),
+    QUEUE_NOT_ALLOWED_USER(HttpStatus.FORBIDDEN, "UQ-006", "진입 허용되지 않은 사용자입니다."),
+    QUEUE_REGISTRATION_OVERLOADED(HttpStatus.TOO_MANY_REQUESTS, "UQ-007", "등록 요청이 많아 처리할 수 없습니다. 잠시 후 다시 시도해 주세요."),
+    INVALID_BATCH_SIZE(HttpStatus.BAD_REQUEST, "UQ-008", "유효하지 않은 일괄 요청입니다. 사용자 수는 1~%s명이어야 합니다."),
+    INVALID_TIER(HttpStatus.BAD_REQUEST, "UQ-009", "유효하지 않은 등급입니다. 사용 가능한 등급: %s"),
     ;
     private final HttpStatus httpStatus;
     private final String code;
@@ -23,5 +27,10 @@ public enum ErrorCode {
         return new ApplicationException(this.httpStatus, this.code, reason.formatted(args));
     }
 
+    // 이 에러 코드로 만든 예외인지 확인
+    public boolean matches(ApplicationException e) {
+        return this.code.equals(e.getCode());
+    }
+
 }
 
@@ -0,0 +1,155 @@
+package com.nhn.flow.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.ReactiveSubscription;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 진입 허용 상태 near cache (인스턴스 로컬, 크기 제한)
+ * 조회 경로에 전역 lock이 없도록 ConcurrentHashMap에 저장하고, 크기를 넘으면 근사적으로 정리한다.
+ * (만료된 항목을 먼저 지우고, 그래도 넘으면 순회 순서대로 max-size의 90%까지 지운다, 정리는 한 스레드만 수행)
+ * 진입 허용 여부는 사용자당 한 번 false → true로 바뀌므로 true만 저장한다.
+ * - 채우기: 진입 허용 조회 결과가 true일 때, 알림 허브가 받은 ALLOWED 이벤트
+ * - 무효화: 세션 lease 반납/회수 시 발행되는 진입 취소 알림 (모든 인스턴스가 구독)
+ * 알림이 유실되거나 조회와 무효화가 엇갈린 경우에도 ttl-ms가 지나면 다시 Redis에서 조회한다. (최대 지연 = ttl-ms)
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AdmissionStatusCache {
+
+    private final QueueNotificationService queueNotificationService;
+    private final ReactiveRedisTemplate<String, String> reactiveRedisTemplate;
+
+    private static final double EVICTION_TARGET_RATIO = 0.9;
+
+    // (queue, userId) → 만료 시각 (System.nanoTime)
+    private final Map<Key, Long> entries = new ConcurrentHashMap<>();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private Disposable revocations;
+
+    @Value("${queue.near-cache.max-size:100000}")
+    private int maxSize;
+
+    // 0이면 캐시하지 않는다.
+    @Value("${queue.near-cache.ttl-ms:10000}")
+    private long ttlMillis;
+
+    @PostConstruct
+    public void subscribeRevocations() {
+        // 구독 연결 실패(기동 시 Redis 미준비 포함)도 재시도하도록 구독 시점에 연결한다.
+        revocations = Flux.defer(() -> reactiveRedisTemplate.listenTo(queueNotificationService.getAdmissionRevokedTopic()))
+            .map(ReactiveSubscription.Message::getMessage)
+            .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofMillis(500)).maxBackoff(Duration.ofSeconds(10)))
+            .subscribe(this::onRevoked, e -> log.error("[NearCache] 진입 취소 구독 종료 - error: {}", e.getMessage()));
+    }
+
+    @PreDestroy
+    public void close() {
+        if (revocations != null) {
+            revocations.dispose();
+        }
+    }
+
+    /**
+     * 캐시된 진입 허용 여부 (true가 아니면 Redis에서 조회해야 한다)
+     */
+    public boolean isAllowed(final String queue, final long userId) {
+        if (ttlMillis <= 0) {
+            return false;
+        }
+        Key key = new Key(queue, userId);
+        Long expiresAt = entries.get(key);
+        if (expiresAt != null && expiresAt - System.nanoTime() > 0) {
+            hits.increment();
+            return true;
+        }
+        if (expiresAt != null) {
+            // 그 사이 다시 채워진 항목은 지우지 않는다.
+            entries.remove(key, expiresAt);
+        }
+        misses.increment();
+        return false;
+    }
+
+    // 진입 허용 확인 (조회 결과 또는 ALLOWED 이벤트)
+    public void markAllowed(final String queue, final long userId) {
+        if (ttlMillis <= 0) {
+            return;
+        }
+        long expiresAt = System.nanoTime() + Duration.ofMillis(ttlMillis).toNanos();
+        if (entries.put(new Key(queue, userId), expiresAt) == null && entries.size() > maxSize) {
+            evict();
+        }
+    }
+
+    public void invalidate(final String queue, final long userId) {
+        entries.remove(new Key(queue, userId));
+    }
+
+    // 크기 초과 시 근사 정리 (이미 정리 중이면 건너뛴다)
+    private void evict() {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long now = System.nanoTime();
+            entries.values().removeIf(expiresAt -> expiresAt - now <= 0);
+            int target = (int) (maxSize * EVICTION_TARGET_RATIO);
+            Iterator<Key> keys = entries.keySet().iterator();
+            while (entries.size() > target && keys.hasNext()) {
+                keys.next();
+                keys.remove();
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    // 현재 캐시된 항목 수
+    int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    // 메시지 형식: {queue}|{userId},{userId},...
+    private void onRevoked(final String message) {
+        int separator = message.lastIndexOf('|');
+        if (separator < 0) {
+            return;
+        }
+        String queue = message.substring(0, separator);
+        for (String userId : message.substring(separator + 1).split(",")) {
+            if (!userId.isEmpty()) {
+                invalidate(queue, Long.parseLong(userId));
+            }
+        }
+    }
+
+    private record Key(String queue, long userId) {
+    }
+}
@@ -0,0 +1,168 @@
+package com.nhn.flow.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Clock;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 진입 토큰 서비스 (HMAC-SHA256 서명, 만료 포함)
+ * 토큰 형식: {key id}.{userId}.{진입 허용 시각}.{만료 시각}.{서명}  (시각은 epoch second, 서명은 base64url)
+ * 서명 대상: "{queue}\n{key id}.{userId}.{진입 허용 시각}.{만료 시각}"  (토큰은 발급된 대기열에서만 유효)
+ *
+ * 검증은 Redis 없이 메모리에서만 처리하며, Mac 인스턴스와 서명/인코딩 버퍼는 스레드별로 재사용한다.
+ * 키 교체: active-key-id 키로 서명하고, signing-keys에 남아 있는 이전 키로 서명된 토큰도 만료 전까지 검증된다.
+ */
+@Slf4j
+@Service
+public class AdmissionTokenService {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final char SEPARATOR = '.';
+    private static final int MAC_LENGTH = 32;
+    private static final int MIN_SECRET_LENGTH = 32;  // HMAC-SHA256 출력 길이 이상 (바이트)
+    private static final int ENCODED_MAC_LENGTH = 43;  // base64url(32바이트), padding 없음
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private final Map<String, SigningKey> keys = new HashMap<>();
+    private final SigningKey activeKey;
+    private final long maxAgeSeconds;
+    private final Clock clock;
+
+    // 스레드별 서명 결과 / 인코딩 버퍼
+    private final ThreadLocal<byte[]> macBuffer = ThreadLocal.withInitial(() -> new byte[MAC_LENGTH]);
+    private final ThreadLocal<byte[]> encodedBuffer = ThreadLocal.withInitial(() -> new byte[ENCODED_MAC_LENGTH]);
+
+    @Autowired
+    public AdmissionTokenService(@Value("${queue.token.signing-keys}") final String signingKeys,
+                                 @Value("${queue.token.active-key-id}") final String activeKeyId,
+                                 @Value("${queue.token.max-age-seconds}") final long maxAgeSeconds) {
+        this(signingKeys, activeKeyId, maxAgeSeconds, Clock.systemUTC());
+    }
+
+    /**
+     * @param signingKeys "{key id}:{secret},{key id}:{secret}" 형식의 서명 키 목록 (secret은 32바이트 이상)
+     */
+    AdmissionTokenService(final String signingKeys, final String activeKeyId, final long maxAgeSeconds, final Clock clock) {
+        for (String entry : signingKeys.split(",")) {
+            int separator = entry.indexOf(':');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("서명 키 형식이 올바르지 않습니다. ({key id}:{secret})");
+            }
+            String keyId = entry.substring(0, separator).trim();
+            if (keyId.indexOf(SEPARATOR) >= 0) {
+                throw new IllegalArgumentException("key id에는 '.'을 사용할 수 없습니다: " + keyId);
+            }
+            byte[] secret = entry.substring(separator + 1).trim().getBytes(StandardCharsets.UTF_8);
+            if (secret.length < MIN_SECRET_LENGTH) {
+                throw new IllegalArgumentException("서명 키 secret은 %d바이트 이상이어야 합니다: %s".formatted(MIN_SECRET_LENGTH, keyId));
+            }
+            keys.put(keyId, new SigningKey(keyId, secret));
+        }
+        this.activeKey = keys.get(activeKeyId);
+        if (activeKey == null) {
+            throw new IllegalArgumentException("active key id에 해당하는 서명 키가 없습니다: " + activeKeyId);
+        }
+        this.maxAgeSeconds = maxAgeSeconds;
+        this.clock = clock;
+        log.info("[Token] 서명 키 로드 - keys: {}, active: {}", keys.keySet(), activeKeyId);
+    }
+
+    /**
+     * 토큰 발급 (진입 허용된 사용자에게만 호출한다)
+     */
+    public String issue(final String queue, final Long userId) {
+        long issuedAt = clock.instant().getEpochSecond();
+        String claims = activeKey.keyId + SEPARATOR + userId + SEPARATOR + issuedAt + SEPARATOR + (issuedAt + maxAgeSeconds);
+        byte[] claimBytes = claims.getBytes(StandardCharsets.US_ASCII);
+        byte[] encoded = sign(activeKey, queue, claimBytes, claimBytes.length);
+        return claims + SEPARATOR + new String(encoded, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * 토큰 검증 (서명, 대기열, 사용자, 만료 확인)
+     */
+    public boolean verify(final String queue, final Long userId, final String token) {
+        if (token == null || token.isEmpty() || userId == null) {
+            return false;
+        }
+        // {key id}.{userId}.{issuedAt}.{expiresAt}.{signature}
+        int keyEnd = token.indexOf(SEPARATOR);
+        int userEnd = keyEnd < 0 ? -1 : token.indexOf(SEPARATOR, keyEnd + 1);
+        int issuedEnd = userEnd < 0 ? -1 : token.indexOf(SEPARATOR, userEnd + 1);
+        int expiresEnd = issuedEnd < 0 ? -1 : token.indexOf(SEPARATOR, issuedEnd + 1);
+        if (expiresEnd < 0 || token.length() - expiresEnd - 1 != ENCODED_MAC_LENGTH) {
+            return false;
+        }
+        SigningKey key = keys.get(token.substring(0, keyEnd));
+        if (key == null) {
+            return false;
+        }
+        try {
+            if (Long.parseLong(token, keyEnd + 1, userEnd, 10) != userId
+                || Long.parseLong(token, issuedEnd + 1, expiresEnd, 10) < clock.instant().getEpochSecond()) {
+                return false;
+            }
+        } catch (NumberFormatException e) {
+            return false;
+        }
+
+        byte[] tokenBytes = token.getBytes(StandardCharsets.US_ASCII);
+        byte[] expected = sign(key, queue, tokenBytes, expiresEnd);
+        // 상수 시간 비교
+        int diff = 0;
+        for (int i = 0; i < ENCODED_MAC_LENGTH; i++) {
+            diff |= expected[i] ^ tokenBytes[expiresEnd + 1 + i];
+        }
+        return diff == 0;
+    }
+
+    // 서명 후 base64url 인코딩 (스레드별 버퍼에 쓰고 리턴)
+    private byte[] sign(final SigningKey key, final String queue, final byte[] claims, final int length) {
+        Mac mac = key.mac.get();
+        mac.update(queue.getBytes(StandardCharsets.UTF_8));
+        mac.update((byte) '\n');
+        mac.update(claims, 0, length);
+        byte[] signature = macBuffer.get();
+        byte[] encoded = encodedBuffer.get();
+        try {
+            mac.doFinal(signature, 0);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+        ENCODER.encode(signature, encoded);
+        return encoded;
+    }
+
+    /**
+     * 서명 키 (Mac 인스턴스는 스레드별로 생성해 재사용)
+     */
+    private static final class SigningKey {
+
+        private final String keyId;
+        private final ThreadLocal<Mac> mac;
+
+        private SigningKey(final String keyId, final byte[] secret) {
+            SecretKeySpec spec = new SecretKeySpec(secret, ALGORITHM);
+            this.keyId = keyId;
+            this.mac = ThreadLocal.withInitial(() -> {
+                try {
+                    Mac instance = Mac.getInstance(ALGORITHM);
+                    instance.init(spec);
+                    return instance;
+                } catch (GeneralSecurityException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        }
+    }
+}
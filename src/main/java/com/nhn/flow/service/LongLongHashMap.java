@@ -0,0 +1,123 @@
+package com.nhn.flow.service;
+
+/**
+ * long → long 해시 맵 (open addressing, linear probing, 박싱 없음)
+ * 0은 빈 슬롯 표시로 쓰므로 key는 0이 아니어야 한다. (userId는 1 이상)
+ * 동기화하지 않으므로 호출자가 대기열 단위로 잠근다. (MemoryQueueStore)
+ */
+final class LongLongHashMap {
+
+    private static final long EMPTY = 0L;
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private long[] values;
+    private int mask;
+    private int size;
+    private int resizeAt;
+
+    LongLongHashMap() {
+        allocate(MIN_CAPACITY);
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean containsKey(final long key) {
+        return indexOf(key) >= 0;
+    }
+
+    // 없으면 missing 리턴
+    long get(final long key, final long missing) {
+        int index = indexOf(key);
+        return index >= 0 ? values[index] : missing;
+    }
+
+    void put(final long key, final long value) {
+        if (key == EMPTY) {
+            throw new IllegalArgumentException("key는 0일 수 없습니다.");
+        }
+        int index = slot(key);
+        while (keys[index] != EMPTY) {
+            if (keys[index] == key) {
+                values[index] = value;
+                return;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        values[index] = value;
+        if (++size >= resizeAt) {
+            rehash(keys.length << 1);
+        }
+    }
+
+    /**
+     * 삭제 후 뒤따르는 항목을 당겨 채운다. (backward shift, tombstone 없음)
+     */
+    boolean remove(final long key) {
+        int hole = indexOf(key);
+        if (hole < 0) {
+            return false;
+        }
+        int next = (hole + 1) & mask;
+        while (keys[next] != EMPTY) {
+            // next 항목의 원래 위치에서 hole이 next보다 가까우면 hole로 옮길 수 있다.
+            int ideal = slot(keys[next]);
+            if (((next - ideal) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[hole] = EMPTY;
+        values[hole] = 0L;
+        size--;
+        return true;
+    }
+
+    private int indexOf(final long key) {
+        if (key == EMPTY) {
+            return -1;
+        }
+        int index = slot(key);
+        while (keys[index] != EMPTY) {
+            if (keys[index] == key) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    private int slot(final long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private void rehash(final int capacity) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int index = slot(oldKeys[i]);
+                while (keys[index] != EMPTY) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    // load factor 0.5
+    private void allocate(final int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+        resizeAt = capacity >> 1;
+    }
+}
@@ -0,0 +1,276 @@
+package com.nhn.flow.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 인메모리 대기열 저장소 (queue.store=memory)
+ * 대기열별로 순서 통계 skip list(순위 O(log n))와 primitive long 해시 맵(userId → score / 진입 허용 시각)을 두고,
+ * 대기열 단위로 잠가 대기열마다 writer를 하나로 유지한다. (서로 다른 대기열은 동시에 처리)
+ * 순서와 등급별 가상 완료 시각은 Redis 등록 / 진입 허용 스크립트와 같은 방식으로 발급한다. (PriorityTiers)
+ *
+ * 단일 노드 배포와 Redis 없는 빠른 테스트용이므로 대기열 순서 상태만 관리한다.
+ * 이력 / 알림(REGISTERED, ALLOWED_BATCH, HEAD)은 저장소 호출 뒤 호출자(UserQueueService)가 Redis에 기록하고,
+ * 진입 허용 writer가 이 노드 하나뿐이므로 fencing token은 검사하지 않는다.
+ * 진입 허용 기록은 lease 회수 없이 쌓이므로 대기열별로 max-admitted 명까지만 남기고 가장 먼저 진입한 사용자부터 잊는다.
+ * 세션 lease 회수, 이탈 사용자 정리, 대기열 TTL은 Redis 자료구조를 직접 다루므로 지원하지 않으며,
+ * 이 기능들이 켜져 있으면 기동 시 실패한다. (진입 허용 인원이 줄지 않는 상태로 조용히 동작하지 않도록)
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "queue.store", havingValue = "memory")
+public class MemoryQueueStore implements QueueStore {
+
+    private final Map<String, QueueState> queues = new ConcurrentHashMap<>();
+    private final PriorityTiers priorityTiers;
+    private final long maxAdmitted;  // 대기열별로 남겨 둘 최대 진입 허용 기록 수
+
+    @Autowired
+    public MemoryQueueStore(final PriorityTiers priorityTiers,
+                            @Value("${queue.memory.max-admitted:100000}") final long maxAdmitted,
+                            @Value("${queue.admission-mode:proceed-set}") final String admissionMode,
+                            @Value("${queue.ttl-seconds}") final long ttlSeconds,
+                            @Value("${queue.session.lease-seconds:300}") final long leaseSeconds,
+                            @Value("${queue.liveness.stale-seconds:0}") final long staleSeconds,
+                            @Value("${scheduler.admission.mode:fixed}") final String schedulerAdmissionMode) {
+        this(priorityTiers, maxAdmitted);
+        List<String> unsupported = new ArrayList<>();
+        if (!"proceed-set".equalsIgnoreCase(admissionMode)) {
+            unsupported.add("queue.admission-mode=" + admissionMode);
+        }
+        if (ttlSeconds > 0) {
+            unsupported.add("queue.ttl-seconds=" + ttlSeconds);
+        }
+        if (leaseSeconds > 0) {
+            unsupported.add("queue.session.lease-seconds=" + leaseSeconds);
+        }
+        if (staleSeconds > 0) {
+            unsupported.add("queue.liveness.stale-seconds=" + staleSeconds);
+        }
+        // adaptive 진입은 진입 인원이 lease 회수로 줄어야 동작한다.
+        if ("adaptive".equalsIgnoreCase(schedulerAdmissionMode)) {
+            unsupported.add("scheduler.admission.mode=" + schedulerAdmissionMode);
+        }
+        if (!unsupported.isEmpty()) {
+            throw new IllegalStateException("queue.store=memory 에서는 지원하지 않는 설정입니다: %s (proceed-set, fixed, 0으로 설정)"
+                .formatted(String.join(", ", unsupported)));
+        }
+    }
+
+    MemoryQueueStore(final PriorityTiers priorityTiers) {
+        this(priorityTiers, 100_000L);
+    }
+
+    MemoryQueueStore(final PriorityTiers priorityTiers, final long maxAdmitted) {
+        if (maxAdmitted <= 0) {
+            throw new IllegalStateException("queue.memory.max-admitted는 1 이상이어야 합니다: " + maxAdmitted);
+        }
+        this.priorityTiers = priorityTiers;
+        this.maxAdmitted = maxAdmitted;
+        log.info("[Store] 인메모리 대기열 저장소 사용 - maxAdmitted: {}", maxAdmitted);
+    }
+
+    @Override
+    public Mono<Registration> register(final String queue, final long userId, final int tier, final long capacity) {
+        return Mono.fromSupplier(() -> state(queue).register(userId, tier, capacity));
+    }
+
+    @Override
+    public Mono<List<Long>> ranks(final String queue, final List<Long> userIds) {
+        return Mono.fromSupplier(() -> {
+            QueueState state = queues.get(queue);
+            if (state == null) {
+                return userIds.stream().map(userId -> -1L).toList();
+            }
+            return state.ranks(userIds);
+        });
+    }
+
+    @Override
+    public Mono<TierRank> tierRank(final String queue, final long userId) {
+        return Mono.fromSupplier(() -> {
+            QueueState state = queues.get(queue);
+            return state != null ? state.tierRank(userId) : TierRank.NOT_WAITING;
+        });
+    }
+
+    @Override
+    public Mono<Long> position(final String queue, final long userId) {
+        return Mono.fromSupplier(() -> {
+            QueueState state = queues.get(queue);
+            return state != null ? state.position(userId) : -1L;
+        });
+    }
+
+    @Override
+    public Mono<List<Long>> admit(final String queue, final long count, final String fencingToken) {
+        return Mono.fromSupplier(() -> {
+            QueueState state = queues.get(queue);
+            return state != null ? state.admit(count, Instant.now().getEpochSecond()) : List.<Long>of();
+        });
+    }
+
+    @Override
+    public Mono<List<Boolean>> admitted(final String queue, final List<Long> userIds) {
+        return Mono.fromSupplier(() -> {
+            QueueState state = queues.get(queue);
+            if (state == null) {
+                return userIds.stream().map(userId -> false).toList();
+            }
+            return state.admitted(userIds);
+        });
+    }
+
+    @Override
+    public Mono<Sizes> sizes(final String queue) {
+        return Mono.fromSupplier(() -> {
+            QueueState state = queues.get(queue);
+            return state != null ? state.sizes()
+                : new Sizes(0L, 0L, Collections.nCopies(priorityTiers.size(), 0L));
+        });
+    }
+
+    @Override
+    public Mono<Long> head(final String queue) {
+        return Mono.fromSupplier(() -> {
+            QueueState state = queues.get(queue);
+            return state != null ? state.head() : 0L;
+        });
+    }
+
+    @Override
+    public Flux<String> activeQueues() {
+        return Flux.defer(() -> Flux.fromIterable(queues.entrySet().stream()
+            .filter(entry -> entry.getValue().sizes().waiting() > 0)
+            .map(Map.Entry::getKey)
+            .toList()));
+    }
+
+    private QueueState state(final String queue) {
+        return queues.computeIfAbsent(queue, key -> new QueueState(priorityTiers, maxAdmitted));
+    }
+
+    /**
+     * 대기열별 상태 (모든 연산은 this로 잠근다)
+     */
+    private static final class QueueState {
+
+        private final PriorityTiers priorityTiers;
+        private final OrderStatisticSkipList waiting = new OrderStatisticSkipList();  // score: finish * MAX_TIERS + 등급 번호
+        private final OrderStatisticSkipList[] tierWaiting;  // 등급별 대기 (score: 가입 순번)
+        private final LongLongHashMap scores = new LongLongHashMap();  // 대기 중인 userId → score
+        private final LongLongHashMap positions = new LongLongHashMap();  // 대기 중인 userId → 가입 순번
+        private final LongLongHashMap admitted = new LongLongHashMap();  // 진입 허용된 userId → 진입 허용 시각
+        private final ArrayDeque<Long> admittedOrder = new ArrayDeque<>();  // 진입 허용 순서 (오래된 기록부터 정리)
+        private final long maxAdmitted;
+        private final long[] finishes;  // 등급별 마지막 finish
+        private long virtualTime;  // 마지막으로 진입 허용된 사용자의 finish
+        private long sequence;  // 마지막 가입 순번
+        private long head;  // 누적 진입 인원
+
+        private QueueState(final PriorityTiers priorityTiers, final long maxAdmitted) {
+            this.priorityTiers = priorityTiers;
+            this.maxAdmitted = maxAdmitted;
+            this.tierWaiting = new OrderStatisticSkipList[priorityTiers.size()];
+            for (int tier = 0; tier < tierWaiting.length; tier++) {
+                tierWaiting[tier] = new OrderStatisticSkipList();
+            }
+            this.finishes = new long[priorityTiers.size()];
+        }
+
+        synchronized Registration register(final long userId, final int tier, final long capacity) {
+            long existing = scores.get(userId, -1L);
+            if (existing >= 0) {
+                return new Registration(RegisterStatus.EXISTING, waiting.rank(existing, userId), positions.get(userId, -1L));
+            }
+            if (capacity > 0 && waiting.size() >= capacity) {
+                return new Registration(RegisterStatus.CAPACITY_EXCEEDED, -1L, -1L);
+            }
+            long position = ++sequence;
+            finishes[tier] = Math.max(virtualTime, finishes[tier]) + priorityTiers.stride(tier);
+            long score = finishes[tier] * PriorityTiers.MAX_TIERS + tier;
+            scores.put(userId, score);
+            positions.put(userId, position);
+            waiting.insert(score, userId);
+            tierWaiting[tier].insert(position, userId);
+            return new Registration(RegisterStatus.CREATED, waiting.rank(score, userId), position);
+        }
+
+        synchronized List<Long> ranks(final List<Long> userIds) {
+            List<Long> ranks = new ArrayList<>(userIds.size());
+            for (Long userId : userIds) {
+                long score = scores.get(userId, -1L);
+                ranks.add(score >= 0 ? waiting.rank(score, userId) : -1L);
+            }
+            return ranks;
+        }
+
+        synchronized TierRank tierRank(final long userId) {
+            long score = scores.get(userId, -1L);
+            if (score < 0) {
+                return TierRank.NOT_WAITING;
+            }
+            int tier = PriorityTiers.tierOf(score);
+            return new TierRank(tier, waiting.rank(score, userId), tierWaiting[tier].rank(positions.get(userId, -1L), userId));
+        }
+
+        synchronized long position(final long userId) {
+            return positions.get(userId, -1L);
+        }
+
+        // 앞에서부터 꺼내면 등급별 가중치 비율로 진입한다. (등급 수와 무관하게 사용자당 O(log n))
+        synchronized List<Long> admit(final long count, final long now) {
+            int admittable = (int) Math.min(count, waiting.size());
+            List<Long> admittedUsers = new ArrayList<>(admittable);
+            for (int i = 0; i < admittable; i++) {
+                long userId = waiting.pollFirst();
+                long score = scores.get(userId, -1L);
+                tierWaiting[PriorityTiers.tierOf(score)].delete(positions.get(userId, -1L), userId);
+                virtualTime = PriorityTiers.finishOf(score);
+                scores.remove(userId);
+                positions.remove(userId);
+                admitted.put(userId, now);
+                admittedOrder.addLast(userId);
+                admittedUsers.add(userId);
+            }
+            while (admittedOrder.size() > maxAdmitted) {
+                admitted.remove(admittedOrder.pollFirst());
+            }
+            head += admittable;
+            return admittedUsers;
+        }
+
+        synchronized List<Boolean> admitted(final List<Long> userIds) {
+            List<Boolean> result = new ArrayList<>(userIds.size());
+            for (Long userId : userIds) {
+                result.add(admitted.containsKey(userId));
+            }
+            return result;
+        }
+
+        synchronized Sizes sizes() {
+            List<Long> waitingByTier = new ArrayList<>(tierWaiting.length);
+            for (OrderStatisticSkipList tier : tierWaiting) {
+                waitingByTier.add((long) tier.size());
+            }
+            return new Sizes(waiting.size(), admitted.size(), waitingByTier);
+        }
+
+        synchronized long head() {
+            return head;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.nhn.flow.service;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 순서 통계 skip list (Redis zset의 zskiplist와 같은 구조)
+ * (score, member) 순으로 정렬하고, 각 레벨 링크에 건너뛰는 노드 수(span)를 두어
+ * 삽입 / 삭제 / 순위 조회 / 맨 앞 꺼내기를 모두 O(log n)에 처리한다.
+ * score와 member는 primitive long으로 저장한다. (박싱 없음)
+ * 동기화하지 않으므로 호출자가 대기열 단위로 잠근다. (MemoryQueueStore)
+ */
+final class OrderStatisticSkipList {
+
+    private static final int MAX_LEVEL = 32;
+    private static final int LEVEL_PROBABILITY = 4;  // 1/4 확률로 레벨 증가
+
+    private final Node header = new Node(MAX_LEVEL, Long.MIN_VALUE, Long.MIN_VALUE);
+    // 삽입 / 삭제 경로 버퍼 (단일 writer이므로 재사용)
+    private final Node[] update = new Node[MAX_LEVEL];
+    private final long[] traversed = new long[MAX_LEVEL];
+    private int level = 1;
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    void insert(final long score, final long member) {
+        Node node = header;
+        for (int i = level - 1; i >= 0; i--) {
+            traversed[i] = i == level - 1 ? 0 : traversed[i + 1];
+            while (node.forward[i] != null && node.forward[i].before(score, member)) {
+                traversed[i] += node.span[i];
+                node = node.forward[i];
+            }
+            update[i] = node;
+        }
+
+        int newLevel = randomLevel();
+        if (newLevel > level) {
+            for (int i = level; i < newLevel; i++) {
+                traversed[i] = 0;
+                update[i] = header;
+                header.span[i] = size;
+            }
+            level = newLevel;
+        }
+
+        Node inserted = new Node(newLevel, score, member);
+        for (int i = 0; i < newLevel; i++) {
+            inserted.forward[i] = update[i].forward[i];
+            update[i].forward[i] = inserted;
+            inserted.span[i] = update[i].span[i] - (traversed[0] - traversed[i]);
+            update[i].span[i] = (traversed[0] - traversed[i]) + 1;
+        }
+        for (int i = newLevel; i < level; i++) {
+            update[i].span[i]++;
+        }
+        size++;
+    }
+
+    boolean delete(final long score, final long member) {
+        Node node = header;
+        for (int i = level - 1; i >= 0; i--) {
+            while (node.forward[i] != null && node.forward[i].before(score, member)) {
+                node = node.forward[i];
+            }
+            update[i] = node;
+        }
+        Node target = node.forward[0];
+        if (target == null || target.score != score || target.member != member) {
+            return false;
+        }
+        unlink(target);
+        return true;
+    }
+
+    /**
+     * 순위 조회 (1부터 시작, 없으면 0)
+     */
+    long rank(final long score, final long member) {
+        long rank = 0;
+        Node node = header;
+        for (int i = level - 1; i >= 0; i--) {
+            while (node.forward[i] != null && !after(node.forward[i], score, member)) {
+                rank += node.span[i];
+                node = node.forward[i];
+            }
+            if (node != header && node.score == score && node.member == member) {
+                return rank;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 맨 앞 멤버를 꺼낸다. (비어 있으면 0)
+     */
+    long pollFirst() {
+        Node first = header.forward[0];
+        if (first == null) {
+            return 0L;
+        }
+        for (int i = 0; i < level; i++) {
+            update[i] = header;
+        }
+        unlink(first);
+        return first.member;
+    }
+
+    private void unlink(final Node target) {
+        for (int i = 0; i < level; i++) {
+            if (update[i].forward[i] == target) {
+                update[i].span[i] += target.span[i] - 1;
+                update[i].forward[i] = target.forward[i];
+            } else {
+                update[i].span[i]--;
+            }
+        }
+        while (level > 1 && header.forward[level - 1] == null) {
+            level--;
+        }
+        size--;
+    }
+
+    // node가 (score, member)보다 뒤에 있는지
+    private static boolean after(final Node node, final long score, final long member) {
+        return node.score > score || (node.score == score && node.member > member);
+    }
+
+    private static int randomLevel() {
+        int level = 1;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (level < MAX_LEVEL && random.nextInt(LEVEL_PROBABILITY) == 0) {
+            level++;
+        }
+        return level;
+    }
+
+    private static final class Node {
+
+        private final long score;
+        private final long member;
+        private final Node[] forward;
+        private final long[] span;
+
+        private Node(final int level, final long score, final long member) {
+            this.score = score;
+            this.member = member;
+            this.forward = new Node[level];
+            this.span = new long[level];
+        }
+
+        // (score, member) 보다 앞에 있는지
+        private boolean before(final long score, final long member) {
+            return this.score < score || (this.score == score && this.member < member);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.nhn.flow.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 대기열 우선순위 등급 (queue.priority.tiers: {등급}:{가중치}, 쉼표로 구분, 앞에 쓴 등급이 높은 등급)
+ * 진입 허용은 등급별 가중치 비율로 나눈다. (weighted fair queueing, 예: vip:3,normal:1 이면 VIP 3명당 일반 1명)
+ *
+ * 등록 시 등급별 가상 완료 시각 finish = max(가상 시각, 등급의 마지막 finish) + stride 를 발급하고,
+ * wait queue score = finish * MAX_TIERS + 등급 번호 로 한 sorted set에 넣는다.
+ * 진입 허용은 앞에서부터 꺼내기만 하면 가중치 비율이 지켜지므로 비용이 등급 수와 무관하게 O(batch)다.
+ * 가상 시각은 마지막으로 진입 허용된 사용자의 finish 이며, 비어 있던 등급은 가상 시각부터 다시 시작한다. (쌓아 둔 몫 없음)
+ * 같은 finish 끼리는 높은 등급이 먼저다.
+ */
+@Slf4j
+@Service
+public class PriorityTiers {
+
+    // 최대 등급 수 (score = finish * MAX_TIERS + 등급 번호)
+    public static final int MAX_TIERS = 16;
+    // stride = STRIDE_SCALE / 가중치 (1~10의 공배수라 흔한 가중치에서 비율이 정확히 나뉜다)
+    private static final long STRIDE_SCALE = 2520L;
+
+    private final List<String> names = new ArrayList<>();
+    private final List<Long> strides = new ArrayList<>();
+
+    public PriorityTiers(@Value("${queue.priority.tiers:vip:3,normal:1}") final String tiers) {
+        for (String tier : tiers.split(",")) {
+            String[] fields = tier.trim().split(":");
+            if (fields.length != 2 || fields[0].isBlank()) {
+                throw new IllegalArgumentException("잘못된 우선순위 등급 설정입니다: " + tier);
+            }
+            String name = fields[0].trim();
+            int weight = Integer.parseInt(fields[1].trim());
+            if (weight <= 0 || weight > STRIDE_SCALE || names.contains(name)) {
+                throw new IllegalArgumentException("잘못된 우선순위 등급 설정입니다: " + tier);
+            }
+            names.add(name);
+            strides.add(Math.max(1L, Math.round((double) STRIDE_SCALE / weight)));
+        }
+        if (names.size() > MAX_TIERS) {
+            throw new IllegalArgumentException("우선순위 등급은 최대 %d개입니다: %s".formatted(MAX_TIERS, tiers));
+        }
+        log.info("[Tier] 우선순위 등급 - {}", tiers);
+    }
+
+    // 등급 수
+    public int size() {
+        return names.size();
+    }
+
+    public List<String> names() {
+        return names;
+    }
+
+    public String name(final int tier) {
+        return names.get(tier);
+    }
+
+    // 등급 번호 (0이 가장 높은 등급, 없는 등급이면 -1)
+    public int indexOf(final String name) {
+        return names.indexOf(name);
+    }
+
+    // VIP 등록(is_vip)에 쓰는 등급: 가장 높은 등급
+    public int vipTier() {
+        return 0;
+    }
+
+    // 등급을 지정하지 않은 등록에 쓰는 등급: 가장 낮은 등급
+    public int defaultTier() {
+        return names.size() - 1;
+    }
+
+    // 등급별 가상 시각 증가량 (가중치에 반비례)
+    public long stride(final int tier) {
+        return strides.get(tier);
+    }
+
+    // 등급 순서대로 stride 목록 (일괄 등록 스크립트 인자, 쉼표로 구분)
+    public String joinedStrides() {
+        return strides.stream().map(String::valueOf).collect(Collectors.joining(","));
+    }
+
+    // wait queue score → 등급 번호
+    public static int tierOf(final long score) {
+        return (int) (score % MAX_TIERS);
+    }
+
+    // wait queue score → 가상 완료 시각
+    public static long finishOf(final long score) {
+        return score / MAX_TIERS;
+    }
+}
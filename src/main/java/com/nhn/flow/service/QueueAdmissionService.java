@@ -0,0 +1,204 @@
+package com.nhn.flow.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuples;
+
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 스케줄러 진입 허용 서비스
+ * 매 tick마다 활성 대기열별로 몇 명을 진입시킬지 정하고 allowUser를 호출한다.
+ *
+ * - fixed: 매 tick마다 max-allow-user-count 명을 진입시킨다.
+ * - adaptive: 진입 허용 인원(proceed)이 target-concurrency에 머물도록
+ *   관측된 이탈 속도(drain rate)와 남은 여유(headroom)로 tick당 인원을 정한다.
+ * 스케줄러 lease를 가진 인스턴스에서만 실행된다. (SchedulerLeaseService)
+ * 진입 허용 전에 세션 lease가 만료된 사용자를 먼저 회수해, 비워진 자리를 같은 tick에서 다시 채운다.
+ * 이탈한 대기 사용자도 먼저 정리해, 진입 허용 자리가 실제로 기다리는 사용자에게 돌아가게 한다.
+ * 이전 tick의 Redis 호출이 끝나지 않았으면 다음 tick은 건너뛴다. (같은 상태를 두 번 읽고 목표치를 넘겨 진입시키지 않도록)
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class QueueAdmissionService {
+
+    private static final String MODE_ADAPTIVE = "adaptive";
+    private static final double DRAIN_RATE_SMOOTHING = 0.3;  // EWMA 가중치
+
+    private final UserQueueService userQueueService;
+    private final SchedulerLeaseService schedulerLeaseService;
+
+    // 대기열별 adaptive 상태
+    private final Map<String, AdmissionState> states = new ConcurrentHashMap<>();
+    // 진행 중인 tick 여부
+    private final AtomicBoolean ticking = new AtomicBoolean();
+
+    @Value("${scheduler.enable}")
+    private boolean scheduling = false;
+
+    @Value("${scheduler.max-allow-user-count}")
+    private Long maxAllowUserCount;
+
+    @Value("${scheduler.admission.mode:fixed}")
+    private String admissionMode;
+
+    @Value("${scheduler.admission.target-concurrency:100}")
+    private long targetConcurrency;
+
+    @Value("${scheduler.admission.gain:0.5}")
+    private double gain;
+
+    /**
+     * adaptive 모드는 현재 진입 인원(이탈 반영)으로 headroom을 구하므로,
+     * 누적 진입 인원만 아는 watermark 모드와는 함께 쓸 수 없다.
+     */
+    @PostConstruct
+    void validateAdmissionMode() {
+        if (MODE_ADAPTIVE.equalsIgnoreCase(admissionMode) && userQueueService.isWatermarkMode()) {
+            throw new IllegalStateException("scheduler.admission.mode=adaptive 는 queue.admission-mode=watermark 와 함께 쓸 수 없습니다.");
+        }
+    }
+
+    @Scheduled(initialDelay = 5000, fixedDelayString = "${scheduler.tick-interval-ms:3000}")
+    public void scheduleAllowUser() {
+        if(!scheduling) {
+            log.debug("scheduler is disabled");
+            return;
+        }
+        // lease를 가진 인스턴스 하나만 진입 허용을 실행한다. (인스턴스 수와 무관하게 설정값만큼 진입)
+        OptionalLong fencingToken = schedulerLeaseService.currentFencingToken();
+        if (fencingToken.isEmpty()) {
+            log.debug("scheduler lease is not held by this instance");
+            return;
+        }
+        log.debug("called scheduleAllowUser with mode: {}, maxAllowUserCount: {}, fencingToken: {}",
+            admissionMode, maxAllowUserCount, fencingToken.getAsLong());
+
+        // 만료된 세션 lease를 먼저 회수한다. (adaptive 모드에서는 회수된 만큼 headroom이 바로 늘어난다)
+        // 키스페이스 SCAN 대신 활성 대기열 registry만 순회한다.
+        // 각 대기열의 진입 허용은 같은 커넥션에서 동시에 발행되어 하나의 파이프라인으로 전송된다.
+        // 이탈한 대기 사용자도 진입 허용 전에 정리한다.
+        // 대기열 key TTL도 tick에서 갱신한다. (등록마다 EXPIRE를 쓰지 않도록)
+        startTick(reclaimExpiredLeases()
+            .then(pruneStaleWaiters())
+            .thenMany(userQueueService.getActiveQueues())
+            .collectList()
+            .doOnNext(queues -> states.keySet().retainAll(Set.copyOf(queues)))
+            .flatMapIterable(queues -> queues)
+            .flatMap(queue -> userQueueService.refreshQueueTtl(queue)
+                .then(admissionCount(queue))
+                .filter(count -> count > 0)
+                .flatMap(count -> userQueueService.allowUser(queue, count, fencingToken.getAsLong()))
+                .defaultIfEmpty(0L)
+                .doOnNext(allowed -> onAdmitted(queue, allowed))
+                .map(allowed -> Tuples.of(queue, allowed)))
+            .doOnNext(tuple -> log.debug("allowed {} members of {} queue", tuple.getT2(), tuple.getT1()))
+            .then());
+    }
+
+    /**
+     * tick 실행 (이전 tick이 끝나지 않았으면 건너뛴다)
+     * @return 실행 여부
+     */
+    boolean startTick(final Mono<Void> tick) {
+        if (!ticking.compareAndSet(false, true)) {
+            log.debug("previous scheduler tick is still running, skip this tick");
+            return false;
+        }
+        tick.doFinally(signal -> ticking.set(false))
+            .subscribe(null, error -> log.warn("scheduler tick failed", error));
+        return true;
+    }
+
+    /**
+     * 진입 허용 사용자가 있는 대기열마다 만료된 세션 lease 회수
+     */
+    Mono<Long> reclaimExpiredLeases() {
+        return userQueueService.getLeasedQueues()
+            .flatMap(userQueueService::reclaimExpiredLeases)
+            .reduce(0L, Long::sum)
+            .doOnNext(reclaimed -> {
+                if (reclaimed > 0) {
+                    log.info("reclaimed {} expired session leases", reclaimed);
+                }
+            });
+    }
+
+    /**
+     * 활성 대기열마다 이탈한 대기 사용자 정리
+     */
+    Mono<Long> pruneStaleWaiters() {
+        return userQueueService.getActiveQueues()
+            .flatMap(userQueueService::pruneStaleWaiters)
+            .reduce(0L, Long::sum)
+            .doOnNext(pruned -> {
+                if (pruned > 0) {
+                    log.info("pruned {} stale waiters", pruned);
+                }
+            });
+    }
+
+    /**
+     * 이번 tick에 진입시킬 인원 계산
+     */
+    Mono<Long> admissionCount(final String queue) {
+        if (!MODE_ADAPTIVE.equalsIgnoreCase(admissionMode)) {
+            return Mono.just(maxAllowUserCount);
+        }
+        return userQueueService.getProceedQueueSize(queue)
+            .map(active -> states.computeIfAbsent(queue, key -> new AdmissionState())
+                .next(active, System.nanoTime()));
+    }
+
+    private void onAdmitted(final String queue, final long allowed) {
+        AdmissionState state = states.get(queue);
+        if (state != null) {
+            state.admitted(allowed);
+        }
+    }
+
+    /**
+     * 대기열별 adaptive 진입 상태
+     * 이전 tick의 active + 진입 인원과 현재 active의 차이로 이탈 인원을 구하고,
+     * 이탈 속도 예측분 + headroom * gain 만큼 진입시킨다. (headroom과 max-allow-user-count로 상한)
+     */
+    private final class AdmissionState {
+
+        private long lastActive = -1L;
+        private long lastAdmitted;
+        private long lastTickNanos;
+        private double drainRate;  // 초당 이탈 인원
+
+        synchronized long next(final long active, final long nowNanos) {
+            double elapsedSeconds = lastActive < 0 ? 0 : (nowNanos - lastTickNanos) / 1_000_000_000.0;
+            if (elapsedSeconds > 0) {
+                long drained = Math.max(0L, lastActive + lastAdmitted - active);
+                drainRate += DRAIN_RATE_SMOOTHING * (drained / elapsedSeconds - drainRate);
+            }
+            lastActive = active;
+            lastAdmitted = 0L;
+            lastTickNanos = nowNanos;
+
+            long headroom = targetConcurrency - active;
+            if (headroom <= 0) {
+                return 0L;
+            }
+            long desired = Math.round(drainRate * elapsedSeconds + headroom * gain);
+            return Math.max(1L, Math.min(desired, Math.min(headroom, maxAllowUserCount)));
+        }
+
+        synchronized void admitted(final long allowed) {
+            lastAdmitted += allowed;
+        }
+    }
+}
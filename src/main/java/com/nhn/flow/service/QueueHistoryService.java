@@ -1,43 +1,231 @@
 package com.nhn.flow.service;
 
 import com.nhn.flow.dto.QueueHistoryResponse;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.connection.stream.MapRecord;
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * 대기열 이력 서비스
+ * 대기열 전체 이력은 크기가 제한된 Redis Stream에 저장한다.
+ * (MAXLEN ~ 으로 개수를, MINID ~ 로 보관 기간을 제한하고 stream ID를 cursor로 페이지 조회)
+ *
+ * 사용자별 이력은 사용자마다 key를 만들지 않고 userId % user-shards 로 나눈 shard hash의 userId 필드에
+ * 고정 길이 항목(action 코드 1자 + timestamp 16진수 8자)을 최신순으로 이어 붙여 저장한다.
+ * shard당 사용자 수와 값 길이가 hash-max-listpack-entries(128) / hash-max-listpack-value(64) 이하이면
+ * listpack(Redis 7 미만은 ziplist)으로 인코딩되어 사용자당 key 오버헤드 없이 수십 바이트만 사용한다.
+ *
+ * 이력 쓰기 방식 (queue.history.write-mode)
+ * - inline: 등록/진입 허용 스크립트 안에서 함께 기록한다.
+ * - await-flush: 제한된 버퍼에 모아 batch-size개 또는 flush-interval-ms마다 스크립트 한 번으로 묶어 기록하고,
+ *   호출자는 자신의 이력이 기록될 때까지 기다린다.
+ * - fire-and-forget (기본값): 버퍼에 넣고 바로 리턴한다. (종료 시 남은 이력을 flush)
+ * 버퍼가 가득 차면(Redis가 느리면) 호출자가 직접 기록하며 기다린다. (backpressure)
+ * 이력은 등록 / 진입 허용이 이미 반영된 뒤에 기록하므로, 기록에 실패해도 호출자에게 에러를 넘기지 않고 로그와 실패 건수만 남긴다.
+ * (에러를 넘기면 이미 등록된 사용자가 재시도해 중복 등록 에러를 받는다)
+ */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class QueueHistoryService {
 
-    private static final String QUEUE_HISTORY_KEY = "users:queue:%s:history:%s";  // queue, userId
-    private static final String QUEUE_ALL_HISTORY_KEY = "users:queue:%s:all_history";  // queue
+    private static final String QUEUE_USER_HISTORY_KEY = "users:queue:%s:user_history:%s";  // queue, shard
+    private static final String QUEUE_ALL_HISTORY_KEY = "users:queue:%s:history_log";  // queue (stream)
+    // 전체 이력 stream 항목 필드
+    private static final String FIELD_USER_ID = "userId";
+    private static final String FIELD_ACTION = "action";
+    private static final String FIELD_TIMESTAMP = "timestamp";
+    // 사용자별 이력 항목 (action 코드 1자 + timestamp 16진수 8자)
+    private static final int ENTRY_LENGTH = 9;
+    private static final Map<String, Character> ACTION_CODES = Map.of("REGISTER", 'R', "ALLOW", 'A', "EXPIRED", 'E');
+    // 이력 쓰기 방식
+    private static final String WRITE_MODE_INLINE = "inline";
+    private static final String WRITE_MODE_FIRE_AND_FORGET = "fire-and-forget";
+    private static final Duration SHUTDOWN_FLUSH_TIMEOUT = Duration.ofSeconds(5);
     
     private final ReactiveRedisTemplate<String, String> reactiveRedisTemplate;
 
+    @Value("${queue.history.max-length:1000000}")
+    private long historyMaxLength;
+
+    @Value("${queue.history.retention-seconds:0}")
+    private long historyRetentionSeconds;
+
+    @Value("${queue.history.user-shards:16384}")
+    private long userHistoryShards;
+
+    @Value("${queue.history.user-max-entries:6}")
+    private long userHistoryMaxEntries;
+
+    @Value("${queue.history.user-ttl-seconds:86400}")
+    private long userHistoryTtlSeconds;
+
+    @Value("${queue.history.write-mode:fire-and-forget}")
+    private String writeMode;
+
+    @Value("${queue.history.write-behind.buffer-size:10000}")
+    private int writeBehindBufferSize;
+
+    @Value("${queue.history.write-behind.batch-size:500}")
+    private int writeBehindBatchSize;
+
+    @Value("${queue.history.write-behind.flush-interval-ms:5}")
+    private long writeBehindFlushIntervalMs;
+
+    // write-behind 버퍼 (inline 모드에서는 null)
+    private Sinks.Many<PendingHistory> pending;
+    private final Sinks.Empty<Void> drained = Sinks.empty();
+    // 기록에 실패한 이력 수
+    private final LongAdder failedHistories = new LongAdder();
+
+    @PostConstruct
+    public void startWriteBehind() {
+        if (isInlineWrite()) {
+            return;
+        }
+        pending = Sinks.many().unicast().onBackpressureBuffer(new ArrayBlockingQueue<>(writeBehindBufferSize));
+        pending.asFlux()
+            .bufferTimeout(writeBehindBatchSize, Duration.ofMillis(writeBehindFlushIntervalMs), true)
+            .concatMap(this::flush, 1)
+            .subscribe(null,
+                e -> log.error("[History] write-behind 종료 - error: {}", e.getMessage()),
+                drained::tryEmitEmpty);
+        log.info("[History] write-behind 시작 - mode: {}, bufferSize: {}, batchSize: {}, flushIntervalMs: {}",
+            writeMode, writeBehindBufferSize, writeBehindBatchSize, writeBehindFlushIntervalMs);
+    }
+
+    /**
+     * 종료 시 버퍼에 남은 이력 flush
+     */
+    @PreDestroy
+    public void flushOnShutdown() {
+        if (pending == null) {
+            return;
+        }
+        synchronized (this) {
+            pending.tryEmitComplete();
+        }
+        drained.asMono()
+            .timeout(SHUTDOWN_FLUSH_TIMEOUT)
+            .doOnError(e -> log.warn("[History] 종료 flush 시간 초과 - error: {}", e.getMessage()))
+            .onErrorComplete()
+            .block();
+    }
+
     /**
      * 대기열 이력 저장
      */
     public Mono<Void> saveHistory(final String queue, final Long userId, final String action) {
+        return saveHistories(queue, List.of(userId), action);
+    }
+
+    /**
+     * 여러 사용자 이력 저장 (진입 허용 묶음 등)
+     * inline 모드에서는 바로 기록하고, 그 외에는 write-behind 버퍼를 거친다.
+     */
+    Mono<Void> saveHistories(final String queue, final List<Long> userIds, final String action) {
+        Character code = ACTION_CODES.get(action);
+        if (code == null) {
+            return Mono.error(new IllegalArgumentException("지원하지 않는 이력 action 입니다: " + action));
+        }
+        if (userIds.isEmpty()) {
+            return Mono.empty();
+        }
         long timestamp = Instant.now().getEpochSecond();
-        String historyData = String.format("%d:%s:%d", userId, action, timestamp);
-        String userHistoryKey = QUEUE_HISTORY_KEY.formatted(queue, userId);
-        String allHistoryKey = QUEUE_ALL_HISTORY_KEY.formatted(queue);
-        
-        log.debug("[History] 이력 저장 - queue: {}, userId: {}, action: {}", queue, userId, action);
         
-        // 사용자별 이력과 전체 이력 모두 저장
-        return reactiveRedisTemplate.opsForList()
-            .leftPush(userHistoryKey, historyData)
-            .then(reactiveRedisTemplate.opsForList().leftPush(allHistoryKey, historyData))
+        log.debug("[History] 이력 저장 - queue: {}, userIds: {}, action: {}", queue, userIds.size(), action);
+
+        List<PendingHistory> histories = userIds.stream()
+            .map(userId -> new PendingHistory(queue, userId, action, timestamp, "%c%08x".formatted(code, timestamp), Sinks.empty()))
+            .toList();
+        if (pending == null) {
+            return writeOrLog(histories);
+        }
+        return enqueue(histories);
+    }
+
+    // 버퍼에 넣는다. 가득 찼거나 종료 중이면 남은 이력은 직접 기록한다.
+    private Mono<Void> enqueue(final List<PendingHistory> histories) {
+        int accepted = 0;
+        synchronized (this) {
+            while (accepted < histories.size() && pending.tryEmitNext(histories.get(accepted)).isSuccess()) {
+                accepted++;
+            }
+        }
+        Mono<Void> overflow = accepted < histories.size()
+            ? writeOrLog(histories.subList(accepted, histories.size()))
+                .doOnSubscribe(s -> log.debug("[History] write-behind 버퍼 초과, 직접 기록"))
+            : Mono.empty();
+        if (accepted == 0 || WRITE_MODE_FIRE_AND_FORGET.equalsIgnoreCase(writeMode)) {
+            return overflow;
+        }
+        // 묶음은 순서대로 flush 되므로 마지막으로 넣은 이력이 기록되면 앞선 이력도 기록된 것이다.
+        return histories.get(accepted - 1).flushed().asMono().then(overflow);
+    }
+
+    // write-behind 묶음 flush (실패해도 기다리는 호출자는 완료시키고, 이후 묶음은 계속 처리한다)
+    private Mono<Void> flush(final List<PendingHistory> histories) {
+        return writeOrLog(histories)
+            .doOnSuccess(unused -> histories.forEach(history -> history.flushed().tryEmitEmpty()));
+    }
+
+    // 이력 기록 (실패하면 로그와 실패 건수만 남기고 완료한다)
+    private Mono<Void> writeOrLog(final List<PendingHistory> histories) {
+        return write(histories)
+            .onErrorResume(e -> {
+                failedHistories.add(histories.size());
+                log.error("[History] 이력 기록 실패 - count: {}, error: {}", histories.size(), e.getMessage());
+                return Mono.empty();
+            });
+    }
+
+    // 이력 묶음 기록 (Lua 스크립트 한 번으로 처리)
+    private Mono<Void> write(final List<PendingHistory> histories) {
+        List<String> args = new ArrayList<>(4 + histories.size() * 6);
+        args.add(String.valueOf(historyMaxLength));
+        args.add(historyMinId());
+        args.add(String.valueOf(userHistoryMaxEntries));
+        args.add(String.valueOf(userHistoryTtlSeconds));
+        for (PendingHistory history : histories) {
+            args.add(userHistoryKey(history.queue(), history.userId()));
+            args.add(allHistoryKey(history.queue()));
+            args.add(history.userId().toString());
+            args.add(history.action());
+            args.add(String.valueOf(history.timestamp()));
+            args.add(history.entry());
+        }
+        return reactiveRedisTemplate.execute(QueueScripts.SAVE_HISTORY_BATCH, List.of(), args)
             .then();
     }
 
+    // 기록에 실패한 이력 수
+    public long getFailedHistories() {
+        return failedHistories.sum();
+    }
+
+    // 스크립트 안에서 이력을 함께 기록하는지 여부 (등록/진입 허용 스크립트 인자)
+    boolean isInlineWrite() {
+        return WRITE_MODE_INLINE.equalsIgnoreCase(writeMode);
+    }
+
     /**
      * 특정 사용자의 최근 이력 1개 조회
      */
@@ -50,35 +238,116 @@ public class QueueHistoryService {
      * 특정 사용자의 최근 이력 N개 조회
      */
     public Flux<QueueHistoryResponse> getHistoryList(final String queue, final Long userId, final int count) {
-        String historyKey = QUEUE_HISTORY_KEY.formatted(queue, userId);
+        String historyKey = userHistoryKey(queue, userId);
         
-        return reactiveRedisTemplate.opsForList()
-            .range(historyKey, 0, count - 1)
-            .map(data -> parseHistoryData(queue, data));
+        return reactiveRedisTemplate.<String, String>opsForHash()
+            .get(historyKey, userId.toString())
+            .flatMapIterable(entries -> parseHistoryEntries(queue, userId, entries))
+            .take(count);
     }
 
     /**
      * 대기열 전체 이력 조회 (최근 N개)
      */
     public Flux<QueueHistoryResponse> getQueueHistory(final String queue, final int count) {
-        String allHistoryKey = QUEUE_ALL_HISTORY_KEY.formatted(queue);
-        
-        return reactiveRedisTemplate.opsForList()
-            .range(allHistoryKey, 0, count - 1)
-            .map(data -> parseHistoryData(queue, data));
+        return getQueueHistory(queue, count, null, null);
     }
 
     /**
-     * 히스토리 데이터 파싱
-     * 형식: userId:action:timestamp
+     * 대기열 전체 이력 페이지 조회 (최신순)
+     * cursor(이전 페이지 마지막 항목의 id)보다 오래된 항목, 또는 until(epoch second) 이전 항목부터 N개를 조회한다.
+     * stream ID 범위 조회이므로 페이지가 깊어져도 비용이 늘지 않는다.
      */
-    private QueueHistoryResponse parseHistoryData(String queue, String data) {
-        String[] parts = data.split(":");
-        Long userId = Long.parseLong(parts[0]);
-        String action = parts[1];
-        Long timestamp = Long.parseLong(parts[2]);
-        
-        return new QueueHistoryResponse(queue, userId, action, timestamp);
+    public Flux<QueueHistoryResponse> getQueueHistory(final String queue, final int count, final String cursor, final Long until) {
+        Range<String> range;
+        if (cursor != null && !cursor.isBlank()) {
+            range = Range.leftUnbounded(Range.Bound.exclusive(cursor));
+        } else if (until != null) {
+            // stream ID 앞부분은 밀리초 timestamp이므로 until 초의 마지막 밀리초까지 포함한다.
+            range = Range.leftUnbounded(Range.Bound.inclusive(String.valueOf(until * 1000 + 999)));
+        } else {
+            range = Range.unbounded();
+        }
+
+        return reactiveRedisTemplate.<String, String>opsForStream()
+            .reverseRange(allHistoryKey(queue), range, Limit.limit().count(count))
+            .map(record -> parseHistoryRecord(queue, record));
+    }
+
+    // 사용자별 이력 shard key (등록 스크립트에서도 사용)
+    String userHistoryKey(final String queue, final Long userId) {
+        return QUEUE_USER_HISTORY_KEY.formatted(queue, userId % userHistoryShards);
+    }
+
+    // 사용자별 이력 shard key prefix (진입 허용 스크립트에서 userId % shard 수를 붙여 사용)
+    String userHistoryKeyPrefix(final String queue) {
+        return QUEUE_USER_HISTORY_KEY.formatted(queue, "");
+    }
+
+    long userHistoryShards() {
+        return userHistoryShards;
+    }
+
+    long userHistoryMaxEntries() {
+        return userHistoryMaxEntries;
+    }
+
+    long userHistoryTtlSeconds() {
+        return userHistoryTtlSeconds;
+    }
+
+    // 대기열 전체 이력 stream key (등록 스크립트에서도 사용)
+    String allHistoryKey(final String queue) {
+        return QUEUE_ALL_HISTORY_KEY.formatted(queue);
+    }
+
+    // 전체 이력 최대 길이 (XADD MAXLEN ~)
+    long historyMaxLength() {
+        return historyMaxLength;
+    }
+
+    // 전체 이력 보관 최소 ID (XTRIM MINID ~, 보관 기간이 없으면 빈 값)
+    String historyMinId() {
+        if (historyRetentionSeconds <= 0) {
+            return "";
+        }
+        return String.valueOf(Instant.now().minusSeconds(historyRetentionSeconds).toEpochMilli());
+    }
+
+    /**
+     * 사용자별 이력 파싱
+     * 형식: (action 코드 1자 + timestamp 16진수 8자) 반복, 최신순
+     */
+    private List<QueueHistoryResponse> parseHistoryEntries(final String queue, final Long userId, final String entries) {
+        List<QueueHistoryResponse> histories = new ArrayList<>(entries.length() / ENTRY_LENGTH);
+        for (int offset = 0; offset + ENTRY_LENGTH <= entries.length(); offset += ENTRY_LENGTH) {
+            String action = actionOf(entries.charAt(offset));
+            long timestamp = Long.parseLong(entries, offset + 1, offset + ENTRY_LENGTH, 16);
+            histories.add(new QueueHistoryResponse(queue, userId, action, timestamp));
+        }
+        return histories;
+    }
+
+    // 버퍼에 대기 중인 이력 (flushed: 기록 완료 신호)
+    private record PendingHistory(String queue, Long userId, String action, long timestamp, String entry, Sinks.Empty<Void> flushed) {
+    }
+
+    private static String actionOf(final char code) {
+        return ACTION_CODES.entrySet().stream()
+            .filter(entry -> entry.getValue() == code)
+            .map(Map.Entry::getKey)
+            .findFirst()
+            .orElse("UNKNOWN");
+    }
+
+    /**
+     * 전체 이력 stream 항목 파싱 (stream ID를 다음 페이지 cursor로 함께 리턴)
+     */
+    private QueueHistoryResponse parseHistoryRecord(final String queue, final MapRecord<String, String, String> record) {
+        Map<String, String> fields = record.getValue();
+        long timestamp = Long.parseLong(fields.get(FIELD_TIMESTAMP));
+        return new QueueHistoryResponse(queue, Long.parseLong(fields.get(FIELD_USER_ID)), fields.get(FIELD_ACTION),
+            timestamp, Instant.ofEpochSecond(timestamp).toString(), record.getId().getValue());
     }
 }
 
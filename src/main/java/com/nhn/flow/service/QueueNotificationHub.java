@@ -0,0 +1,437 @@
+package com.nhn.flow.service;
+
+import com.nhn.flow.dto.NotificationMetricsResponse;
+import com.nhn.flow.dto.QueueEvent;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.connection.ReactiveSubscription;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.ConnectableFlux;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 대기열 알림 허브
+ * 인스턴스당 대기열별로 Redis 구독을 하나만 유지하고, 메시지를 한 번만 파싱해
+ * userId → 구독자 라우팅 맵으로 관심 있는 연결에만 전달한다.
+ * (연결마다 구독하고 모든 메시지를 필터링하던 O(메시지 × 연결) 비용 제거)
+ * 연결마다 크기가 제한된 전송 버퍼를 두고, heartbeat는 공유 타이머 하나로 보낸다.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class QueueNotificationHub {
+
+    private static final String ALLOWED_BATCH_EVENT = "ALLOWED_BATCH";  // 진입 허용 묶음 알림 (allow.lua)
+    private static final String ALLOWED_EVENT = "ALLOWED";
+    private static final String RESYNC_EVENT = "RESYNC";  // 재전송할 수 없는 구간이 있어 상태를 다시 조회해야 함
+    public static final String SUBSCRIBED_EVENT = "SUBSCRIBED";  // Redis 구독 확인 (이후 발행된 이벤트는 빠지지 않음)
+    private static final String LOG_MESSAGE_FIELD = "message";  // 이벤트 로그 항목 필드 (publish_event.lua 등)
+    private static final long BROADCAST_USER_ID = 0L;
+    // 최신 값만 의미 있는 이벤트 (전송 전 이벤트를 덮어쓴다)
+    private static final Set<String> COALESCIBLE_EVENTS = Set.of("HEAD", "PRUNED", "RANK_CHANGED");
+
+    private final QueueNotificationService queueNotificationService;
+    private final ReactiveRedisTemplate<String, String> reactiveRedisTemplate;
+    private final AdmissionStatusCache admissionStatusCache;
+
+    private final Map<String, QueueChannel> channels = new ConcurrentHashMap<>();
+    private final Flux<Long> heartbeat = Flux.interval(Duration.ofSeconds(30)).share();
+    private final LongAdder coalescedEvents = new LongAdder();
+    private final LongAdder droppedEvents = new LongAdder();
+    private final LongAdder replayedConnections = new LongAdder();
+
+    @Value("${queue.notification.buffer-size:16}")
+    private int bufferSize;
+
+    /**
+     * 대기열 전체 이벤트 구독 (묶음 알림은 사용자별 ALLOWED 이벤트로 풀어서 전달)
+     */
+    public Flux<QueueEvent> subscribeQueue(final String queue) {
+        return subscribe(queue, BROADCAST_USER_ID);
+    }
+
+    /**
+     * 사용자 이벤트 구독 (해당 사용자 이벤트 + HEAD 같은 대기열 전체 알림)
+     */
+    public Flux<QueueEvent> subscribeUser(final String queue, final Long userId) {
+        return subscribe(queue, userId, false);
+    }
+
+    /**
+     * 사용자 이벤트 구독 (Redis SUBSCRIBE가 확인되면 SUBSCRIBED 이벤트를 먼저 보낸다)
+     * SUBSCRIBED 이후에 발행된 이벤트는 빠지지 않으므로, 받은 뒤에 조회한 상태에 이어서 이벤트를 적용하면 된다.
+     */
+    public Flux<QueueEvent> subscribeUserConfirmed(final String queue, final Long userId) {
+        return subscribe(queue, userId, true);
+    }
+
+    private Flux<QueueEvent> subscribe(final String queue, final long userId) {
+        return subscribe(queue, userId, false);
+    }
+
+    private Flux<QueueEvent> subscribe(final String queue, final long userId, final boolean confirm) {
+        return Flux.create(sink -> {
+            ConnectionBuffer buffer = new ConnectionBuffer(userId, sink);
+            QueueChannel channel = acquire(queue);
+            channel.add(userId, buffer);
+            sink.onRequest(n -> buffer.drain());
+            Disposable confirmation = confirm
+                ? channel.subscribed().subscribe(null, null, () -> buffer.offer(new QueueEvent(queue, userId, SUBSCRIBED_EVENT, "", null)))
+                : null;
+            sink.onDispose(() -> {
+                if (confirmation != null) {
+                    confirmation.dispose();
+                }
+                channel.remove(userId, buffer);
+                release(channel);
+            });
+        });
+    }
+
+    /**
+     * 재연결 구독 (Last-Event-ID 이후 이벤트를 이벤트 로그에서 재전송한 뒤 실시간 이벤트를 이어서 전달)
+     * 실시간 구독을 먼저 연결하고 Redis SUBSCRIBE가 확인된 뒤에 로그를 읽으므로 그 사이에 발행된 이벤트도 빠지지 않으며,
+     * 재전송한 마지막 ID 이하의 실시간 이벤트는 건너뛴다.
+     * 로그가 이미 잘려 나가 빠진 이벤트가 있을 수 있으면 RESYNC 이벤트를 먼저 보낸다. (클라이언트가 상태를 다시 조회)
+     */
+    public Flux<QueueEvent> subscribeQueue(final String queue, final String lastEventId) {
+        return resume(queue, BROADCAST_USER_ID, lastEventId);
+    }
+
+    public Flux<QueueEvent> subscribeUser(final String queue, final Long userId, final String lastEventId) {
+        return resume(queue, userId, lastEventId);
+    }
+
+    private Flux<QueueEvent> resume(final String queue, final long userId, final String lastEventId) {
+        if (lastEventId == null || lastEventId.isBlank() || parseEventId(lastEventId) == null) {
+            return subscribe(queue, userId);
+        }
+        return Flux.defer(() -> {
+            ConnectableFlux<QueueEvent> live = subscribe(queue, userId).publish();
+            Disposable connection = live.connect();
+            // SUBSCRIBE 확인 전에 로그를 읽으면 그 사이 발행된 이벤트가 재전송에도 실시간 구독에도 없다.
+            return subscribed(queue)
+                .thenMany(Flux.defer(() -> replay(queue, userId, lastEventId)))
+                .collectList()
+                .flatMapMany(missed -> {
+                    String lastReplayedId = missed.stream()
+                        .map(QueueEvent::id)
+                        .filter(Objects::nonNull)
+                        .reduce((previous, next) -> next)
+                        .orElse(lastEventId);
+                    return Flux.concat(Flux.fromIterable(missed),
+                        live.filter(event -> event.id() == null || compareEventIds(event.id(), lastReplayedId) > 0));
+                })
+                .doFinally(signal -> connection.dispose());
+        });
+    }
+
+    // 이벤트 로그에서 lastEventId 이후 이벤트 중 해당 구독자에게 라우팅되는 이벤트만 읽는다.
+    private Flux<QueueEvent> replay(final String queue, final long userId, final String lastEventId) {
+        return reactiveRedisTemplate.<String, String>opsForStream()
+            .range(queueNotificationService.getEventLogKey(queue),
+                Range.rightUnbounded(Range.Bound.inclusive(lastEventId)),
+                Limit.limit().count((int) Math.min(Integer.MAX_VALUE, queueNotificationService.getEventLogMaxLength() + 1)))
+            .switchOnFirst((first, records) -> {
+                // 로그의 첫 항목이 lastEventId가 아니면 그 사이 이벤트가 잘려 나갔을 수 있다.
+                boolean contiguous = first.hasValue() && lastEventId.equals(first.get().getId().getValue());
+                Flux<QueueEvent> missed = records
+                    .filter(record -> !lastEventId.equals(record.getId().getValue()))
+                    .concatMapIterable(record -> parse(queue, record.getId().getValue(), record.getValue().get(LOG_MESSAGE_FIELD)))
+                    .filter(event -> userId == BROADCAST_USER_ID || event.userId() == BROADCAST_USER_ID || event.userId() == userId);
+                if (contiguous) {
+                    return missed;
+                }
+                log.info("[Hub] 이벤트 로그에 없는 Last-Event-ID - queue: {}, lastEventId: {}", queue, lastEventId);
+                return Flux.concat(Mono.just(new QueueEvent(queue, BROADCAST_USER_ID, RESYNC_EVENT, "", null)), missed);
+            })
+            .doOnComplete(() -> replayedConnections.increment());
+    }
+
+    // 대기열 Redis 구독 확인 (구독자가 연결되어 있는 동안만 호출)
+    private Mono<Void> subscribed(final String queue) {
+        QueueChannel channel = channels.get(queue);
+        return channel != null ? channel.subscribed() : Mono.empty();
+    }
+
+    /**
+     * 이벤트 로그의 마지막 ID (로그가 비어 있으면 empty)
+     */
+    public Mono<String> getLatestEventId(final String queue) {
+        return reactiveRedisTemplate.<String, String>opsForStream()
+            .reverseRange(queueNotificationService.getEventLogKey(queue), Range.unbounded(), Limit.limit().count(1))
+            .next()
+            .map(record -> record.getId().getValue());
+    }
+
+    /**
+     * 메시지 형식: {로그 ID}|userId:event:data (로그 ID가 없는 메시지도 허용)
+     * 묶음 알림은 사용자별 ALLOWED 이벤트로 풀어서 리턴한다.
+     */
+    private static List<QueueEvent> parse(final String queue, final String id, final String message) {
+        if (message == null) {
+            return List.of();
+        }
+        String[] parts = message.split(":", 3);
+        if (parts.length < 2) {
+            return List.of();
+        }
+        long userId = Long.parseLong(parts[0]);
+        String event = parts[1];
+        String data = parts.length > 2 ? parts[2] : "";
+
+        if (ALLOWED_BATCH_EVENT.equals(event)) {
+            List<QueueEvent> events = new ArrayList<>();
+            for (String admitted : data.split(",")) {
+                events.add(new QueueEvent(queue, Long.parseLong(admitted), ALLOWED_EVENT, "true", id));
+            }
+            return events;
+        }
+        return List.of(new QueueEvent(queue, userId, event, data, id));
+    }
+
+    // Redis Stream ID (밀리초-순번) 비교
+    static int compareEventIds(final String left, final String right) {
+        long[] l = parseEventId(left);
+        long[] r = parseEventId(right);
+        int compared = Long.compare(l[0], r[0]);
+        return compared != 0 ? compared : Long.compare(l[1], r[1]);
+    }
+
+    private static long[] parseEventId(final String id) {
+        int separator = id.indexOf('-');
+        try {
+            return separator < 0
+                ? new long[]{Long.parseLong(id), 0L}
+                : new long[]{Long.parseLong(id.substring(0, separator)), Long.parseLong(id.substring(separator + 1))};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 공유 heartbeat (타이머 하나를 모든 연결이 함께 사용, 느린 연결은 heartbeat를 건너뛴다)
+     */
+    public Flux<Long> heartbeat() {
+        return heartbeat.onBackpressureDrop();
+    }
+
+    // 알림 전달 지표
+    public NotificationMetricsResponse getMetrics() {
+        int connections = channels.values().stream().mapToInt(channel -> channel.subscribers).sum();
+        return new NotificationMetricsResponse(channels.size(), connections, coalescedEvents.sum(), droppedEvents.sum(),
+            replayedConnections.sum());
+    }
+
+    // 현재 인스턴스의 대기열별 로컬 구독자 수
+    public int getSubscriberCount(final String queue) {
+        QueueChannel channel = channels.get(queue);
+        return channel != null ? channel.subscribers : 0;
+    }
+
+    private QueueChannel acquire(final String queue) {
+        return channels.compute(queue, (key, channel) -> {
+            QueueChannel acquired = channel != null ? channel : new QueueChannel(queue);
+            acquired.subscribers++;
+            return acquired;
+        });
+    }
+
+    private void release(final QueueChannel channel) {
+        channels.computeIfPresent(channel.queue, (key, current) -> {
+            if (current != channel || --current.subscribers > 0) {
+                return current;
+            }
+            current.close();
+            return null;
+        });
+    }
+
+    @PreDestroy
+    public void closeAll() {
+        channels.values().forEach(QueueChannel::close);
+        channels.clear();
+    }
+
+    /**
+     * 대기열별 Redis 구독과 로컬 구독자 라우팅 맵
+     */
+    private final class QueueChannel {
+
+        private final String queue;
+        // userId → 구독자 (같은 사용자가 여러 탭을 열 수 있다), BROADCAST_USER_ID는 대기열 전체 구독자
+        private final Map<Long, Set<ConnectionBuffer>> routes = new ConcurrentHashMap<>();
+        // 첫 Redis SUBSCRIBE 확인 시 완료
+        private final Sinks.Empty<Void> subscribed = Sinks.empty();
+        private final Disposable subscription;
+        private volatile int subscribers;  // channels.compute 안에서만 변경
+
+        private QueueChannel(final String queue) {
+            this.queue = queue;
+            this.subscription = reactiveRedisTemplate.listenToLater(queueNotificationService.getChannelTopic(queue))
+                .doOnNext(messages -> subscribed.tryEmitEmpty())
+                .flatMapMany(messages -> messages.map(ReactiveSubscription.Message::getMessage))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofMillis(500)).maxBackoff(Duration.ofSeconds(10)))
+                .subscribe(this::dispatch, e -> log.error("[Hub] 알림 구독 종료 - queue: {}, error: {}", queue, e.getMessage()));
+            log.info("[Hub] 알림 구독 시작 - queue: {}", queue);
+        }
+
+        Mono<Void> subscribed() {
+            return subscribed.asMono();
+        }
+
+        void add(final long userId, final ConnectionBuffer buffer) {
+            routes.computeIfAbsent(userId, key -> ConcurrentHashMap.newKeySet()).add(buffer);
+        }
+
+        void remove(final long userId, final ConnectionBuffer buffer) {
+            routes.computeIfPresent(userId, (key, buffers) -> {
+                buffers.remove(buffer);
+                return buffers.isEmpty() ? null : buffers;
+            });
+        }
+
+        void close() {
+            subscription.dispose();
+            log.info("[Hub] 알림 구독 해제 - queue: {}", queue);
+        }
+
+        /**
+         * 메시지 형식: {로그 ID}|userId:event:data
+         * 묶음 알림은 진입 허용된 사용자에게만 라우팅
+         */
+        private void dispatch(final String message) {
+            int separator = message.indexOf('|');
+            String id = separator < 0 ? null : message.substring(0, separator);
+            for (QueueEvent queueEvent : parse(queue, id, message.substring(separator + 1))) {
+                // 구독 중인 대기열의 진입 허용은 near cache에 미리 채워 둔다. (이어지는 /allowed 조회를 메모리에서 처리)
+                if (ALLOWED_EVENT.equals(queueEvent.event())) {
+                    admissionStatusCache.markAllowed(queue, queueEvent.userId());
+                }
+                if (queueEvent.userId() == BROADCAST_USER_ID) {
+                    routes.values().forEach(buffers -> buffers.forEach(buffer -> buffer.offer(queueEvent)));
+                } else {
+                    deliver(queueEvent.userId(), queueEvent);
+                }
+            }
+        }
+
+        // 해당 사용자 구독자 + 대기열 전체 구독자에게 전달
+        private void deliver(final long userId, final QueueEvent queueEvent) {
+            Set<ConnectionBuffer> userBuffers = routes.get(userId);
+            if (userBuffers != null) {
+                userBuffers.forEach(buffer -> buffer.offer(queueEvent));
+            }
+            Set<ConnectionBuffer> queueBuffers = routes.get(BROADCAST_USER_ID);
+            if (queueBuffers != null) {
+                queueBuffers.forEach(buffer -> buffer.offer(queueEvent));
+            }
+        }
+    }
+
+    /**
+     * 연결별 전송 버퍼
+     * 클라이언트가 요청한 만큼만 내보내고, 밀린 이벤트는 다음 규칙으로 크기를 제한한다.
+     * - HEAD, PRUNED, RANK_CHANGED: 같은 종류(사용자별)의 전송 전 이벤트를 버리고 최신 값을 맨 뒤에 넣는다. (coalesce, 전송 순서 = 로그 ID 순서)
+     * - 해당 사용자의 ALLOWED: 종료 이벤트이므로 버리지 않는다.
+     * - 그 외: buffer-size를 넘으면 이후 이벤트를 받지 않고, 밀린 이벤트를 모두 보낸 뒤 스트림을 끝낸다.
+     *   (이벤트를 말없이 버리면 클라이언트의 Last-Event-ID가 건너뛰므로, 재연결해 마지막으로 받은 ID부터 재전송받게 한다)
+     */
+    private final class ConnectionBuffer {
+
+        private final long userId;
+        private final FluxSink<QueueEvent> sink;
+        // 전송 순서 (QueueEvent 또는 coalesce key)
+        private final Deque<Object> pending = new ArrayDeque<>();
+        // coalesce key → 전송 전 최신 이벤트
+        private final Map<String, QueueEvent> latest = new HashMap<>();
+        private int terminalCount;
+        private boolean overflowed;
+
+        private ConnectionBuffer(final long userId, final FluxSink<QueueEvent> sink) {
+            this.userId = userId;
+            this.sink = sink;
+        }
+
+        synchronized void offer(final QueueEvent event) {
+            if (overflowed) {
+                droppedEvents.increment();
+                return;
+            }
+            if (COALESCIBLE_EVENTS.contains(event.event())) {
+                String key = event.event() + ":" + event.userId();
+                if (latest.containsKey(key)) {
+                    // 이전 자리에 새 ID를 넣으면 ID 순서가 뒤바뀌므로 자리를 맨 뒤로 옮긴다.
+                    pending.remove(key);
+                    pending.add(key);
+                    latest.put(key, event);
+                    coalescedEvents.increment();
+                } else if (pending.size() - terminalCount >= bufferSize) {
+                    overflow(event);
+                } else {
+                    latest.put(key, event);
+                    pending.add(key);
+                }
+            } else if (isTerminal(event)) {
+                pending.add(event);
+                terminalCount++;
+            } else if (pending.size() - terminalCount >= bufferSize) {
+                overflow(event);
+            } else {
+                pending.add(event);
+            }
+            drain();
+        }
+
+        private void overflow(final QueueEvent event) {
+            overflowed = true;
+            droppedEvents.increment();
+            log.info("[Hub] 전송 버퍼 초과로 연결 종료 - queue: {}, userId: {}, event: {}", event.queue(), userId, event.event());
+        }
+
+        synchronized void drain() {
+            while (sink.requestedFromDownstream() > 0 && !pending.isEmpty()) {
+                Object next = pending.poll();
+                QueueEvent event;
+                if (next instanceof String key) {
+                    event = latest.remove(key);
+                } else {
+                    event = (QueueEvent) next;
+                    if (isTerminal(event)) {
+                        terminalCount--;
+                    }
+                }
+                sink.next(event);
+            }
+            if (overflowed && pending.isEmpty()) {
+                sink.complete();
+            }
+        }
+
+        private boolean isTerminal(final QueueEvent event) {
+            return userId != BROADCAST_USER_ID && "ALLOWED".equals(event.event());
+        }
+    }
+}
@@ -2,13 +2,20 @@ package com.nhn.flow.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.PatternTopic;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+import java.util.stream.Collectors;
+
 /**
  * Redis Pub/Sub을 이용한 실시간 알림 서비스
+ * 발행하는 이벤트는 대기열별 이벤트 로그(크기가 제한된 Redis Stream)에도 기록되고,
+ * 로그 ID를 붙여 "{로그 ID}|userId:event:data" 형식으로 발행된다. (재연결 시 Last-Event-ID 이후 재전송)
  */
 @Slf4j
 @Service
@@ -16,9 +23,17 @@ import reactor.core.publisher.Mono;
 public class QueueNotificationService {
 
     private static final String QUEUE_NOTIFICATION_CHANNEL = "queue:notification:%s";  // queue name
+    private static final String QUEUE_NOTIFICATION_LOG_KEY = "queue:notification:%s:log";  // queue name
+    // 진입 취소 알림 (모든 인스턴스가 구독, 메시지: "{queue}|{userId},{userId},...")
+    private static final String ADMISSION_REVOKED_CHANNEL = "queue:admission:revoked";
+    // 대기열 변경 feed (인스턴스별 wait queue mirror용, 메시지: "{버전}|{R: 등록, A: 진입 허용, D: 이탈 정리}|{데이터}")
+    private static final String QUEUE_CHANGE_CHANNEL_PREFIX = "queue:change:";
     
     private final ReactiveRedisTemplate<String, String> reactiveRedisTemplate;
 
+    @Value("${queue.notification.log-max-length:10000}")
+    private long eventLogMaxLength;
+
     /**
      * 대기열 이벤트 발행
      * @param queue 큐 이름
@@ -32,7 +47,9 @@ public class QueueNotificationService {
         
         log.debug("[Notification] 이벤트 발행 - queue: {}, userId: {}, event: {}", queue, userId, event);
         
-        return reactiveRedisTemplate.convertAndSend(channel, message)
+        return reactiveRedisTemplate.execute(QueueScripts.PUBLISH_EVENT,
+                List.of(getEventLogKey(queue)), List.of(channel, message, String.valueOf(eventLogMaxLength)))
+            .next()
             .doOnSuccess(count -> log.debug("[Notification] 이벤트 전송됨 - 구독자 수: {}", count));
     }
 
@@ -57,11 +74,56 @@ public class QueueNotificationService {
         return publishEvent(queue, userId, "REGISTERED", String.valueOf(rank));
     }
 
+    /**
+     * 진입 취소 알림 (세션 lease 반납/회수, 인스턴스별 진입 상태 near cache 무효화)
+     */
+    public Mono<Long> notifyAdmissionRevoked(final String queue, final List<Long> userIds) {
+        String message = queue + '|' + userIds.stream().map(String::valueOf).collect(Collectors.joining(","));
+        return reactiveRedisTemplate.convertAndSend(ADMISSION_REVOKED_CHANNEL, message);
+    }
+
+    /**
+     * 진입 취소 알림 채널 (구독용)
+     */
+    public ChannelTopic getAdmissionRevokedTopic() {
+        return new ChannelTopic(ADMISSION_REVOKED_CHANNEL);
+    }
+
+    /**
+     * 대기열 변경 feed 채널 (등록 / 진입 허용 / 이탈 정리 스크립트가 발행)
+     */
+    public ChannelTopic getQueueChangeTopic(final String queue) {
+        return new ChannelTopic(QUEUE_CHANGE_CHANNEL_PREFIX + queue);
+    }
+
+    /**
+     * 모든 대기열 변경 feed 패턴 (구독용)
+     */
+    public PatternTopic getQueueChangePattern() {
+        return new PatternTopic(QUEUE_CHANGE_CHANNEL_PREFIX + "*");
+    }
+
+    // 변경 feed 채널 이름에서 대기열 이름 추출
+    public String getQueueOfChangeChannel(final String channel) {
+        return channel.substring(QUEUE_CHANGE_CHANNEL_PREFIX.length());
+    }
+
     /**
      * 채널 이름 조회 (구독용)
      */
     public ChannelTopic getChannelTopic(final String queue) {
         return new ChannelTopic(QUEUE_NOTIFICATION_CHANNEL.formatted(queue));
     }
-}
 
+    /**
+     * 이벤트 로그 key 조회 (재전송용)
+     */
+    public String getEventLogKey(final String queue) {
+        return QUEUE_NOTIFICATION_LOG_KEY.formatted(queue);
+    }
+
+    // 이벤트 로그 최대 길이 (XADD MAXLEN ~)
+    public long getEventLogMaxLength() {
+        return eventLogMaxLength;
+    }
+}
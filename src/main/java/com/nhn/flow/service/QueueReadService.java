@@ -0,0 +1,241 @@
+package com.nhn.flow.service;
+
+import com.nhn.flow.dto.QueueLookupResponse;
+import com.nhn.flow.dto.QueueReadMetricsResponse;
+import com.nhn.flow.dto.QueueStatisticsResponse;
+import com.nhn.flow.exception.ErrorCode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+
+/**
+ * 조회 요청 묶음 처리 서비스 (polling 조회 API 앞단)
+ * - 통계: 같은 대기열의 진행 중인 조회가 있으면 새로 조회하지 않고 그 결과를 함께 받는다.
+ * - 순위 / 진입 허용 여부: batch-window 동안 들어온 같은 대기열 조회를 모아 스크립트 한 번으로 조회한다.
+ *   (같은 사용자의 중복 조회는 하나로 합쳐진다)
+ * - 진입 허용 여부: 이미 진입 허용된 사용자는 near cache(AdmissionStatusCache)에서 바로 응답한다.
+ * - 순위: 인스턴스별 wait queue mirror(WaitQueueMirror)가 응답할 수 있으면 Redis 조회 없이 응답한다.
+ * - 알림으로 인한 순위 재조회: HEAD / PRUNED 알림 하나에 대기실 연결들이 한꺼번에 재조회하므로
+ *   batch-window가 0(polling 조회를 묶지 않음)이어도 최소 window로 묶어 대기열당 스크립트 한 번으로 조회한다.
+ * - 일괄 조회: 요청 하나로 받은 사용자들을 chunk 단위로 조회해 조회되는 대로 내보낸다.
+ * HTTP 요청 수가 같아도 Redis 호출 수는 대기열 수 × window 수준으로 줄어든다.
+ */
+@Slf4j
+@Service
+public class QueueReadService {
+
+    // 일괄 조회 시 동시에 보내는 chunk 조회 수
+    private static final int LOOKUP_CONCURRENCY = 4;
+    // 알림으로 인한 순위 재조회를 묶는 최소 시간
+    private static final Duration MIN_REFRESH_WINDOW = Duration.ofMillis(1);
+
+    private final UserQueueService userQueueService;
+    private final AdmissionStatusCache admissionStatusCache;
+    private final WaitQueueMirror waitQueueMirror;
+    private final int maxBatchSize;
+    private final int lookupMaxUsers;
+    private final int lookupChunkSize;
+
+    // 대기열별 진행 중인 통계 조회
+    private final Map<String, Mono<QueueStatisticsResponse>> inflightStatistics = new ConcurrentHashMap<>();
+    private final BatchLoader<Long> rankLoader;
+    private final BatchLoader<Long> rankRefreshLoader;
+    private final BatchLoader<Boolean> allowedLoader;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder redisCalls = new LongAdder();
+
+    public QueueReadService(final UserQueueService userQueueService,
+                            final AdmissionStatusCache admissionStatusCache,
+                            final WaitQueueMirror waitQueueMirror,
+                            @Value("${queue.read.batch-window-ms:2}") final long batchWindowMillis,
+                            @Value("${queue.read.max-batch-size:256}") final int maxBatchSize,
+                            @Value("${queue.batch.max-users:5000}") final int lookupMaxUsers,
+                            @Value("${queue.batch.chunk-size:500}") final int lookupChunkSize) {
+        this.userQueueService = userQueueService;
+        this.admissionStatusCache = admissionStatusCache;
+        this.waitQueueMirror = waitQueueMirror;
+        this.maxBatchSize = maxBatchSize;
+        this.lookupMaxUsers = lookupMaxUsers;
+        this.lookupChunkSize = lookupChunkSize;
+        Duration batchWindow = Duration.ofMillis(batchWindowMillis);
+        this.rankLoader = new BatchLoader<>(userQueueService::getRanks, batchWindow);
+        this.rankRefreshLoader = new BatchLoader<>(userQueueService::getRanks,
+            batchWindow.isZero() ? MIN_REFRESH_WINDOW : batchWindow);
+        this.allowedLoader = new BatchLoader<>(userQueueService::getAllowed, batchWindow);
+    }
+
+    // 대기 순위 조회 (대기 중이 아니면 -1, mirror가 응답할 수 있으면 Redis 조회 없이 응답)
+    public Mono<Long> getRank(final String queue, final Long userId) {
+        return getRank(queue, userId, rankLoader);
+    }
+
+    // 알림(HEAD / PRUNED)으로 인한 순위 재조회 (batch-window가 0이어도 같은 대기열 재조회를 묶는다)
+    public Mono<Long> refreshRank(final String queue, final Long userId) {
+        return getRank(queue, userId, rankRefreshLoader);
+    }
+
+    private Mono<Long> getRank(final String queue, final Long userId, final BatchLoader<Long> loader) {
+        return Mono.defer(() -> {
+            Long rank = waitQueueMirror.getRank(queue, userId);
+            if (rank != null) {
+                requests.increment();
+                return Mono.just(rank);
+            }
+            return loader.load(queue, userId);
+        });
+    }
+
+    // 진입 허용 여부 조회 (near cache에 있으면 Redis 조회 없이 응답)
+    public Mono<Boolean> isAllowed(final String queue, final Long userId) {
+        return Mono.defer(() -> {
+            if (admissionStatusCache.isAllowed(queue, userId)) {
+                requests.increment();
+                return Mono.just(true);
+            }
+            return allowedLoader.load(queue, userId)
+                .doOnNext(allowed -> {
+                    if (allowed) {
+                        admissionStatusCache.markAllowed(queue, userId);
+                    }
+                });
+        });
+    }
+
+    // 대기열 통계 조회 (진행 중인 조회가 있으면 결과를 공유)
+    public Mono<QueueStatisticsResponse> getStatistics(final String queue) {
+        return Mono.defer(() -> {
+            requests.increment();
+            return inflightStatistics.computeIfAbsent(queue, key -> {
+                redisCalls.increment();
+                // 자기 자신일 때만 제거한다. (끝난 조회가 그 사이 새로 시작된 조회를 지우지 않도록)
+                AtomicReference<Mono<QueueStatisticsResponse>> self = new AtomicReference<>();
+                Mono<QueueStatisticsResponse> shared = userQueueService.getStatistics(key)
+                    .doFinally(signal -> inflightStatistics.remove(key, self.get()))
+                    .cache();
+                self.set(shared);
+                return shared;
+            });
+        });
+    }
+
+    /**
+     * 여러 사용자 순위 / 진입 허용 여부 일괄 조회 (결과 순서는 요청과 같다, null 항목은 건너뛴다)
+     * chunk-size 명씩 순위 / 진입 허용 여부를 한 번씩 조회하고, 조회된 chunk부터 바로 내보낸다.
+     */
+    public Flux<QueueLookupResponse> lookup(final String queue, final List<Long> userIds) {
+        if (userIds == null || userIds.isEmpty() || userIds.size() > lookupMaxUsers) {
+            return Flux.error(ErrorCode.INVALID_BATCH_SIZE.build(lookupMaxUsers));
+        }
+        return Flux.fromIterable(userIds)
+            .filter(Objects::nonNull)
+            .buffer(lookupChunkSize)
+            .flatMapSequential(chunk -> lookupChunk(queue, chunk), LOOKUP_CONCURRENCY);
+    }
+
+    private Flux<QueueLookupResponse> lookupChunk(final String queue, final List<Long> userIds) {
+        return Mono.defer(() -> {
+                requests.add(userIds.size());
+                redisCalls.add(2);
+                return Mono.zip(userQueueService.getRanks(queue, userIds), userQueueService.getAllowed(queue, userIds));
+            })
+            .flatMapIterable(result -> {
+                List<QueueLookupResponse> responses = new ArrayList<>(userIds.size());
+                for (int i = 0; i < userIds.size(); i++) {
+                    boolean allowed = result.getT2().get(i);
+                    if (allowed) {
+                        admissionStatusCache.markAllowed(queue, userIds.get(i));
+                    }
+                    responses.add(new QueueLookupResponse(userIds.get(i), result.getT1().get(i), allowed));
+                }
+                return responses;
+            });
+    }
+
+    public QueueReadMetricsResponse getMetrics() {
+        return new QueueReadMetricsResponse(requests.sum(), redisCalls.sum(), admissionStatusCache.getHits(),
+            waitQueueMirror.getHits());
+    }
+
+    /**
+     * 대기열별 조회 묶음 (batch-window가 지나거나 max-batch-size가 차면 한 번에 조회)
+     */
+    private final class BatchLoader<V> {
+
+        private final BiFunction<String, List<Long>, Mono<List<V>>> loader;
+        private final Duration batchWindow;
+        // 대기열별 모으는 중인 묶음 (this로 동기화)
+        private final Map<String, Map<Long, Sinks.One<V>>> pending = new HashMap<>();
+
+        private BatchLoader(final BiFunction<String, List<Long>, Mono<List<V>>> loader, final Duration batchWindow) {
+            this.loader = loader;
+            this.batchWindow = batchWindow;
+        }
+
+        Mono<V> load(final String queue, final Long userId) {
+            return Mono.defer(() -> {
+                requests.increment();
+                if (batchWindow.isZero()) {
+                    redisCalls.increment();
+                    return loader.apply(queue, List.of(userId)).map(values -> values.get(0));
+                }
+                Map<Long, Sinks.One<V>> batch;
+                Sinks.One<V> sink;
+                boolean full;
+                synchronized (this) {
+                    batch = pending.get(queue);
+                    if (batch == null) {
+                        batch = new LinkedHashMap<>();
+                        pending.put(queue, batch);
+                        Map<Long, Sinks.One<V>> scheduled = batch;
+                        Mono.delay(batchWindow).subscribe(tick -> flush(queue, scheduled));
+                    }
+                    sink = batch.computeIfAbsent(userId, key -> Sinks.one());
+                    full = batch.size() >= maxBatchSize;
+                }
+                if (full) {
+                    flush(queue, batch);
+                }
+                return sink.asMono();
+            });
+        }
+
+        private void flush(final String queue, final Map<Long, Sinks.One<V>> batch) {
+            synchronized (this) {
+                // 이미 다른 경로(window 만료 / 크기 초과)에서 보낸 묶음이면 무시
+                if (pending.get(queue) != batch) {
+                    return;
+                }
+                pending.remove(queue);
+            }
+            List<Long> userIds = List.copyOf(batch.keySet());
+            redisCalls.increment();
+            loader.apply(queue, userIds).subscribe(
+                values -> {
+                    for (int i = 0; i < userIds.size(); i++) {
+                        batch.get(userIds.get(i)).tryEmitValue(values.get(i));
+                    }
+                },
+                error -> {
+                    log.warn("[Read] 묶음 조회 실패 - queue: {}, size: {}", queue, userIds.size(), error);
+                    batch.values().forEach(sink -> sink.tryEmitError(error));
+                },
+                () -> batch.values().forEach(Sinks.One::tryEmitEmpty));
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.nhn.flow.service;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.List;
+
+/**
+ * 대기열 Lua 스크립트 모음
+ * 여러 Redis 명령을 서버에서 원자적으로 한 번에 실행해 왕복 횟수를 줄인다.
+ */
+final class QueueScripts {
+
+    /**
+     * 대기열 등록 (용량 확인, 순번 발급, 등록, TTL, 순위, 이력, 알림)
+     * 반환: {status, rank, 가입 순번}
+     */
+    static final RedisScript<List<Object>> REGISTER = multi("register");
+
+    /**
+     * 대기열 일괄 등록 (등록 요청 묶음을 한 번에 처리)
+     * 반환: 요청 순서대로 {status, rank, 가입 순번} 을 이어 붙인 목록
+     */
+    static final RedisScript<List<Object>> REGISTER_BATCH = multi("register_batch");
+
+    /**
+     * 진입 허용 (wait → proceed 이동, 이력, 묶음 알림)
+     * 반환: 진입 허용된 userId 목록
+     */
+    static final RedisScript<List<Object>> ALLOW = multi("allow");
+
+    /**
+     * 대기열 등록 (watermark 모드)
+     * 반환: {status, rank, 가입 순번}
+     */
+    static final RedisScript<List<Object>> REGISTER_WATERMARK = multi("register_watermark");
+
+    /**
+     * 진입 허용 (watermark 모드)
+     * 반환: 진입 허용된 인원
+     */
+    static final RedisScript<Long> ALLOW_WATERMARK = single("allow_watermark", Long.class);
+
+    /**
+     * 여러 사용자 순위 일괄 조회 (wait 조회 시 liveness 갱신 포함)
+     * 반환: userId 순서대로 0부터 시작하는 순위 (멤버가 아니면 -1)
+     */
+    static final RedisScript<List<Object>> RANKS = multi("ranks");
+
+    /**
+     * 등급별 순위 조회 (전체 순위 + 같은 등급 안 순위, liveness 갱신 포함)
+     * 반환: {등급 번호, 0부터 시작하는 전체 순위, 0부터 시작하는 등급 안 순위} (대기 중이 아니면 {-1, -1, -1})
+     */
+    static final RedisScript<List<Object>> TIER_RANK = multi("tier_rank");
+
+    /**
+     * 가입 순번 조회 (등급별 대기 set의 score)
+     * 반환: 가입 순번 (대기 중이 아니면 -1)
+     */
+    static final RedisScript<Long> POSITION = single("position", Long.class);
+
+    /**
+     * 대기열 통계 (대기 인원, 진입 허용 인원, 등급별 대기 인원)
+     * 반환: {대기 인원, 진입 허용 인원, 등급별 대기 인원...}
+     */
+    static final RedisScript<List<Object>> QUEUE_STATS = multi("queue_stats");
+
+    /**
+     * 이력 묶음 저장 (사용자별 이력 + 대기열 전체 이력 stream)
+     * 반환: 저장한 이력 수
+     */
+    static final RedisScript<Long> SAVE_HISTORY_BATCH = single("save_history_batch", Long.class);
+
+    /**
+     * 알림 이벤트 발행 (이벤트 로그 기록 + 로그 ID를 붙여 발행)
+     * 반환: 메시지를 받은 구독자 수
+     */
+    static final RedisScript<Long> PUBLISH_EVENT = single("publish_event", Long.class);
+
+    /**
+     * 마지막 활동 시각 갱신 (세션 lease 갱신, 대기 사용자 liveness 갱신)
+     * 반환: 1(갱신), 0(멤버가 아님)
+     */
+    static final RedisScript<Long> TOUCH = single("touch", Long.class);
+
+    /**
+     * 만료된 세션 lease 회수 (proceed score 범위 삭제)
+     * 반환: 회수한 인원
+     */
+    static final RedisScript<Long> SESSION_LEASE_RECLAIM = single("lease_reclaim", Long.class);
+
+    /**
+     * 이탈한 대기 사용자 정리 (마지막 활동 시각 기준, batch 단위)
+     * 반환: 제거한 인원
+     */
+    static final RedisScript<Long> PRUNE_WAITERS = single("prune_waiters", Long.class);
+
+    /**
+     * 활성 대기열 key TTL 갱신 (남은 시간이 절반 이하일 때만)
+     * 반환: 갱신 여부 (1/0)
+     */
+    static final RedisScript<Long> EXPIRE_QUEUE = single("expire_queue", Long.class);
+
+    /**
+     * 여러 사용자 liveness 일괄 갱신 (mirror에서 응답한 순위 조회)
+     * 반환: 갱신 요청한 인원
+     */
+    static final RedisScript<Long> TOUCH_ALL = single("touch_all", Long.class);
+
+    /**
+     * wait queue mirror 초기화 / 재동기화 (변경 feed 버전 + wait queue 전체)
+     * 반환: {버전, userId, score, ...}
+     */
+    static final RedisScript<List<Object>> MIRROR_SNAPSHOT = multi("mirror_snapshot");
+
+    /**
+     * 스케줄러 lease 획득/갱신
+     * 반환: fencing token (다른 인스턴스가 소유 중이면 -1)
+     */
+    static final RedisScript<Long> LEASE = single("lease", Long.class);
+
+    /**
+     * 스케줄러 lease 반납
+     */
+    static final RedisScript<Long> LEASE_RELEASE = single("lease_release", Long.class);
+
+    private QueueScripts() {
+    }
+
+    private static <T> RedisScript<T> single(final String name, final Class<T> resultType) {
+        return RedisScript.of(new ClassPathResource("scripts/%s.lua".formatted(name)), resultType);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static RedisScript<List<Object>> multi(final String name) {
+        return (RedisScript) RedisScript.of(new ClassPathResource("scripts/%s.lua".formatted(name)), List.class);
+    }
+
+    static long toLong(final Object value) {
+        return value instanceof Number number ? number.longValue() : Long.parseLong(String.valueOf(value));
+    }
+}
@@ -0,0 +1,102 @@
+package com.nhn.flow.service;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * 대기열 저장소 SPI (proceed-set 모드의 등록 / 순위 / 진입 허용 / 크기 / 진입 여부)
+ * queue.store 설정으로 구현을 고른다.
+ * - redis (기본값): Redis Lua 스크립트. 이력, 알림, liveness, TTL을 같은 스크립트 안에서 함께 처리한다.
+ * - memory: 프로세스 내 순서 통계 구조 (MemoryQueueStore). 단일 노드 배포와 Redis 없는 빠른 테스트용
+ *   이력과 알림은 저장소 호출 뒤 UserQueueService가 기록한다.
+ *
+ * 순서: score = 가상 완료 시각 * PriorityTiers.MAX_TIERS + 등급 번호, 값이 작을수록 앞순위
+ * 등급별 가중치 비율로 섞여 있어 앞에서부터 꺼내면 weighted fair 진입이 된다. (같은 등급 안에서는 선착순, PriorityTiers)
+ * 등급별 대기 목록(score: 가입 순번)을 함께 유지해 등급 안 순위와 등급별 대기 인원을 조회한다.
+ * watermark 모드는 Redis 순번 hash를 직접 사용하므로 이 SPI를 거치지 않는다. (등급 미지원)
+ */
+public interface QueueStore {
+
+    /**
+     * 대기열 등록 (이미 등록된 사용자는 기존 순위와 순번을 리턴)
+     * @param tier 등급 번호 (0이 가장 높은 등급, PriorityTiers)
+     * @param capacity 최대 대기 인원 (0이면 무제한)
+     */
+    Mono<Registration> register(String queue, long userId, int tier, long capacity);
+
+    /**
+     * 여러 사용자 일괄 등록 (결과 순서는 candidates와 같다, 같은 묶음 안 중복 요청은 EXISTING)
+     * 기본 구현은 한 명씩 차례로 등록한다.
+     * @param capacity 최대 대기 인원 (0이면 무제한)
+     */
+    default Mono<List<Registration>> registerAll(final String queue, final List<Candidate> candidates, final long capacity) {
+        return Flux.fromIterable(candidates)
+            .concatMap(candidate -> register(queue, candidate.userId(), candidate.tier(), capacity))
+            .collectList();
+    }
+
+    /**
+     * 여러 사용자 순위 일괄 조회 (1부터 시작, 결과 순서는 userIds와 같다, 대기 중이 아니면 -1)
+     */
+    Mono<List<Long>> ranks(String queue, List<Long> userIds);
+
+    default Mono<Long> rank(final String queue, final long userId) {
+        return ranks(queue, List.of(userId)).map(ranks -> ranks.get(0));
+    }
+
+    /**
+     * 등급과 등급 안 순위 조회 (대기 중이 아니면 NOT_WAITING)
+     */
+    Mono<TierRank> tierRank(String queue, long userId);
+
+    /**
+     * 가입 순번 조회 (대기 중이 아니면 -1)
+     */
+    Mono<Long> position(String queue, long userId);
+
+    /**
+     * 앞순위부터 최대 count명 진입 허용
+     * @param fencingToken 스케줄러 fencing token (빈 값이면 검사하지 않음)
+     * @return 진입 허용된 userId 목록 (대기 순서대로)
+     */
+    Mono<List<Long>> admit(String queue, long count, String fencingToken);
+
+    /**
+     * 여러 사용자 진입 허용 여부 일괄 조회 (결과 순서는 userIds와 같다)
+     */
+    Mono<List<Boolean>> admitted(String queue, List<Long> userIds);
+
+    // 대기 인원, 진입 허용 인원, 등급별 대기 인원
+    Mono<Sizes> sizes(String queue);
+
+    // 누적 진입 인원
+    Mono<Long> head(String queue);
+
+    // 대기 중인 사용자가 있는 대기열 목록
+    Flux<String> activeQueues();
+
+    enum RegisterStatus {
+        CREATED,
+        EXISTING,
+        CAPACITY_EXCEEDED
+    }
+
+    record Registration(RegisterStatus status, long rank, long position) {
+    }
+
+    // 일괄 등록 요청
+    record Candidate(long userId, int tier) {
+    }
+
+    // 등급 번호, 전체 순위(진입 예상 순서), 같은 등급 안 순위 (1부터 시작)
+    record TierRank(int tier, long rank, long tierRank) {
+
+        static final TierRank NOT_WAITING = new TierRank(-1, -1L, -1L);
+    }
+
+    // waitingByTier: 등급 순서대로 등급별 대기 인원
+    record Sizes(long waiting, long admitted, List<Long> waitingByTier) {
+    }
+}
@@ -0,0 +1,258 @@
+package com.nhn.flow.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Redis 대기열 저장소 (기본 구현)
+ * 등록 / 진입 허용은 Lua 스크립트 한 번으로 순번, TTL, liveness, 이력(inline 모드), 알림까지 함께 처리한다.
+ * wait queue가 바뀌면 같은 스크립트에서 버전이 붙은 변경 feed도 발행한다. (WaitQueueMirror)
+ * 스크립트가 여러 대기열 공용 registry key와 진입 허용 시점에 정해지는 이력 shard key를 함께 다루므로
+ * 단일 Redis(standalone / sentinel) 전용이다. (Redis Cluster는 key가 hash slot에 나뉘어 지원하지 않는다)
+ */
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "queue.store", havingValue = "redis", matchIfMissing = true)
+public class RedisQueueStore implements QueueStore {
+
+    private static final String USER_QUEUE_WAIT_KEY = "users:queue:%s:wait";
+    // 등급별 대기 sorted set (member: userId, score: 가입 순번), 뒤에 등급 번호를 붙인다.
+    private static final String USER_QUEUE_TIER_WAIT_KEY_PREFIX = "users:queue:%s:wait:";
+    private static final String USER_QUEUE_PROCEED_KEY = "users:queue:%s:proceed";
+    private static final String USER_QUEUE_REGISTRY_KEY = "users:queue:registry";
+    private static final String USER_QUEUE_LEASED_REGISTRY_KEY = "users:queue:leased_registry";
+    private static final String USER_QUEUE_SEEN_KEY = "users:queue:%s:seen";
+    private static final String USER_QUEUE_SEQUENCE_KEY = "users:queue:%s:sequence";
+    private static final String SEQUENCE_HEAD_FIELD = "_head";
+    private static final String SCHEDULER_FENCE_KEY = "users:queue:scheduler:fence";
+
+    // 등록 스크립트 status 값
+    private static final long REGISTER_CREATED = 1L;
+    private static final long REGISTER_CAPACITY_EXCEEDED = -1L;
+
+    private final ReactiveRedisTemplate<String, String> reactiveRedisTemplate;
+    private final QueueHistoryService queueHistoryService;
+    private final QueueNotificationService queueNotificationService;
+    private final PriorityTiers priorityTiers;
+
+    @Value("${queue.ttl-seconds}")
+    private Long queueTtlSeconds;
+
+    // 등급별 가상 완료 시각으로 만든 score로 wait queue에 추가 (등급별 대기 set에는 가입 순번으로 추가)
+    // 순번과 finish는 등록 스크립트 안에서 발급되므로 추가 왕복 없이 등급 안 엄격한 선착순이 보장된다.
+    @Override
+    public Mono<Registration> register(final String queue, final long userId, final int tier, final long capacity) {
+        List<String> keys = new ArrayList<>(List.of(
+            USER_QUEUE_WAIT_KEY.formatted(queue),
+            queueHistoryService.userHistoryKey(queue, userId),
+            queueHistoryService.allHistoryKey(queue),
+            USER_QUEUE_REGISTRY_KEY,
+            USER_QUEUE_SEQUENCE_KEY.formatted(queue),
+            queueNotificationService.getEventLogKey(queue),
+            USER_QUEUE_SEEN_KEY.formatted(queue)
+        ));
+        keys.addAll(tierWaitKeys(queue));
+        List<String> args = List.of(
+            String.valueOf(userId),
+            String.valueOf(tier),
+            String.valueOf(capacity),
+            String.valueOf(queueTtlSeconds != null ? queueTtlSeconds : 0L),
+            String.valueOf(Instant.now().getEpochSecond()),
+            queueNotificationService.getChannelTopic(queue).getTopic(),
+            queue,
+            String.valueOf(queueNotificationService.getEventLogMaxLength()),
+            String.valueOf(queueHistoryService.historyMaxLength()),
+            queueHistoryService.historyMinId(),
+            String.valueOf(queueHistoryService.userHistoryMaxEntries()),
+            String.valueOf(queueHistoryService.userHistoryTtlSeconds()),
+            queueHistoryService.isInlineWrite() ? "1" : "0",
+            queueNotificationService.getQueueChangeTopic(queue).getTopic(),
+            String.valueOf(priorityTiers.stride(tier))
+        );
+        return reactiveRedisTemplate.execute(QueueScripts.REGISTER, keys, args)
+            .next()
+            .map(RedisQueueStore::registration);
+    }
+
+    // 등록 요청 묶음을 스크립트 한 번으로 처리 (순번 발급, 등록, TTL, liveness, 이력(inline 모드), 사용자별 알림)
+    @Override
+    public Mono<List<Registration>> registerAll(final String queue, final List<Candidate> candidates, final long capacity) {
+        List<String> keys = new ArrayList<>(List.of(
+            USER_QUEUE_WAIT_KEY.formatted(queue),
+            queueHistoryService.allHistoryKey(queue),
+            USER_QUEUE_REGISTRY_KEY,
+            USER_QUEUE_SEQUENCE_KEY.formatted(queue),
+            queueNotificationService.getEventLogKey(queue),
+            USER_QUEUE_SEEN_KEY.formatted(queue)
+        ));
+        keys.addAll(tierWaitKeys(queue));
+        List<String> args = new ArrayList<>(15 + candidates.size() * 2);
+        args.add(String.valueOf(capacity));
+        args.add(String.valueOf(queueTtlSeconds != null ? queueTtlSeconds : 0L));
+        args.add(String.valueOf(Instant.now().getEpochSecond()));
+        args.add(queueNotificationService.getChannelTopic(queue).getTopic());
+        args.add(queue);
+        args.add(String.valueOf(queueNotificationService.getEventLogMaxLength()));
+        args.add(String.valueOf(queueHistoryService.historyMaxLength()));
+        args.add(queueHistoryService.historyMinId());
+        args.add(queueHistoryService.userHistoryKeyPrefix(queue));
+        args.add(String.valueOf(queueHistoryService.userHistoryShards()));
+        args.add(String.valueOf(queueHistoryService.userHistoryMaxEntries()));
+        args.add(String.valueOf(queueHistoryService.userHistoryTtlSeconds()));
+        args.add(queueHistoryService.isInlineWrite() ? "1" : "0");
+        args.add(queueNotificationService.getQueueChangeTopic(queue).getTopic());
+        args.add(priorityTiers.joinedStrides());
+        candidates.forEach(candidate -> {
+            args.add(String.valueOf(candidate.userId()));
+            args.add(String.valueOf(candidate.tier()));
+        });
+        return reactiveRedisTemplate.execute(QueueScripts.REGISTER_BATCH, keys, args)
+            .next()
+            .map(reply -> {
+                List<Registration> registrations = new ArrayList<>(candidates.size());
+                for (int i = 0; i + 2 < reply.size(); i += 3) {
+                    registrations.add(registration(reply.subList(i, i + 3)));
+                }
+                return registrations;
+            });
+    }
+
+    // 등록 스크립트 결과 {status, rank, 가입 순번} 변환 (watermark 등록 스크립트도 같은 형식)
+    static Registration registration(final List<Object> reply) {
+        long status = QueueScripts.toLong(reply.get(0));
+        RegisterStatus registerStatus = status == REGISTER_CREATED ? RegisterStatus.CREATED
+            : status == REGISTER_CAPACITY_EXCEEDED ? RegisterStatus.CAPACITY_EXCEEDED
+            : RegisterStatus.EXISTING;
+        return new Registration(registerStatus, QueueScripts.toLong(reply.get(1)), QueueScripts.toLong(reply.get(2)));
+    }
+
+    // 순위 조회가 곧 활동 신호이므로 같은 스크립트에서 liveness도 갱신한다.
+    @Override
+    public Mono<List<Long>> ranks(final String queue, final List<Long> userIds) {
+        return ranks(USER_QUEUE_WAIT_KEY.formatted(queue), USER_QUEUE_SEEN_KEY.formatted(queue), userIds)
+            .map(ranks -> ranks.stream().map(rank -> rank >= 0 ? rank + 1 : rank).toList());
+    }
+
+    // 전체 순위와 등급 안 순위를 한 번의 왕복으로 조회 (liveness 갱신 포함)
+    @Override
+    public Mono<TierRank> tierRank(final String queue, final long userId) {
+        List<String> keys = new ArrayList<>(List.of(USER_QUEUE_WAIT_KEY.formatted(queue), USER_QUEUE_SEEN_KEY.formatted(queue)));
+        keys.addAll(tierWaitKeys(queue));
+        return reactiveRedisTemplate.execute(QueueScripts.TIER_RANK, keys,
+                List.of(String.valueOf(userId), String.valueOf(Instant.now().getEpochSecond())))
+            .next()
+            .map(reply -> {
+                long tier = QueueScripts.toLong(reply.get(0));
+                return tier < 0 ? TierRank.NOT_WAITING
+                    : new TierRank((int) tier, QueueScripts.toLong(reply.get(1)) + 1, QueueScripts.toLong(reply.get(2)) + 1);
+            })
+            .defaultIfEmpty(TierRank.NOT_WAITING);
+    }
+
+    @Override
+    public Mono<Long> position(final String queue, final long userId) {
+        List<String> keys = new ArrayList<>(List.of(USER_QUEUE_WAIT_KEY.formatted(queue)));
+        keys.addAll(tierWaitKeys(queue));
+        return reactiveRedisTemplate.execute(QueueScripts.POSITION, keys, List.of(String.valueOf(userId)))
+            .next()
+            .defaultIfEmpty(-1L);
+    }
+
+    // wait → proceed 이동, 이력(inline 모드), 묶음 알림을 스크립트 한 번으로 처리
+    @Override
+    public Mono<List<Long>> admit(final String queue, final long count, final String fencingToken) {
+        List<String> keys = new ArrayList<>(List.of(
+            USER_QUEUE_WAIT_KEY.formatted(queue),
+            USER_QUEUE_PROCEED_KEY.formatted(queue),
+            queueHistoryService.allHistoryKey(queue),
+            USER_QUEUE_REGISTRY_KEY,
+            SCHEDULER_FENCE_KEY,
+            USER_QUEUE_SEQUENCE_KEY.formatted(queue),
+            queueNotificationService.getEventLogKey(queue),
+            USER_QUEUE_LEASED_REGISTRY_KEY,
+            USER_QUEUE_SEEN_KEY.formatted(queue)
+        ));
+        keys.addAll(tierWaitKeys(queue));
+        List<String> args = List.of(
+            String.valueOf(count),
+            String.valueOf(Instant.now().getEpochSecond()),
+            queueNotificationService.getChannelTopic(queue).getTopic(),
+            queueHistoryService.userHistoryKeyPrefix(queue),
+            queue,
+            fencingToken,
+            String.valueOf(queueNotificationService.getEventLogMaxLength()),
+            String.valueOf(queueHistoryService.historyMaxLength()),
+            queueHistoryService.historyMinId(),
+            String.valueOf(queueHistoryService.userHistoryShards()),
+            String.valueOf(queueHistoryService.userHistoryMaxEntries()),
+            String.valueOf(queueHistoryService.userHistoryTtlSeconds()),
+            queueHistoryService.isInlineWrite() ? "1" : "0",
+            queueNotificationService.getQueueChangeTopic(queue).getTopic()
+        );
+        return reactiveRedisTemplate.execute(QueueScripts.ALLOW, keys, args)
+            .next()
+            .map(reply -> reply.stream().map(QueueScripts::toLong).toList());
+    }
+
+    @Override
+    public Mono<List<Boolean>> admitted(final String queue, final List<Long> userIds) {
+        return ranks(USER_QUEUE_PROCEED_KEY.formatted(queue), null, userIds)
+            .map(ranks -> ranks.stream().map(rank -> rank >= 0).toList());
+    }
+
+    // 대기 인원, 진입 허용 인원, 등급별 대기 인원을 한 번의 왕복으로 조회
+    @Override
+    public Mono<Sizes> sizes(final String queue) {
+        List<String> keys = new ArrayList<>(2 + priorityTiers.size());
+        keys.add(USER_QUEUE_WAIT_KEY.formatted(queue));
+        keys.add(USER_QUEUE_PROCEED_KEY.formatted(queue));
+        keys.addAll(tierWaitKeys(queue));
+        return reactiveRedisTemplate.execute(QueueScripts.QUEUE_STATS, keys)
+            .next()
+            .map(reply -> new Sizes(QueueScripts.toLong(reply.get(0)), QueueScripts.toLong(reply.get(1)),
+                reply.subList(2, reply.size()).stream().map(QueueScripts::toLong).toList()));
+    }
+
+    // 등급별 대기 sorted set key 목록 (등급 번호 순서대로, 스크립트에는 KEYS 뒤에 이어 붙인다)
+    private List<String> tierWaitKeys(final String queue) {
+        String prefix = USER_QUEUE_TIER_WAIT_KEY_PREFIX.formatted(queue);
+        List<String> keys = new ArrayList<>(priorityTiers.size());
+        for (int tier = 0; tier < priorityTiers.size(); tier++) {
+            keys.add(prefix + tier);
+        }
+        return keys;
+    }
+
+    @Override
+    public Mono<Long> head(final String queue) {
+        return reactiveRedisTemplate.<String, String>opsForHash()
+            .get(USER_QUEUE_SEQUENCE_KEY.formatted(queue), SEQUENCE_HEAD_FIELD)
+            .map(Long::parseLong)
+            .defaultIfEmpty(0L);
+    }
+
+    // 키스페이스 SCAN 대신 활성 대기열 registry 조회
+    @Override
+    public Flux<String> activeQueues() {
+        return reactiveRedisTemplate.opsForSet().members(USER_QUEUE_REGISTRY_KEY);
+    }
+
+    // sorted set 순위 일괄 조회 (0부터 시작, seenKey가 있으면 liveness 갱신)
+    private Mono<List<Long>> ranks(final String key, final String seenKey, final List<Long> userIds) {
+        List<String> args = new ArrayList<>(userIds.size() + 1);
+        args.add(String.valueOf(Instant.now().getEpochSecond()));
+        userIds.forEach(userId -> args.add(userId.toString()));
+        return reactiveRedisTemplate.execute(QueueScripts.RANKS, seenKey != null ? List.of(key, seenKey) : List.of(key), args)
+            .next()
+            .map(reply -> reply.stream().map(QueueScripts::toLong).toList());
+    }
+}
@@ -0,0 +1,125 @@
+package com.nhn.flow.service;
+
+import com.nhn.flow.exception.ErrorCode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 대기열 등록 요청 묶음 처리 (판매 오픈 직후 등록 폭주 대응, queue.register.coalesce.enabled)
+ * 같은 대기열 등록 요청을 window-ms 동안 또는 max-batch-size 명까지 모아 저장소 일괄 등록(스크립트 한 번)으로 처리하고,
+ * 요청마다 자기 결과(순위 / 이미 등록됨 / 용량 초과)를 돌려준다.
+ * 처리 중이거나 모으는 중인 요청이 max-pending 을 넘으면 새 요청은 바로 거절한다. (load shedding, 429)
+ * 꺼져 있으면 요청마다 바로 등록한다.
+ */
+@Slf4j
+@Service
+public class RegistrationCoalescer {
+
+    private final QueueStore queueStore;
+    private final boolean enabled;
+    private final int maxBatchSize;
+    private final int maxPending;
+    private final Duration batchWindow;
+
+    // 대기열별 모으는 중인 묶음 (this로 동기화)
+    private final Map<String, Batch> batches = new HashMap<>();
+    // 모으는 중 + 처리 중인 요청 수
+    private final AtomicInteger pending = new AtomicInteger();
+
+    public RegistrationCoalescer(final QueueStore queueStore,
+                                 @Value("${queue.register.coalesce.enabled:false}") final boolean enabled,
+                                 @Value("${queue.register.coalesce.window-ms:2}") final long batchWindowMillis,
+                                 @Value("${queue.register.coalesce.max-batch-size:500}") final int maxBatchSize,
+                                 @Value("${queue.register.coalesce.max-pending:20000}") final int maxPending) {
+        this.queueStore = queueStore;
+        this.enabled = enabled;
+        this.batchWindow = Duration.ofMillis(batchWindowMillis);
+        this.maxBatchSize = maxBatchSize;
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * 대기열 등록 (묶음 처리가 켜져 있으면 같은 대기열 요청과 함께 등록)
+     * @param tier 등급 번호 (PriorityTiers)
+     * @param capacity 최대 대기 인원 (0이면 무제한)
+     */
+    public Mono<QueueStore.Registration> register(final String queue, final long userId, final int tier, final long capacity) {
+        if (!enabled) {
+            return queueStore.register(queue, userId, tier, capacity);
+        }
+        return Mono.defer(() -> {
+            if (pending.incrementAndGet() > maxPending) {
+                pending.decrementAndGet();
+                log.debug("[Register] 등록 요청 초과로 거절 - queue: {}, userId: {}", queue, userId);
+                return Mono.error(ErrorCode.QUEUE_REGISTRATION_OVERLOADED.build());
+            }
+            Sinks.One<QueueStore.Registration> sink = Sinks.one();
+            Batch batch;
+            boolean full;
+            synchronized (this) {
+                batch = batches.get(queue);
+                if (batch == null) {
+                    batch = new Batch(capacity);
+                    batches.put(queue, batch);
+                    Batch scheduled = batch;
+                    Mono.delay(batchWindow).subscribe(tick -> flush(queue, scheduled));
+                }
+                batch.candidates.add(new QueueStore.Candidate(userId, tier));
+                batch.sinks.add(sink);
+                full = batch.candidates.size() >= maxBatchSize;
+            }
+            if (full) {
+                flush(queue, batch);
+            }
+            return sink.asMono();
+        });
+    }
+
+    private void flush(final String queue, final Batch batch) {
+        synchronized (this) {
+            // 이미 다른 경로(window 만료 / 크기 초과)에서 보낸 묶음이면 무시
+            if (batches.get(queue) != batch) {
+                return;
+            }
+            batches.remove(queue);
+        }
+        int size = batch.sinks.size();
+        queueStore.registerAll(queue, batch.candidates, batch.capacity)
+            .doFinally(signal -> pending.addAndGet(-size))
+            .subscribe(
+                registrations -> {
+                    for (int i = 0; i < size; i++) {
+                        batch.sinks.get(i).tryEmitValue(registrations.get(i));
+                    }
+                },
+                error -> {
+                    log.warn("[Register] 묶음 등록 실패 - queue: {}, size: {}", queue, size, error);
+                    batch.sinks.forEach(sink -> sink.tryEmitError(error));
+                },
+                () -> batch.sinks.forEach(Sinks.One::tryEmitEmpty));
+    }
+
+    /**
+     * 대기열별 모으는 중인 등록 요청 (요청 순서 = 순번 발급 순서)
+     */
+    private static final class Batch {
+
+        private final long capacity;
+        private final List<QueueStore.Candidate> candidates = new ArrayList<>();
+        private final List<Sinks.One<QueueStore.Registration>> sinks = new ArrayList<>();
+
+        private Batch(final long capacity) {
+            this.capacity = capacity;
+        }
+    }
+}
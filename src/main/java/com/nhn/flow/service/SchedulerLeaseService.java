@@ -0,0 +1,107 @@
+package com.nhn.flow.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/**
+ * 스케줄러 lease 서비스
+ * 여러 인스턴스 중 lease를 가진 하나의 인스턴스만 진입 허용 스케줄러를 실행한다.
+ * lease를 얻을 때마다 fencing token이 증가하며, 진입 허용 스크립트가 현재 token과 비교해
+ * lease를 잃은 인스턴스의 뒤늦은 진입 허용을 거부한다.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SchedulerLeaseService {
+
+    private static final String SCHEDULER_LEASE_KEY = "users:queue:scheduler:lease";
+    private static final String SCHEDULER_FENCE_KEY = "users:queue:scheduler:fence";
+    private static final long NO_LEASE = -1L;
+
+    private final ReactiveRedisTemplate<String, String> reactiveRedisTemplate;
+
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private volatile long fencingToken = NO_LEASE;
+    private volatile long leaseExpiresAtNanos;
+
+    @Value("${scheduler.enable}")
+    private boolean scheduling = false;
+
+    @Value("${scheduler.lease.ttl-ms:2000}")
+    private long leaseTtlMs;
+
+    @Scheduled(fixedRateString = "${scheduler.lease.renew-interval-ms:500}")
+    public void renewLease() {
+        if (!scheduling) {
+            return;
+        }
+        tryAcquire()
+            .subscribe(token -> { }, e -> log.warn("[Lease] lease 갱신 실패 - instanceId: {}, error: {}", instanceId, e.getMessage()));
+    }
+
+    /**
+     * lease 획득 또는 갱신
+     * 요청 시점 기준으로 만료 시간을 계산해 Redis의 만료보다 먼저 로컬 lease가 끝나도록 한다.
+     */
+    Mono<Long> tryAcquire() {
+        return Mono.defer(() -> {
+            long requestedAtNanos = System.nanoTime();
+            return reactiveRedisTemplate.execute(QueueScripts.LEASE,
+                    List.of(SCHEDULER_LEASE_KEY, SCHEDULER_FENCE_KEY),
+                    List.of(instanceId, String.valueOf(leaseTtlMs)))
+                .next()
+                .doOnNext(token -> onLeaseResult(token, requestedAtNanos));
+        });
+    }
+
+    private void onLeaseResult(final long token, final long requestedAtNanos) {
+        if (token == NO_LEASE) {
+            if (fencingToken != NO_LEASE) {
+                log.info("[Lease] 스케줄러 lease 상실 - instanceId: {}, fencingToken: {}", instanceId, fencingToken);
+            }
+            fencingToken = NO_LEASE;
+            return;
+        }
+        if (token != fencingToken) {
+            log.info("[Lease] 스케줄러 lease 획득 - instanceId: {}, fencingToken: {}", instanceId, token);
+        }
+        fencingToken = token;
+        leaseExpiresAtNanos = requestedAtNanos + Duration.ofMillis(leaseTtlMs).toNanos();
+    }
+
+    /**
+     * 현재 유효한 fencing token (lease가 없거나 만료되었으면 empty)
+     */
+    public OptionalLong currentFencingToken() {
+        long token = fencingToken;
+        if (token == NO_LEASE || System.nanoTime() - leaseExpiresAtNanos >= 0) {
+            return OptionalLong.empty();
+        }
+        return OptionalLong.of(token);
+    }
+
+    // 종료 시 lease를 반납해 다른 인스턴스가 바로 이어받도록 한다.
+    @PreDestroy
+    public void releaseLease() {
+        if (fencingToken == NO_LEASE) {
+            return;
+        }
+        fencingToken = NO_LEASE;
+        reactiveRedisTemplate.execute(QueueScripts.LEASE_RELEASE, List.of(SCHEDULER_LEASE_KEY), List.of(instanceId))
+            .next()
+            .onErrorResume(e -> Mono.empty())
+            .block(Duration.ofSeconds(1));
+    }
+}
@@ -1,20 +1,26 @@
 package com.nhn.flow.service;
 
+import com.nhn.flow.dto.BatchRegisterRequest;
+import com.nhn.flow.dto.BatchRegisterResponse;
+import com.nhn.flow.dto.QueueStatisticsResponse;
+import com.nhn.flow.dto.RegisterUserResponse;
+import com.nhn.flow.dto.TierRankResponse;
 import com.nhn.flow.exception.ErrorCode;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
-import org.springframework.data.redis.core.ScanOptions;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.util.function.Tuples;
 
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
@@ -22,27 +28,73 @@ import java.time.Instant;
 public class UserQueueService {
 
     private static final String USER_QUEUE_WAIT_KEY = "users:queue:%s:wait";
+    // 등급별 대기 sorted set (member: userId, score: 가입 순번), 뒤에 등급 번호를 붙인다.
+    private static final String USER_QUEUE_TIER_WAIT_KEY_PREFIX = "users:queue:%s:wait:";
     private static final String USER_QUEUE_PROCEED_KEY = "users:queue:%s:proceed";
-    private static final String USER_QUEUE_WAIT_KEY_FOR_SCAN = "users:queue:*:wait";
-    
-    // VIP 우선순위 offset: VIP는 현재 시간에서 이 값을 빼서 항상 앞순위를 가짐
-    private static final long VIP_PRIORITY_OFFSET = 1_000_000_000L; // 약 31년
+    // 대기 중인 사용자가 있는 대기열 이름 Set (등록 시 추가, 비거나 만료되면 진입 허용 시 제거)
+    private static final String USER_QUEUE_REGISTRY_KEY = "users:queue:registry";
+    // 진입 허용 사용자가 있는 대기열 이름 Set (진입 허용 시 추가, 세션 lease가 모두 회수되면 제거)
+    private static final String USER_QUEUE_LEASED_REGISTRY_KEY = "users:queue:leased_registry";
+    // 대기 사용자별 마지막 활동 시각 (member: userId, score: epoch second) - 등록, 순위 조회, SSE 연결 유지 시 갱신
+    private static final String USER_QUEUE_SEEN_KEY = "users:queue:%s:seen";
+    // 대기열별 가입 순번 hash (필드 _seq: 마지막 순번, _head: 누적 진입 인원, _version: wait queue 변경 feed 버전,
+    // _vtime: 가상 시각, _finish:{등급}: 등급의 마지막 가상 완료 시각 - PriorityTiers)
+    // watermark 모드에서는 _watermark: 진입 허용된 마지막 순번(= head), {userId}: 사용자 순번 필드도 사용한다.
+    private static final String USER_QUEUE_SEQUENCE_KEY = "users:queue:%s:sequence";
+    private static final String SEQUENCE_LAST_FIELD = "_seq";
+    private static final String SEQUENCE_WATERMARK_FIELD = "_watermark";
+    // 스케줄러 lease의 현재 fencing token (SchedulerLeaseService가 관리)
+    private static final String SCHEDULER_FENCE_KEY = "users:queue:scheduler:fence";
+
+    // 일괄 등록 결과 중 잘못된 userId / 등급 항목 status
+    private static final String BATCH_INVALID_USER_ID = "INVALID_USER_ID";
+    private static final String BATCH_INVALID_TIER = "INVALID_TIER";
+    // 일괄 등록 시 연결 하나에 이어서 보내는 chunk 스크립트 수
+    private static final int BATCH_CONCURRENCY = 4;
+
+    // 진입 허용 방식 (proceed-set: 사용자별 proceed queue 기록, watermark: 순번 watermark 전진)
+    private static final String ADMISSION_MODE_WATERMARK = "watermark";
     
     private final ReactiveRedisTemplate<String, String> reactiveRedisTemplate;
+    private final QueueStore queueStore;
+    private final RegistrationCoalescer registrationCoalescer;
     private final QueueHistoryService queueHistoryService;
     private final QueueNotificationService queueNotificationService;
-    
-    @Value("${scheduler.enable}")
-    private boolean scheduling = false;
-    
-    @Value("${scheduler.max-allow-user-count}")
-    private Long maxAllowUserCount;
+    private final AdmissionTokenService admissionTokenService;
+    private final PriorityTiers priorityTiers;
     
     @Value("${queue.max-capacity}")
     private Long queueMaxCapacity;
     
     @Value("${queue.ttl-seconds}")
     private Long queueTtlSeconds;
+
+    // 일괄 등록 / 조회 한 번에 받을 수 있는 최대 사용자 수
+    @Value("${queue.batch.max-users:5000}")
+    private int batchMaxUsers;
+
+    // 일괄 등록 스크립트 한 번에 등록할 사용자 수
+    @Value("${queue.batch.chunk-size:500}")
+    private int batchChunkSize;
+
+    @Value("${queue.admission-mode:proceed-set}")
+    private String admissionMode;
+
+    // 진입 허용 사용자의 세션 lease (초, 0이면 회수하지 않음)
+    @Value("${queue.session.lease-seconds:300}")
+    private long sessionLeaseSeconds;
+
+    // 대기 사용자 liveness: 이 시간 동안 활동이 없으면 이탈로 보고 정리한다. (초, 0이면 정리하지 않음)
+    @Value("${queue.liveness.stale-seconds:0}")
+    private long livenessStaleSeconds;
+
+    // 이탈 사용자 정리 시 한 번에 제거할 최대 인원
+    @Value("${queue.liveness.prune-batch-size:500}")
+    private int livenessPruneBatchSize;
+
+    // SSE 연결이 유지되는 동안 liveness를 갱신하는 주기 (초, stale-seconds보다 충분히 짧아야 한다)
+    @Value("${queue.liveness.touch-interval-seconds:30}")
+    private long livenessTouchIntervalSeconds;
     
     // 대기열 등록 API
 
@@ -51,65 +103,414 @@ public class UserQueueService {
         return registerWaitQueue(queue, userId, false);
     }
 
-    // 등록과 동시에 랭크가 몇인지 리턴해 준다. (VIP 여부 지정 가능)
+    // 등록과 동시에 랭크가 몇인지 리턴해 준다. (VIP 여부 지정 가능, VIP는 가장 높은 등급)
     public Mono<Long> registerWaitQueue(final String queue, final Long userId, final boolean isVip) {
-        log.debug("[Service] 대기열 등록 시작 - queue: {}, userId: {}, isVip: {}", queue, userId, isVip);
+        return enterWaitQueue(queue, userId, null, isVip)
+            .flatMap(result -> result.registered()
+                ? Mono.just(result.rank())
+                : Mono.error(ErrorCode.QUEUE_ALREADY_REGISTERED_USER.build()));
+    }
+
+    // 등록과 동시에 랭크가 몇인지 리턴해 준다. (등급 지정)
+    public Mono<Long> registerWaitQueue(final String queue, final Long userId, final String tier) {
+        return enterWaitQueue(queue, userId, tier, false)
+            .flatMap(result -> result.registered()
+                ? Mono.just(result.rank())
+                : Mono.error(ErrorCode.QUEUE_ALREADY_REGISTERED_USER.build()));
+    }
+
+    // 등록 후 순위와 가입 순번을 함께 리턴한다. (이후 순위는 /rank, /rank/tier 로 조회)
+    public Mono<RegisterUserResponse> registerWaitQueueWithPosition(final String queue, final Long userId, final boolean isVip) {
+        return registerWaitQueueWithPosition(queue, userId, isVip, null);
+    }
+
+    // 등급을 지정하면 VIP 여부보다 우선한다.
+    public Mono<RegisterUserResponse> registerWaitQueueWithPosition(final String queue, final Long userId, final boolean isVip, final String tier) {
+        return enterWaitQueue(queue, userId, tier, isVip)
+            .flatMap(result -> result.registered()
+                ? Mono.just(new RegisterUserResponse(result.rank(), result.position()))
+                : Mono.error(ErrorCode.QUEUE_ALREADY_REGISTERED_USER.build()));
+    }
+
+    // 대기실 입장: 이미 등록된 사용자는 에러 대신 기존 순위를 리턴한다.
+    public Mono<Long> registerOrGetRank(final String queue, final Long userId) {
+        return enterWaitQueue(queue, userId, null, false)
+            .map(RegisterResult::rank);
+    }
+
+    // 용량 확인, 등록, 순위 (Redis 저장소는 TTL, 이력, 알림까지) 를 저장소 호출 한 번으로 처리한다.
+    // 등록 묶음 처리가 켜져 있으면 같은 대기열 요청과 함께 저장소 호출 한 번으로 처리된다. (RegistrationCoalescer)
+    private Mono<RegisterResult> enterWaitQueue(final String queue, final Long userId, final String tier, final boolean isVip) {
+        log.debug("[Service] 대기열 등록 시작 - queue: {}, userId: {}, tier: {}, isVip: {}", queue, userId, tier, isVip);
+        int tierIndex = tierOf(tier, isVip);
         // 유효성 검증
         return validateQueueName(queue)
             .then(validateUserId(userId))
-            .then(checkQueueCapacity(queue))
-            .then(Mono.defer(() -> {
-                long unixTimestamp = Instant.now().getEpochSecond();
-                // VIP 사용자는 큰 값을 빼서 더 높은 우선순위 부여
-                long score = isVip ? (unixTimestamp - VIP_PRIORITY_OFFSET) : unixTimestamp;
-                String waitKey = USER_QUEUE_WAIT_KEY.formatted(queue);
-                
-                return reactiveRedisTemplate.opsForZSet()
-                    .add(waitKey, userId.toString(), score)
-                    .filter(i -> i)
-                    .switchIfEmpty(Mono.error(ErrorCode.QUEUE_ALREADY_REGISTERED_USER.build()))
-                    // TTL 설정 (0보다 크면 설정)
-                    .flatMap(i -> {
-                        if (queueTtlSeconds != null && queueTtlSeconds > 0) {
-                            return reactiveRedisTemplate.expire(waitKey, java.time.Duration.ofSeconds(queueTtlSeconds))
-                                .thenReturn(i);
-                        }
-                        return Mono.just(i);
-                    })
-                    .flatMap(i -> reactiveRedisTemplate.opsForZSet().rank(waitKey, userId.toString()))
-                    .map(i -> i >= 0 ? i + 1 : i) // 랭크는 1부터 시작하므로 +1
-                    .flatMap(rank -> {
-                        // 이력 저장 & 알림 발송
-                        return queueHistoryService.saveHistory(queue, userId, "REGISTER")
-                            .then(queueNotificationService.notifyRegistered(queue, userId, rank))
-                            .thenReturn(rank);
-                    })
-                    .doOnSuccess(rank -> log.debug("[Service] 대기열 등록 완료 - queue: {}, userId: {}, isVip: {}, rank: {}, TTL: {}초", 
-                        queue, userId, isVip, rank, queueTtlSeconds));
-            }));
+            .then(validateTier(tierIndex))
+            .then(Mono.defer(() -> (isWatermarkMode()
+                    ? registerByWatermark(queue, userId)
+                    : registrationCoalescer.register(queue, userId, tierIndex, capacity()))
+                .flatMap(registration -> {
+                    if (registration.status() == QueueStore.RegisterStatus.CAPACITY_EXCEEDED) {
+                        return Mono.error(ErrorCode.QUEUE_CAPACITY_EXCEEDED.build(queueMaxCapacity));
+                    }
+                    return Mono.just(new RegisterResult(registration.status() == QueueStore.RegisterStatus.CREATED,
+                        registration.rank(), registration.position()));
+                })
+                // write-behind 모드에서는 등록 이력을 버퍼에 넣는다. (스크립트 밖에서 묶어서 기록)
+                .flatMap(result -> result.registered() && writesHistoryOutsideStore()
+                    ? queueHistoryService.saveHistory(queue, userId, "REGISTER").thenReturn(result)
+                    : Mono.just(result))
+                .flatMap(result -> result.registered() && !storePublishesEvents()
+                    ? queueNotificationService.notifyRegistered(queue, userId, result.rank()).thenReturn(result)
+                    : Mono.just(result))
+                .doOnSuccess(result -> log.debug("[Service] 대기열 등록 완료 - queue: {}, userId: {}, tier: {}, rank: {}, position: {}, registered: {}, TTL: {}초",
+                    queue, userId, priorityTiers.name(tierIndex), result.rank(), result.position(), result.registered(), queueTtlSeconds))));
+    }
+
+    /**
+     * 여러 사용자 일괄 등록 (결과 순서는 요청과 같다)
+     * 이미 등록됨 / 용량 초과 / 잘못된 userId / 없는 등급은 에러 대신 사용자별 status로 알린다.
+     * chunk-size 명씩 저장소 일괄 등록(Redis 저장소는 스크립트 한 번)으로 처리하고, chunk는 기다리지 않고 이어서 보낸다. (pipelining)
+     */
+    public Flux<BatchRegisterResponse> registerWaitQueueBatch(final String queue, final List<BatchRegisterRequest.User> users) {
+        return validateQueueName(queue)
+            .then(validateBatchSize(users == null ? 0 : users.size()))
+            .thenMany(Flux.defer(() -> Flux.fromIterable(users)
+                .buffer(batchChunkSize)
+                .flatMapSequential(chunk -> registerChunk(queue, chunk), BATCH_CONCURRENCY)))
+            .doOnComplete(() -> log.debug("[Service] 대기열 일괄 등록 완료 - queue: {}, size: {}", queue, users.size()));
+    }
+
+    private Flux<BatchRegisterResponse> registerChunk(final String queue, final List<BatchRegisterRequest.User> chunk) {
+        List<BatchRegisterRequest.User> valid = chunk.stream()
+            .filter(user -> user.userId() != null && user.userId() > 0 && tierOf(user) >= 0)
+            .toList();
+        Mono<List<QueueStore.Registration>> registrations;
+        if (valid.isEmpty()) {
+            registrations = Mono.just(List.of());
+        } else if (isWatermarkMode()) {
+            registrations = Flux.fromIterable(valid)
+                .concatMap(user -> registerByWatermark(queue, user.userId()))
+                .collectList();
+        } else {
+            registrations = queueStore.registerAll(queue, valid.stream()
+                .map(user -> new QueueStore.Candidate(user.userId(), tierOf(user)))
+                .toList(), capacity());
+        }
+        return registrations
+            // write-behind 모드에서는 등록 이력을 버퍼에 넣는다. (스크립트 밖에서 묶어서 기록)
+            .flatMap(results -> {
+                List<Long> created = new ArrayList<>();
+                List<Long> createdRanks = new ArrayList<>();
+                for (int i = 0; i < results.size(); i++) {
+                    if (results.get(i).status() == QueueStore.RegisterStatus.CREATED) {
+                        created.add(valid.get(i).userId());
+                        createdRanks.add(results.get(i).rank());
+                    }
+                }
+                if (created.isEmpty()) {
+                    return Mono.just(results);
+                }
+                Mono<Void> history = writesHistoryOutsideStore()
+                    ? queueHistoryService.saveHistories(queue, created, "REGISTER")
+                    : Mono.empty();
+                Mono<Void> events = storePublishesEvents()
+                    ? Mono.empty()
+                    : Flux.range(0, created.size())
+                        .concatMap(i -> queueNotificationService.notifyRegistered(queue, created.get(i), createdRanks.get(i)))
+                        .then();
+                return history.then(events).thenReturn(results);
+            })
+            .flatMapIterable(results -> {
+                List<BatchRegisterResponse> responses = new ArrayList<>(chunk.size());
+                int next = 0;
+                for (BatchRegisterRequest.User user : chunk) {
+                    if (user.userId() == null || user.userId() <= 0) {
+                        responses.add(new BatchRegisterResponse(user.userId(), BATCH_INVALID_USER_ID, -1L, -1L));
+                        continue;
+                    }
+                    if (tierOf(user) < 0) {
+                        responses.add(new BatchRegisterResponse(user.userId(), BATCH_INVALID_TIER, -1L, -1L));
+                        continue;
+                    }
+                    QueueStore.Registration registration = results.get(next++);
+                    responses.add(new BatchRegisterResponse(user.userId(), registration.status().name(),
+                        registration.rank(), registration.position()));
+                }
+                return responses;
+            });
+    }
+
+    // 등급 번호 (등급 이름이 없으면 VIP 여부로 정한다, 없는 등급이면 -1)
+    private int tierOf(final String tier, final boolean isVip) {
+        if (tier == null || tier.isBlank()) {
+            return isVip ? priorityTiers.vipTier() : priorityTiers.defaultTier();
+        }
+        return priorityTiers.indexOf(tier.trim());
+    }
+
+    private int tierOf(final BatchRegisterRequest.User user) {
+        return tierOf(user.tier(), Boolean.TRUE.equals(user.vip()));
+    }
+
+    // watermark 모드 등록: 가입 순번 발급 (등급은 적용되지 않는다)
+    private Mono<QueueStore.Registration> registerByWatermark(final String queue, final Long userId) {
+        List<String> keys = List.of(
+            USER_QUEUE_SEQUENCE_KEY.formatted(queue),
+            queueHistoryService.userHistoryKey(queue, userId),
+            queueHistoryService.allHistoryKey(queue),
+            USER_QUEUE_REGISTRY_KEY,
+            queueNotificationService.getEventLogKey(queue)
+        );
+        List<String> args = List.of(
+            userId.toString(),
+            String.valueOf(capacity()),
+            String.valueOf(ttlSeconds()),
+            String.valueOf(Instant.now().getEpochSecond()),
+            queueNotificationService.getChannelTopic(queue).getTopic(),
+            queue,
+            String.valueOf(queueNotificationService.getEventLogMaxLength()),
+            String.valueOf(queueHistoryService.historyMaxLength()),
+            queueHistoryService.historyMinId(),
+            String.valueOf(queueHistoryService.userHistoryMaxEntries()),
+            String.valueOf(queueHistoryService.userHistoryTtlSeconds()),
+            queueHistoryService.isInlineWrite() ? "1" : "0"
+        );
+        return reactiveRedisTemplate.execute(QueueScripts.REGISTER_WATERMARK, keys, args)
+            .next()
+            .map(RedisQueueStore::registration);
+    }
+
+    // 등록 스크립트 결과 (registered: 신규 등록 여부, position: 가입 순번)
+    private record RegisterResult(boolean registered, long rank, long position) {
     }
 
     // 대기열 크기 조회
     public Mono<Long> getWaitQueueSize(final String queue) {
-        return reactiveRedisTemplate.opsForZSet()
-            .size(USER_QUEUE_WAIT_KEY.formatted(queue))
-            .defaultIfEmpty(0L);
+        if (isWatermarkMode()) {
+            return getSequenceState(queue, SEQUENCE_LAST_FIELD, SEQUENCE_WATERMARK_FIELD)
+                .map(state -> state.get(0) - state.get(1));
+        }
+        return queueStore.sizes(queue).map(QueueStore.Sizes::waiting);
     }
 
-    // 진입 허용 큐 크기 조회
+    // 대기열 통계 조회 (대기 인원, 진입 허용 인원, 등급별 대기 인원을 한 번의 왕복으로 조회)
+    public Mono<QueueStatisticsResponse> getStatistics(final String queue) {
+        if (isWatermarkMode()) {
+            // watermark 모드는 등급이 없다.
+            return getSequenceState(queue, SEQUENCE_LAST_FIELD, SEQUENCE_WATERMARK_FIELD)
+                .map(state -> new QueueStatisticsResponse(queue, state.get(0) - state.get(1), state.get(1), Map.of()));
+        }
+        return queueStore.sizes(queue)
+            .map(sizes -> {
+                Map<String, Long> waitingByTier = new LinkedHashMap<>();
+                for (int tier = 0; tier < sizes.waitingByTier().size(); tier++) {
+                    waitingByTier.put(priorityTiers.name(tier), sizes.waitingByTier().get(tier));
+                }
+                return new QueueStatisticsResponse(queue, sizes.waiting(), sizes.admitted(), waitingByTier);
+            });
+    }
+
+    // 진입 허용 큐 크기 조회 (watermark 모드는 이탈을 기록하지 않으므로 누적 진입 인원)
     public Mono<Long> getProceedQueueSize(final String queue) {
-        return reactiveRedisTemplate.opsForZSet()
-            .size(USER_QUEUE_PROCEED_KEY.formatted(queue))
-            .defaultIfEmpty(0L);
+        if (isWatermarkMode()) {
+            return getSequenceState(queue, SEQUENCE_WATERMARK_FIELD)
+                .map(state -> state.get(0));
+        }
+        return queueStore.sizes(queue).map(QueueStore.Sizes::admitted);
+    }
+
+    // 활성 대기열 목록 조회 (watermark 모드는 Redis registry)
+    public Flux<String> getActiveQueues() {
+        if (isWatermarkMode()) {
+            return reactiveRedisTemplate.opsForSet().members(USER_QUEUE_REGISTRY_KEY);
+        }
+        return queueStore.activeQueues();
+    }
+
+    // 진입 허용 사용자가 있는 대기열 목록 (세션 lease 회수 대상)
+    public Flux<String> getLeasedQueues() {
+        return reactiveRedisTemplate.opsForSet().members(USER_QUEUE_LEASED_REGISTRY_KEY);
+    }
+
+    /**
+     * 세션 lease 갱신 (보호 대상 앱이 주기적으로 호출하는 heartbeat)
+     * 반환: 진입 상태 유지 여부 (lease가 만료되어 회수되었으면 false)
+     * watermark 모드나 lease를 쓰지 않는 경우(lease-seconds: 0)에는 진입 여부만 확인한다.
+     */
+    public Mono<Boolean> renewLease(final String queue, final Long userId) {
+        if (isWatermarkMode() || sessionLeaseSeconds <= 0) {
+            return isAllowed(queue, userId);
+        }
+        return validateQueueName(queue)
+            .then(validateUserId(userId))
+            .then(Mono.defer(() -> reactiveRedisTemplate.execute(QueueScripts.TOUCH,
+                    List.of(USER_QUEUE_PROCEED_KEY.formatted(queue)),
+                    List.of(userId.toString(), String.valueOf(Instant.now().getEpochSecond())))
+                .next()
+                .map(renewed -> renewed == 1L)));
+    }
+
+    /**
+     * 세션 lease 반납 (사용자가 떠날 때, 자리를 바로 비운다)
+     */
+    public Mono<Boolean> releaseLease(final String queue, final Long userId) {
+        return validateQueueName(queue)
+            .then(validateUserId(userId))
+            .then(Mono.defer(() -> reactiveRedisTemplate.opsForZSet().remove(USER_QUEUE_PROCEED_KEY.formatted(queue), userId.toString())))
+            .map(removed -> removed > 0)
+            .flatMap(released -> released
+                ? queueNotificationService.notifyAdmissionRevoked(queue, List.of(userId)).thenReturn(true)
+                : Mono.just(false));
+    }
+
+    /**
+     * 만료된 세션 lease 회수 (마지막 갱신이 lease-seconds 이전인 사용자를 score 범위로 한 번에 제거)
+     * 반환: 회수한 인원
+     */
+    public Mono<Long> reclaimExpiredLeases(final String queue) {
+        if (sessionLeaseSeconds <= 0 || isWatermarkMode()) {
+            return Mono.just(0L);
+        }
+        long expiredBefore = Instant.now().getEpochSecond() - sessionLeaseSeconds;
+        return reactiveRedisTemplate.execute(QueueScripts.SESSION_LEASE_RECLAIM,
+                List.of(USER_QUEUE_PROCEED_KEY.formatted(queue), USER_QUEUE_LEASED_REGISTRY_KEY),
+                List.of(String.valueOf(expiredBefore), queue, queueNotificationService.getAdmissionRevokedTopic().getTopic()))
+            .next()
+            .defaultIfEmpty(0L)
+            .doOnNext(reclaimed -> {
+                if (reclaimed > 0) {
+                    log.debug("[Service] 세션 lease 회수 - queue: {}, reclaimed: {}", queue, reclaimed);
+                }
+            });
+    }
+
+    /**
+     * 대기 사용자 liveness 갱신 (마지막 활동 시각을 현재 시각으로)
+     * 반환: 갱신 여부 (대기 중이 아니면 false, watermark 모드는 사용자별 대기 기록이 없으므로 항상 false)
+     */
+    public Mono<Boolean> touchWaiter(final String queue, final Long userId) {
+        if (isWatermarkMode()) {
+            return Mono.just(false);
+        }
+        return reactiveRedisTemplate.execute(QueueScripts.TOUCH,
+                List.of(USER_QUEUE_SEEN_KEY.formatted(queue)),
+                List.of(userId.toString(), String.valueOf(Instant.now().getEpochSecond())))
+            .next()
+            .map(touched -> touched == 1L);
+    }
+
+    /**
+     * SSE 연결이 유지되는 동안 주기적으로 liveness 갱신 (구독이 취소되면 멈춘다)
+     * 갱신 실패는 연결을 끊지 않고 다음 주기에 다시 시도한다.
+     */
+    public Mono<Void> keepWaiterAlive(final String queue, final Long userId) {
+        if (livenessStaleSeconds <= 0 || isWatermarkMode()) {
+            return Mono.never();
+        }
+        return Flux.interval(Duration.ofSeconds(livenessTouchIntervalSeconds))
+            .concatMap(tick -> touchWaiter(queue, userId)
+                .onErrorResume(e -> {
+                    log.warn("[Service] liveness 갱신 실패 - queue: {}, userId: {}", queue, userId, e);
+                    return Mono.empty();
+                }))
+            .then();
+    }
+
+    /**
+     * 이탈한 대기 사용자 정리 (마지막 활동이 stale-seconds 이전인 사용자를 batch 단위로 wait queue에서 제거)
+     * 반환: 제거한 인원
+     */
+    public Mono<Long> pruneStaleWaiters(final String queue) {
+        if (livenessStaleSeconds <= 0 || isWatermarkMode()) {
+            return Mono.just(0L);
+        }
+        long staleBefore = Instant.now().getEpochSecond() - livenessStaleSeconds;
+        List<String> keys = new ArrayList<>(List.of(USER_QUEUE_WAIT_KEY.formatted(queue), USER_QUEUE_SEEN_KEY.formatted(queue),
+            USER_QUEUE_REGISTRY_KEY, USER_QUEUE_SEQUENCE_KEY.formatted(queue), queueNotificationService.getEventLogKey(queue)));
+        keys.addAll(tierWaitKeys(queue));
+        Mono<Long> prune = Mono.defer(() -> reactiveRedisTemplate.execute(QueueScripts.PRUNE_WAITERS, keys,
+                List.of(String.valueOf(staleBefore), String.valueOf(livenessPruneBatchSize), queue,
+                    queueNotificationService.getQueueChangeTopic(queue).getTopic(),
+                    queueNotificationService.getChannelTopic(queue).getTopic(),
+                    String.valueOf(queueNotificationService.getEventLogMaxLength())))
+            .next()
+            .defaultIfEmpty(0L));
+        // batch가 가득 찼으면 남은 이탈 사용자가 있을 수 있으므로 이어서 제거한다. (스크립트 하나가 Redis를 오래 잡지 않도록)
+        return prune
+            .expand(pruned -> pruned >= livenessPruneBatchSize ? prune : Mono.empty())
+            .reduce(0L, Long::sum)
+            .doOnNext(pruned -> {
+                if (pruned > 0) {
+                    log.debug("[Service] 이탈 대기 사용자 정리 - queue: {}, pruned: {}", queue, pruned);
+                }
+            });
+    }
+
+    /**
+     * 활성 대기열 key TTL 갱신 (스케줄러 tick마다 호출)
+     * 등록 시에는 새로 만든 key에만 TTL을 걸고, 대기 사용자가 있는 대기열은 여기서 만료되지 않게 늘린다.
+     * 반환: 갱신 여부 (남은 시간이 TTL의 절반 이하일 때만 갱신)
+     */
+    public Mono<Boolean> refreshQueueTtl(final String queue) {
+        if (queueTtlSeconds == null || queueTtlSeconds <= 0) {
+            return Mono.just(false);
+        }
+        List<String> keys = new ArrayList<>();
+        if (isWatermarkMode()) {
+            keys.add(USER_QUEUE_SEQUENCE_KEY.formatted(queue));
+        } else {
+            keys.add(USER_QUEUE_WAIT_KEY.formatted(queue));
+            keys.add(USER_QUEUE_SEQUENCE_KEY.formatted(queue));
+            keys.add(USER_QUEUE_SEEN_KEY.formatted(queue));
+            keys.addAll(tierWaitKeys(queue));
+        }
+        return reactiveRedisTemplate.execute(QueueScripts.EXPIRE_QUEUE, keys, List.of(queueTtlSeconds.toString()))
+            .next()
+            .map(refreshed -> refreshed > 0)
+            .defaultIfEmpty(false);
+    }
+
+    // 등급별 대기 sorted set key 목록 (등급 번호 순서대로)
+    private List<String> tierWaitKeys(final String queue) {
+        String prefix = USER_QUEUE_TIER_WAIT_KEY_PREFIX.formatted(queue);
+        List<String> keys = new ArrayList<>(priorityTiers.size());
+        for (int tier = 0; tier < priorityTiers.size(); tier++) {
+            keys.add(prefix + tier);
+        }
+        return keys;
     }
 
     // 대기열 TTL 조회 (남은 시간, 초 단위)
     public Mono<Long> getQueueTTL(final String queue) {
-        return reactiveRedisTemplate.getExpire(USER_QUEUE_WAIT_KEY.formatted(queue))
+        String key = isWatermarkMode() ? USER_QUEUE_SEQUENCE_KEY.formatted(queue) : USER_QUEUE_WAIT_KEY.formatted(queue);
+        return reactiveRedisTemplate.getExpire(key)
             .map(duration -> duration != null ? duration.getSeconds() : -1L)
             .defaultIfEmpty(-1L);
     }
 
+    // watermark 모드 순번 hash 조회 (없는 필드는 0)
+    private Mono<List<Long>> getSequenceState(final String queue, final String... fields) {
+        return reactiveRedisTemplate.<String, String>opsForHash()
+            .multiGet(USER_QUEUE_SEQUENCE_KEY.formatted(queue), List.of(fields))
+            .map(values -> values.stream()
+                .map(value -> value != null ? Long.parseLong(value) : 0L)
+                .toList());
+    }
+
+    public boolean isWatermarkMode() {
+        return ADMISSION_MODE_WATERMARK.equalsIgnoreCase(admissionMode);
+    }
+
+    private long capacity() {
+        return queueMaxCapacity != null ? queueMaxCapacity : 0L;
+    }
+
+    private long ttlSeconds() {
+        return queueTtlSeconds != null ? queueTtlSeconds : 0L;
+    }
+
     // 유효성 검증 메서드
     private Mono<Void> validateQueueName(final String queue) {
         if (queue == null || queue.trim().isEmpty()) {
@@ -125,107 +526,200 @@ public class UserQueueService {
         return Mono.empty();
     }
 
-    private Mono<Void> validateCount(final Long count) {
-        if (count == null || count < 0) {
-            return Mono.error(ErrorCode.INVALID_COUNT.build());
+    private Mono<Void> validateTier(final int tier) {
+        if (tier < 0) {
+            return Mono.error(ErrorCode.INVALID_TIER.build(String.join(", ", priorityTiers.names())));
         }
         return Mono.empty();
     }
 
-    private Mono<Void> checkQueueCapacity(final String queue) {
-        // 용량이 0이면 무제한
-        if (queueMaxCapacity == null || queueMaxCapacity <= 0) {
-            return Mono.empty();
+    private Mono<Void> validateBatchSize(final int size) {
+        if (size <= 0 || size > batchMaxUsers) {
+            return Mono.error(ErrorCode.INVALID_BATCH_SIZE.build(batchMaxUsers));
         }
-        
-        return getWaitQueueSize(queue)
-            .flatMap(currentSize -> {
-                if (currentSize >= queueMaxCapacity) {
-                    return Mono.error(ErrorCode.QUEUE_CAPACITY_EXCEEDED.build(queueMaxCapacity));
-                }
-                return Mono.empty();
-            });
+        return Mono.empty();
+    }
+
+    private Mono<Void> validateCount(final Long count) {
+        if (count == null || count < 0) {
+            return Mono.error(ErrorCode.INVALID_COUNT.build());
+        }
+        return Mono.empty();
     }
 
     // 진입이 가능한 상태인지 조회
     // 진입을 허용
     public Mono<Long> allowUser(final String queue, final Long count) {
+        return allowUser(queue, count, "");
+    }
+
+    // 스케줄러 진입 허용: fencing token이 현재 lease의 token과 다르면 아무도 진입시키지 않는다.
+    public Mono<Long> allowUser(final String queue, final Long count, final long fencingToken) {
+        return allowUser(queue, count, String.valueOf(fencingToken));
+    }
+
+    private Mono<Long> allowUser(final String queue, final Long count, final String fencingToken) {
+        if (isWatermarkMode()) {
+            return advanceWatermark(queue, count, fencingToken);
+        }
+        return admitUsers(queue, count, fencingToken)
+            .map(admitted -> (long) admitted.size());
+    }
+
+    // watermark 모드 진입 허용: 사용자별 쓰기 없이 watermark만 N만큼 전진
+    private Mono<Long> advanceWatermark(final String queue, final Long count, final String fencingToken) {
+        log.debug("[Service] watermark 진입 허용 시작 - queue: {}, count: {}", queue, count);
+        return validateQueueName(queue)
+            .then(validateCount(count))
+            .then(Mono.defer(() -> reactiveRedisTemplate.execute(QueueScripts.ALLOW_WATERMARK,
+                    List.of(USER_QUEUE_SEQUENCE_KEY.formatted(queue), USER_QUEUE_REGISTRY_KEY, SCHEDULER_FENCE_KEY,
+                        queueNotificationService.getEventLogKey(queue)),
+                    List.of(count.toString(), queueNotificationService.getChannelTopic(queue).getTopic(), queue, fencingToken,
+                        String.valueOf(queueNotificationService.getEventLogMaxLength())))
+                .next()
+                .defaultIfEmpty(0L)
+                .doOnSuccess(allowedCount -> log.debug("[Service] watermark 진입 허용 완료 - queue: {}, allowedCount: {}", queue, allowedCount))));
+    }
+
+    private Mono<List<Long>> admitUsers(final String queue, final Long count, final String fencingToken) {
         log.debug("[Service] 진입 허용 시작 - queue: {}, count: {}", queue, count);
         // 유효성 검증
         return validateQueueName(queue)
             .then(validateCount(count))
             .then(Mono.defer(() -> {
-                // 진입을 허용하는단계
+                // 진입을 허용하는단계 (Redis 저장소는 Lua 스크립트 한 번으로 처리)
                 // 1. wait queue 사용자를 제거
                 // 2. proceed queue에 추가
-                return reactiveRedisTemplate.opsForZSet().popMin(USER_QUEUE_WAIT_KEY.formatted(queue), count)
-                    .flatMap(member -> {
-                        log.debug("[Service] 사용자 진입 허용 중 - queue: {}, userId: {}", queue, member.getValue());
-                        Long allowedUserId = Long.parseLong(member.getValue());
-                        // proceed queue에 추가
-                        return reactiveRedisTemplate.opsForZSet()
-                            .add(USER_QUEUE_PROCEED_KEY.formatted(queue), member.getValue(), Instant.now().getEpochSecond())
-                            // 이력 저장 & 알림 발송
-                            .flatMap(added -> queueHistoryService.saveHistory(queue, allowedUserId, "ALLOW")
-                                .then(queueNotificationService.notifyAllowed(queue, allowedUserId))
-                                .thenReturn(added));
-                    })
-                    .count()
-                    .doOnSuccess(allowedCount -> log.debug("[Service] 진입 허용 완료 - queue: {}, allowedCount: {}", queue, allowedCount));
+                // 3. 이력 저장 & 묶음 알림 발송
+                return queueStore.admit(queue, count, fencingToken)
+                    .flatMap(admitted -> writesHistoryOutsideStore()
+                        ? queueHistoryService.saveHistories(queue, admitted, "ALLOW").thenReturn(admitted)
+                        : Mono.just(admitted))
+                    .flatMap(admitted -> admitted.isEmpty() || storePublishesEvents()
+                        ? Mono.just(admitted)
+                        : publishAdmitted(queue, admitted).thenReturn(admitted))
+                    .defaultIfEmpty(List.of())
+                    .doOnSuccess(admitted -> log.debug("[Service] 진입 허용 완료 - queue: {}, allowedCount: {}", queue, admitted.size()));
             }));
     }
 
+    // 진입 허용 스크립트와 같은 묶음 알림 (ALLOWED_BATCH, HEAD)
+    private Mono<Void> publishAdmitted(final String queue, final List<Long> admitted) {
+        String userIds = admitted.stream().map(String::valueOf).collect(Collectors.joining(","));
+        return queueNotificationService.publishEvent(queue, 0L, "ALLOWED_BATCH", userIds)
+            .then(queueStore.head(queue))
+            .flatMap(head -> queueNotificationService.publishEvent(queue, 0L, "HEAD", String.valueOf(head)))
+            .then();
+    }
+
+    // Redis 저장소는 등록 / 진입 허용 스크립트 안에서 알림을 함께 발행한다. (그 외 저장소는 저장소 호출 뒤 이 서비스가 발행)
+    private boolean storePublishesEvents() {
+        return queueStore instanceof RedisQueueStore;
+    }
+
+    // 저장소 밖에서 이력을 기록하는지 여부 (write-behind 모드이거나, 스크립트로 기록하지 않는 저장소)
+    private boolean writesHistoryOutsideStore() {
+        return !queueHistoryService.isInlineWrite() || !storePublishesEvents();
+    }
+
     public Mono<Boolean> isAllowed(final String queue, final Long userId) {
-        return reactiveRedisTemplate.opsForZSet().rank(USER_QUEUE_PROCEED_KEY.formatted(queue), userId.toString())
-            .defaultIfEmpty(-1L)
-            .map(rank -> rank >= 0);
+        if (isWatermarkMode()) {
+            // 순번이 watermark 이하이면 진입 허용
+            return getSequenceState(queue, userId.toString(), SEQUENCE_WATERMARK_FIELD)
+                .map(state -> state.get(0) > 0 && state.get(0) <= state.get(1));
+        }
+        return queueStore.admitted(queue, List.of(userId)).map(allowed -> allowed.get(0));
+    }
+
+    /**
+     * 여러 사용자 진입 허용 여부 일괄 조회 (결과 순서는 userIds와 같다)
+     */
+    public Mono<List<Boolean>> getAllowed(final String queue, final List<Long> userIds) {
+        if (isWatermarkMode()) {
+            return getSequenceStates(queue, userIds)
+                .map(state -> state.subList(1, state.size()).stream()
+                    .map(position -> position > 0 && position <= state.get(0))
+                    .toList());
+        }
+        return queueStore.admitted(queue, userIds);
     }
 
+    // 서명된 진입 토큰 검증 (Redis 조회 없음)
     public Mono<Boolean> isAllowedByToken(final String queue, final Long userId, final String token) {
-        return this.generateToken(queue, userId)
-            .filter(gen -> gen.equalsIgnoreCase(token))
-            .map(i -> true)
-            .defaultIfEmpty(false);
+        return Mono.fromSupplier(() -> admissionTokenService.verify(queue, userId, token));
     }
 
     public Mono<Long> getRank(final String queue, final Long userId) {
-        return reactiveRedisTemplate.opsForZSet().rank(USER_QUEUE_WAIT_KEY.formatted(queue), userId.toString())
-            .defaultIfEmpty(-1L)
-            .map(rank -> rank >= 0 ? rank + 1 : rank);
+        if (isWatermarkMode()) {
+            // 순위 = 순번 - watermark (진입 허용되었거나 미등록이면 -1)
+            return getSequenceState(queue, userId.toString(), SEQUENCE_WATERMARK_FIELD)
+                .map(state -> state.get(0) > state.get(1) ? state.get(0) - state.get(1) : -1L);
+        }
+        // 순위 조회(polling)가 곧 활동 신호다. (Redis 저장소는 조회와 liveness 갱신을 스크립트 한 번으로 처리)
+        return queueStore.rank(queue, userId);
+    }
+
+    /**
+     * 등급과 순위 조회 (전체 순위: 진입 예상 순서, 등급 순위: 같은 등급 안 순서)
+     * watermark 모드는 등급이 없으므로 모두 기본 등급이고 두 순위가 같다.
+     */
+    public Mono<TierRankResponse> getTierRank(final String queue, final Long userId) {
+        if (isWatermarkMode()) {
+            return getRank(queue, userId)
+                .map(rank -> new TierRankResponse(rank > 0 ? priorityTiers.name(priorityTiers.defaultTier()) : null, rank, rank));
+        }
+        return queueStore.tierRank(queue, userId)
+            .map(tierRank -> new TierRankResponse(tierRank.tier() >= 0 ? priorityTiers.name(tierRank.tier()) : null,
+                tierRank.rank(), tierRank.tierRank()));
+    }
+
+    // 현재 head 조회 (누적 진입 인원, watermark 모드에서는 watermark)
+    public Mono<Long> getHead(final String queue) {
+        if (isWatermarkMode()) {
+            return getSequenceState(queue, SEQUENCE_WATERMARK_FIELD)
+                .map(state -> state.get(0));
+        }
+        return queueStore.head(queue);
+    }
+
+    /**
+     * 여러 사용자 순위 일괄 조회 (결과 순서는 userIds와 같다, 대기 중이 아니면 -1)
+     * 조회한 대기 사용자의 liveness도 함께 갱신한다. (Redis 저장소)
+     */
+    public Mono<List<Long>> getRanks(final String queue, final List<Long> userIds) {
+        if (isWatermarkMode()) {
+            return getSequenceStates(queue, userIds)
+                .map(state -> state.subList(1, state.size()).stream()
+                    .map(position -> position > state.get(0) ? position - state.get(0) : -1L)
+                    .toList());
+        }
+        return queueStore.ranks(queue, userIds);
+    }
+
+    // watermark 모드: {watermark, userIds 순서대로 가입 순번} 을 HMGET 한 번으로 조회
+    private Mono<List<Long>> getSequenceStates(final String queue, final List<Long> userIds) {
+        String[] fields = new String[userIds.size() + 1];
+        fields[0] = SEQUENCE_WATERMARK_FIELD;
+        for (int i = 0; i < userIds.size(); i++) {
+            fields[i + 1] = userIds.get(i).toString();
+        }
+        return getSequenceState(queue, fields);
+    }
+
+    // 가입 순번 조회 (대기 중이 아니면 -1)
+    public Mono<Long> getPosition(final String queue, final Long userId) {
+        if (isWatermarkMode()) {
+            return getSequenceState(queue, userId.toString(), SEQUENCE_WATERMARK_FIELD)
+                .map(state -> state.get(0) > state.get(1) ? state.get(0) : -1L);
+        }
+        return queueStore.position(queue, userId);
     }
 
+    // 진입 토큰 발급 (진입 허용된 사용자만)
     public Mono<String> generateToken(final String queue, final Long userId) {
-        MessageDigest digest;
-        try {
-            digest = MessageDigest.getInstance("SHA-256");
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException(e);
-        }
-        var input = "user-queue-%s-%d".formatted(queue, userId);
-        byte[] encodedHash = digest.digest(input.getBytes(StandardCharsets.UTF_8));
-        StringBuilder builder = new StringBuilder();
-        for (byte hash : encodedHash) {
-            builder.append(String.format("%02x", hash));
-        }
-        return Mono.just(builder.toString());
-    }
-
-    @Scheduled(initialDelay = 5000, fixedDelay = 3000)
-    public void scheduleAllowUser() {
-        if(!scheduling) {
-            log.info("scheduler is disabled");
-            return;
-        }
-        log.info("called scheduleAllowUser with maxAllowUserCount: {}", maxAllowUserCount);
-
-        reactiveRedisTemplate.scan(ScanOptions.scanOptions()
-                                       .match(USER_QUEUE_WAIT_KEY_FOR_SCAN)
-                                       .count(100)
-                                       .build())
-            .map(key -> key.split(":")[2])
-            .flatMap(queue -> allowUser(queue, maxAllowUserCount)
-            .map(allow -> Tuples.of(queue, allow)))
-            .doOnNext(tuple -> log.info("Tripped {} and allowed {} members of {} queue", maxAllowUserCount, tuple.getT2(), tuple.getT1()))
-            .subscribe();
+        return isAllowed(queue, userId)
+            .flatMap(allowed -> allowed
+                ? Mono.just(admissionTokenService.issue(queue, userId))
+                : Mono.error(ErrorCode.QUEUE_NOT_ALLOWED_USER.build()));
     }
 }
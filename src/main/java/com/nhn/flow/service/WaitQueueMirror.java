@@ -0,0 +1,364 @@
+package com.nhn.flow.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 인스턴스별 wait queue 읽기 전용 mirror (순위 조회를 Redis 왕복 없이 응답)
+ * wait queue는 뒤(등록)와 앞(진입 허용)에서만 바뀌므로, 등록 / 진입 허용 / 이탈 정리 스크립트가 발행하는
+ * 버전이 붙은 변경 feed를 받아 로컬 순서 통계 구조(OrderStatisticSkipList)에 그대로 적용한다.
+ * - 동기화: 버전과 wait queue 전체를 스크립트 한 번으로 읽는다. (처음 조회할 때, feed 유실 감지 시, resync-interval마다)
+ * - 유실 감지: feed 버전이 건너뛰거나, verify-interval마다 확인한 Redis 버전을 max-staleness-ms 안에 따라잡지 못하면 재동기화
+ * - 응답 조건: 마지막으로 Redis와 같은 버전임을 확인한 지 max-staleness-ms 이내이고 사용자가 mirror에 있을 때만
+ *   (cold / lagging이거나 mirror에 없는 사용자(방금 등록 등)는 null → 호출자가 Redis에서 조회)
+ * mirror에서 응답한 순위 조회도 활동 신호이므로 사용자를 모아 verify-interval마다 liveness를 한 번에 갱신한다.
+ * 순위 조회가 없는 대기열 mirror는 idle-seconds 후 정리한다.
+ * proceed-set 모드 + Redis 저장소에서만 동작한다. (인메모리 저장소는 이미 로컬, watermark 모드는 순번으로 순위를 계산)
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class WaitQueueMirror {
+
+    private static final String USER_QUEUE_WAIT_KEY = "users:queue:%s:wait";
+    private static final String USER_QUEUE_SEEN_KEY = "users:queue:%s:seen";
+    private static final String USER_QUEUE_SEQUENCE_KEY = "users:queue:%s:sequence";
+    private static final String SEQUENCE_VERSION_FIELD = "_version";
+    // 동기화 중에 받은 변경 최대 보관 수 (넘치면 버리고, 동기화 후 버전이 건너뛰어 다시 동기화한다)
+    private static final int MAX_PENDING_CHANGES = 10_000;
+    private static final int MAINTAIN_CONCURRENCY = 16;
+
+    private final ReactiveRedisTemplate<String, String> reactiveRedisTemplate;
+    private final QueueNotificationService queueNotificationService;
+    private final UserQueueService userQueueService;
+    private final QueueStore queueStore;
+
+    private final Map<String, Mirror> mirrors = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private Disposable changes;
+    private Disposable maintenance;
+    private boolean active;
+
+    @Value("${queue.mirror.enabled:true}")
+    private boolean enabled;
+
+    // Redis와 같은 버전임을 마지막으로 확인한 뒤 mirror로 응답할 수 있는 최대 시간
+    @Value("${queue.mirror.max-staleness-ms:1000}")
+    private long maxStalenessMillis;
+
+    @Value("${queue.mirror.verify-interval-ms:250}")
+    private long verifyIntervalMillis;
+
+    @Value("${queue.mirror.resync-interval-seconds:60}")
+    private long resyncIntervalSeconds;
+
+    @Value("${queue.mirror.idle-seconds:60}")
+    private long idleSeconds;
+
+    @PostConstruct
+    public void start() {
+        active = enabled && queueStore instanceof RedisQueueStore && !userQueueService.isWatermarkMode();
+        if (!active) {
+            return;
+        }
+        // 구독 연결 실패(기동 시 Redis 미준비 포함)도 재시도하도록 구독 시점에 연결한다.
+        changes = Flux.defer(() -> reactiveRedisTemplate.listenTo(queueNotificationService.getQueueChangePattern()))
+            .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofMillis(500)).maxBackoff(Duration.ofSeconds(10)))
+            .subscribe(message -> onChange(message.getChannel(), message.getMessage()),
+                e -> log.error("[Mirror] 변경 feed 구독 종료 - error: {}", e.getMessage()));
+        maintenance = Flux.interval(Duration.ofMillis(verifyIntervalMillis))
+            .onBackpressureDrop()
+            .concatMap(tick -> Flux.fromIterable(mirrors.entrySet())
+                .flatMap(entry -> maintain(entry.getKey(), entry.getValue())
+                    .onErrorResume(e -> {
+                        log.warn("[Mirror] mirror 확인 실패 - queue: {}", entry.getKey(), e);
+                        return Mono.empty();
+                    }), MAINTAIN_CONCURRENCY)
+                .then())
+            .subscribe();
+        log.info("[Mirror] wait queue mirror 시작 - maxStalenessMs: {}, verifyIntervalMs: {}", maxStalenessMillis, verifyIntervalMillis);
+    }
+
+    @PreDestroy
+    public void close() {
+        if (changes != null) {
+            changes.dispose();
+        }
+        if (maintenance != null) {
+            maintenance.dispose();
+        }
+    }
+
+    /**
+     * mirror에서 순위 조회 (1부터 시작)
+     * 반환: 응답할 수 없으면 null (비활성 / cold / lagging이거나 사용자가 mirror에 없음)
+     * 처음 조회한 대기열은 이때 동기화를 시작한다.
+     */
+    public Long getRank(final String queue, final long userId) {
+        if (!active) {
+            return null;
+        }
+        Mirror mirror = mirrors.get(queue);
+        if (mirror == null) {
+            Mirror created = new Mirror(System.nanoTime());
+            mirror = mirrors.putIfAbsent(queue, created);
+            if (mirror == null) {
+                resync(queue, created).subscribe(null,
+                    e -> log.warn("[Mirror] 동기화 실패 - queue: {}", queue, e));
+                return null;
+            }
+        }
+        long rank = mirror.rank(userId, System.nanoTime(), Duration.ofMillis(maxStalenessMillis).toNanos());
+        if (rank <= 0) {
+            return null;
+        }
+        hits.increment();
+        return rank;
+    }
+
+    // mirror에서 응답한 순위 조회 수
+    public long getHits() {
+        return hits.sum();
+    }
+
+    // 메시지 형식: {버전}|{R|A|D}|{데이터}
+    private void onChange(final String channel, final String message) {
+        Mirror mirror = mirrors.get(queueNotificationService.getQueueOfChangeChannel(channel));
+        if (mirror == null) {
+            return;  // 이 인스턴스에서 조회하지 않는 대기열
+        }
+        int first = message.indexOf('|');
+        int second = message.indexOf('|', first + 1);
+        if (first < 0 || second != first + 2) {
+            return;
+        }
+        mirror.onChange(new Change(Long.parseLong(message.substring(0, first)), message.charAt(first + 1),
+            message.substring(second + 1)), System.nanoTime());
+    }
+
+    // 주기 작업: idle 정리 → liveness 일괄 갱신 → 재동기화 또는 버전 확인
+    private Mono<Void> maintain(final String queue, final Mirror mirror) {
+        long now = System.nanoTime();
+        if (mirror.isIdle(now, Duration.ofSeconds(idleSeconds).toNanos())) {
+            mirrors.remove(queue, mirror);
+            log.debug("[Mirror] 조회가 없는 mirror 정리 - queue: {}", queue);
+            return Mono.empty();
+        }
+        List<Long> touched = mirror.drainTouched();
+        Mono<Void> touch = touched.isEmpty() ? Mono.empty() : touchWaiters(queue, touched);
+        Mono<Void> check = mirror.needsResync(now, Duration.ofSeconds(resyncIntervalSeconds).toNanos())
+            ? resync(queue, mirror)
+            : verify(queue, mirror);
+        return touch.then(check);
+    }
+
+    private Mono<Void> resync(final String queue, final Mirror mirror) {
+        return Mono.defer(() -> {
+            if (!mirror.beginSync()) {
+                return Mono.empty();  // 이미 동기화 중
+            }
+            return reactiveRedisTemplate.execute(QueueScripts.MIRROR_SNAPSHOT,
+                    List.of(USER_QUEUE_WAIT_KEY.formatted(queue), USER_QUEUE_SEQUENCE_KEY.formatted(queue)))
+                .next()
+                .doOnNext(reply -> {
+                    mirror.install(reply, System.nanoTime());
+                    log.debug("[Mirror] 동기화 - queue: {}, version: {}, size: {}", queue, reply.get(0), (reply.size() - 1) / 2);
+                })
+                .doOnError(e -> mirror.abortSync())
+                .then();
+        });
+    }
+
+    // Redis 버전과 비교 (같으면 확인 시각 갱신, 뒤처진 채로 max-staleness-ms가 지나면 재동기화 대상)
+    private Mono<Void> verify(final String queue, final Mirror mirror) {
+        long version = mirror.version();
+        if (version < 0) {
+            return Mono.empty();
+        }
+        long requestedAt = System.nanoTime();
+        return reactiveRedisTemplate.<String, String>opsForHash()
+            .get(USER_QUEUE_SEQUENCE_KEY.formatted(queue), SEQUENCE_VERSION_FIELD)
+            .map(Long::parseLong)
+            .defaultIfEmpty(0L)
+            .doOnNext(remote -> mirror.verify(version, remote, requestedAt, Duration.ofMillis(maxStalenessMillis).toNanos()))
+            .then();
+    }
+
+    private Mono<Void> touchWaiters(final String queue, final List<Long> userIds) {
+        List<String> args = new ArrayList<>(userIds.size() + 1);
+        args.add(String.valueOf(Instant.now().getEpochSecond()));
+        userIds.forEach(userId -> args.add(userId.toString()));
+        return reactiveRedisTemplate.execute(QueueScripts.TOUCH_ALL, List.of(USER_QUEUE_SEEN_KEY.formatted(queue)), args)
+            .then();
+    }
+
+    private record Change(long version, char type, String data) {
+    }
+
+    /**
+     * 대기열별 mirror 상태 (모든 연산은 this로 잠근다)
+     */
+    private static final class Mirror {
+
+        private OrderStatisticSkipList waiting = new OrderStatisticSkipList();
+        private LongLongHashMap scores = new LongLongHashMap();  // userId → score
+        private long version = -1;  // 마지막으로 반영한 변경 feed 버전 (-1: cold)
+        private boolean lagging;  // 변경 유실 감지 (재동기화 전까지 응답하지 않는다)
+        private boolean syncing;
+        private List<Change> pending = new ArrayList<>();  // 동기화 중에 받은 변경
+        private long verifiedAt;  // 마지막으로 Redis와 같은 버전임을 확인한 시각 (System.nanoTime)
+        private long syncedAt;
+        private long readAt;
+        private Set<Long> touched = new HashSet<>();  // liveness 갱신 대기 사용자
+
+        private Mirror(final long now) {
+            this.readAt = now;
+        }
+
+        synchronized long rank(final long userId, final long now, final long maxStalenessNanos) {
+            readAt = now;
+            if (version < 0 || lagging || now - verifiedAt > maxStalenessNanos) {
+                return 0L;
+            }
+            long score = scores.get(userId, -1L);
+            if (score < 0) {
+                return 0L;
+            }
+            touched.add(userId);
+            return waiting.rank(score, userId);
+        }
+
+        synchronized void onChange(final Change change, final long now) {
+            if (syncing) {
+                if (pending.size() < MAX_PENDING_CHANGES) {
+                    pending.add(change);
+                }
+                return;
+            }
+            if (version < 0 || lagging || change.version() <= version) {
+                return;  // 동기화 대기 중이거나 이미 반영한 변경
+            }
+            if (change.version() != version + 1) {
+                lagging = true;
+                return;
+            }
+            apply(change);
+            version = change.version();
+            verifiedAt = now;
+        }
+
+        synchronized boolean beginSync() {
+            if (syncing) {
+                return false;
+            }
+            syncing = true;
+            pending = new ArrayList<>();
+            return true;
+        }
+
+        synchronized void abortSync() {
+            syncing = false;
+            lagging = true;
+            pending = new ArrayList<>();
+        }
+
+        // 스냅샷 적용 후 동기화 중에 받은 변경 중 이어지는 버전을 반영한다.
+        synchronized void install(final List<Object> snapshot, final long now) {
+            waiting = new OrderStatisticSkipList();
+            scores = new LongLongHashMap();
+            for (int i = 1; i + 1 < snapshot.size(); i += 2) {
+                long userId = Long.parseLong(String.valueOf(snapshot.get(i)));
+                long score = (long) Double.parseDouble(String.valueOf(snapshot.get(i + 1)));
+                scores.put(userId, score);
+                waiting.insert(score, userId);
+            }
+            version = QueueScripts.toLong(snapshot.get(0));
+            syncing = false;
+            lagging = false;
+            verifiedAt = now;
+            syncedAt = now;
+            List<Change> buffered = pending;
+            pending = new ArrayList<>();
+            buffered.forEach(change -> onChange(change, now));
+        }
+
+        synchronized void verify(final long expected, final long remote, final long requestedAt, final long maxStalenessNanos) {
+            if (syncing || version != expected) {
+                return;  // 확인하는 사이 변경이 반영됨 (다음 주기에 다시 확인)
+            }
+            if (remote == version) {
+                verifiedAt = requestedAt;
+            } else if (remote < version || requestedAt - verifiedAt > maxStalenessNanos) {
+                lagging = true;  // Redis 쪽 초기화(만료) 또는 변경 유실
+            }
+        }
+
+        synchronized long version() {
+            return syncing ? -1L : version;
+        }
+
+        synchronized boolean needsResync(final long now, final long resyncIntervalNanos) {
+            return !syncing && (version < 0 || lagging || now - syncedAt > resyncIntervalNanos);
+        }
+
+        synchronized boolean isIdle(final long now, final long idleNanos) {
+            return now - readAt > idleNanos;
+        }
+
+        synchronized List<Long> drainTouched() {
+            if (touched.isEmpty()) {
+                return List.of();
+            }
+            List<Long> drained = List.copyOf(touched);
+            touched = new HashSet<>();
+            return drained;
+        }
+
+        // R: userId:score,... (일괄 등록은 여러 명), A / D: userId,userId,...
+        private void apply(final Change change) {
+            if (change.type() == 'R') {
+                for (String registration : change.data().split(",")) {
+                    String[] fields = registration.split(":");
+                    long userId = Long.parseLong(fields[0]);
+                    long score = Long.parseLong(fields[1]);
+                    remove(userId);
+                    scores.put(userId, score);
+                    waiting.insert(score, userId);
+                }
+                return;
+            }
+            for (String userId : change.data().split(",")) {
+                if (!userId.isEmpty()) {
+                    remove(Long.parseLong(userId));
+                }
+            }
+        }
+
+        private void remove(final long userId) {
+            long score = scores.get(userId, -1L);
+            if (score >= 0) {
+                waiting.delete(score, userId);
+                scores.remove(userId);
+            }
+        }
+    }
+}
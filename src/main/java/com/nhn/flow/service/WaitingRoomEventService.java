@@ -0,0 +1,173 @@
+package com.nhn.flow.service;
+
+import com.nhn.flow.dto.QueueEvent;
+import com.nhn.flow.dto.WaitingRoomEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * 대기실 실시간 순위 알림 서비스
+ * 연결 시 순위를 한 번 조회하고, 이후에는 알림 허브가 전달하는 HEAD(누적 진입 인원) / PRUNED(이탈자 정리) 이벤트가 올 때만
+ * 순위를 다시 조회해 예상 대기 시간과 함께 push 한다. (polling 대신 이벤트 수에 비례하는 부하)
+ * 알림 하나에 연결마다 재조회하지만 QueueReadService.refreshRank가 같은 대기열 재조회를 묶어 대기열당 Redis 조회 한 번으로 처리한다.
+ * 연결이 유지되는 동안에는 대기 사용자 liveness를 주기적으로 갱신한다.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class WaitingRoomEventService {
+
+    private static final double ADMISSION_RATE_SMOOTHING = 0.3;  // EWMA 가중치
+
+    private final UserQueueService userQueueService;
+    private final QueueReadService queueReadService;
+    private final QueueNotificationHub queueNotificationHub;
+    private final AdmissionTokenService admissionTokenService;
+
+    /**
+     * 사용자 대기 상태 스트림
+     * RANK 이벤트를 보내다가 진입 허용되면 ALLOWED(토큰 포함)를 보내고 종료한다.
+     * 알림 구독이 확인된 뒤에 순위를 조회하므로, 그 사이에 발행된 ALLOWED / HEAD 이벤트도 빠지지 않는다.
+     *
+     * 이벤트 id는 반영된 마지막 알림 이벤트 로그 ID다. 재연결(Last-Event-ID)하면 구독 후 상태를 다시 조회하므로
+     * 끊긴 동안의 진입 허용도 놓치지 않고, 조회 시점의 로그 ID부터 이어서 id를 붙인다. (로그가 비어 있으면 Last-Event-ID)
+     */
+    public Flux<WaitingRoomEvent> streamWaitingRoom(final String queue, final Long userId, final String lastEventId) {
+        return queueNotificationHub.subscribeUserConfirmed(queue, userId)
+            .switchOnFirst((first, events) -> queueNotificationHub.getLatestEventId(queue)
+                .defaultIfEmpty(lastEventId != null ? lastEventId : "")
+                // 로그 위치를 먼저 읽고 상태를 조회한다. (이 위치까지의 이벤트는 조회한 상태에 이미 반영되어 있다)
+                .flatMapMany(snapshotId -> Mono.zip(userQueueService.getRank(queue, userId), userQueueService.getPosition(queue, userId), userQueueService.getHead(queue))
+                    .flatMapMany(tuple -> {
+                        String eventId = snapshotId.isEmpty() ? null : snapshotId;
+                        long rank = tuple.getT1();
+                        if (rank < 0) {
+                            return leftEvent(queue, userId, eventId);
+                        }
+                        RankTracker tracker = new RankTracker(queue, userId, rank, tuple.getT2(), tuple.getT3(), eventId);
+                        // 연결이 유지되는 동안 liveness를 갱신한다. (이탈 사용자 정리 대상에서 제외)
+                        // 알림 스트림이 끝나면(전송 버퍼 초과로 허브가 끊은 경우) 갱신도 멈춰 연결을 닫는다. (Last-Event-ID로 재연결)
+                        Flux<WaitingRoomEvent> updates = events
+                            .filter(event -> eventId == null || event.id() == null || QueueNotificationHub.compareEventIds(event.id(), eventId) > 0)
+                            .concatMap(tracker::apply)
+                            .publish(applied -> applied.mergeWith(userQueueService.keepWaiterAlive(queue, userId)
+                                .then(Mono.<WaitingRoomEvent>empty())
+                                .takeUntilOther(applied.then())));
+                        return Flux.concat(Mono.just(tracker.rankEvent()), updates)
+                            .takeUntil(event -> !"RANK".equals(event.event()));
+                    })));
+    }
+
+    // 최초 연결 (Last-Event-ID 없음)
+    public Flux<WaitingRoomEvent> streamWaitingRoom(final String queue, final Long userId) {
+        return streamWaitingRoom(queue, userId, null);
+    }
+
+    // 진입 허용이 확인된 뒤에만 호출되므로 다시 조회하지 않고 토큰을 발급한다.
+    private Mono<WaitingRoomEvent> allowedEvent(final String queue, final Long userId, final String eventId) {
+        return Mono.fromSupplier(() -> WaitingRoomEvent.allowed(queue, userId, admissionTokenService.issue(queue, userId), eventId));
+    }
+
+    // 대기 중이 아니게 된 사용자: 진입 허용이면 ALLOWED, 아니면 NOT_WAITING
+    private Mono<WaitingRoomEvent> leftEvent(final String queue, final Long userId, final String eventId) {
+        return userQueueService.isAllowed(queue, userId)
+            .flatMap(allowed -> allowed
+                ? allowedEvent(queue, userId, eventId)
+                : Mono.just(WaitingRoomEvent.notWaiting(queue, userId, eventId)));
+    }
+
+    /**
+     * 연결별 순위 추적기 (이벤트는 순서대로 하나씩 적용된다)
+     * - proceed-set 모드: HEAD / PRUNED 이벤트마다 순위를 다시 조회한다. (연결들의 재조회는 묶어서 한 번에 조회)
+     *   (높은 등급 사용자의 등록과 이탈자 정리로 순위가 head 변화와 다르게 바뀌므로 head로 추정하지 않는다)
+     * - watermark 모드: 순위 = 가입 순번 - head(watermark) (등급과 이탈자 정리가 없다)
+     * 진입 허용은 허브가 이 사용자에게만 라우팅하는 ALLOWED 이벤트로 확인한다.
+     */
+    private final class RankTracker {
+
+        private final String queue;
+        private final Long userId;
+        private final long position;
+        private long rank;
+        private long head;
+        private double admissionRate;  // 초당 진입 허용 인원
+        private long lastAdmissionNanos;
+        private boolean admissionObserved;
+        private String eventId;  // 마지막으로 반영한 이벤트 로그 ID
+
+        private RankTracker(final String queue, final Long userId, final long rank, final long position, final long head,
+                            final String eventId) {
+            this.queue = queue;
+            this.userId = userId;
+            this.rank = rank;
+            this.position = position;
+            this.head = head;
+            this.eventId = eventId;
+        }
+
+        Mono<WaitingRoomEvent> apply(final QueueEvent event) {
+            if (event.id() != null) {
+                eventId = event.id();
+            }
+            switch (event.event()) {
+                case "ALLOWED" -> {
+                    return allowedEvent(queue, userId, eventId);
+                }
+                case "HEAD" -> {
+                    long newHead = Long.parseLong(event.data());
+                    if (newHead <= head) {
+                        return Mono.empty();
+                    }
+                    observeAdmission(newHead - head);
+                    head = newHead;
+                    if (!userQueueService.isWatermarkMode()) {
+                        return refreshRank();
+                    }
+                    if (position <= newHead) {
+                        return allowedEvent(queue, userId, eventId);
+                    }
+                    rank = position - newHead;
+                }
+                case "PRUNED" -> {
+                    return refreshRank();
+                }
+                default -> {
+                    return Mono.empty();
+                }
+            }
+            return Mono.just(rankEvent());
+        }
+
+        // 순위 재조회 (대기 중이 아니면 진입 허용 여부 확인)
+        private Mono<WaitingRoomEvent> refreshRank() {
+            return queueReadService.refreshRank(queue, userId)
+                .flatMap(current -> {
+                    if (current < 0) {
+                        return leftEvent(queue, userId, eventId);
+                    }
+                    rank = current;
+                    return Mono.just(rankEvent());
+                });
+        }
+
+        WaitingRoomEvent rankEvent() {
+            long etaSeconds = admissionRate > 0 ? (long) Math.ceil(rank / admissionRate) : -1L;
+            return WaitingRoomEvent.rank(queue, userId, rank, etaSeconds, eventId);
+        }
+
+        private void observeAdmission(final long admitted) {
+            long now = System.nanoTime();
+            if (admissionObserved) {
+                double elapsedSeconds = (now - lastAdmissionNanos) / 1_000_000_000.0;
+                if (elapsedSeconds > 0) {
+                    admissionRate += ADMISSION_RATE_SMOOTHING * (admitted / elapsedSeconds - admissionRate);
+                }
+            }
+            lastAdmissionNanos = now;
+            admissionObserved = true;
+        }
+    }
+}
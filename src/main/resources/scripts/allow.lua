@@ -0,0 +1,122 @@
+-- 진입 허용: wait → proceed 이동, 이력 추가, 묶음 알림 발행을 한 번에 원자적으로 처리한다.
+-- proceed score는 진입 허용 시각이며, 세션 lease 갱신 시 마지막 갱신 시각으로 바뀐다.
+-- wait queue는 가중치 순서(PriorityTiers)로 정렬되어 있으므로 앞에서부터 꺼내면 등급별 가중치 비율로 진입한다. (등급 수와 무관하게 O(batch))
+-- 누적 진입 인원(head)을 함께 발행해 대기실 연결이 순위를 다시 조회하고 진입 속도를 추정하게 한다.
+-- KEYS[1]: 대기열(wait) key
+-- KEYS[2]: 진입 허용(proceed) key
+-- KEYS[3]: 대기열 전체 이력 stream key
+-- KEYS[4]: 활성 대기열 registry key
+-- KEYS[5]: 스케줄러 fencing token key
+-- KEYS[6]: 순번 hash key (필드 _head: 누적 진입 인원, _version: 변경 feed 버전, _vtime: 가상 시각)
+-- KEYS[7]: 알림 이벤트 로그 stream key
+-- KEYS[8]: 진입 허용 사용자가 있는 대기열 registry key (세션 lease 회수 대상)
+-- KEYS[9]: 대기 사용자 마지막 활동 시각(seen) key
+-- KEYS[10..]: 등급별 대기 key (등급 번호 순서대로, 등급 수만큼)
+-- ARGV[1]: 진입 허용 인원
+-- ARGV[2]: 진입 허용 timestamp (epoch second)
+-- ARGV[3]: 알림 채널
+-- ARGV[4]: 사용자별 이력 shard key prefix (뒤에 userId % shard 수를 붙인다)
+-- ARGV[5]: 대기열 이름
+-- ARGV[6]: 스케줄러 fencing token (빈 값이면 검사하지 않음: 수동 진입 허용)
+-- ARGV[7]: 알림 이벤트 로그 최대 길이 (근사치)
+-- ARGV[8]: 전체 이력 최대 길이 (근사치)
+-- ARGV[9]: 전체 이력 보관 최소 ID (이보다 오래된 항목 삭제, 빈 값이면 시간 기준 삭제 안 함)
+-- ARGV[10]: 사용자별 이력 shard 수
+-- ARGV[11]: 사용자별 이력 최대 개수
+-- ARGV[12]: 사용자별 이력 shard TTL 초 (0이면 만료 없음)
+-- ARGV[13]: 스크립트 안에서 이력 기록 여부 (1: inline)
+-- ARGV[14]: 대기열 변경 feed 채널 (인스턴스별 wait queue mirror용)
+-- 반환: 진입 허용된 userId 목록 (대기 순서대로)
+local BATCH = 1000
+local TIERS = 16  -- 최대 등급 수 (PriorityTiers.MAX_TIERS)
+local TIER_KEYS = 9  -- 등급별 대기 key 앞의 KEYS 개수
+-- 사용자별 이력: shard hash의 userId 필드 앞에 고정 길이 항목(action 코드 1자 + timestamp 16진수 8자)을 붙이고 최대 개수로 자른다.
+local ENTRY_LENGTH = 9
+
+-- 이벤트 로그에 기록하고 로그 ID를 붙여 발행한다. (재연결 시 Last-Event-ID 이후 이벤트 재전송)
+local function emit(message)
+    local id = redis.call('XADD', KEYS[7], 'MAXLEN', '~', ARGV[7], '*', 'message', message)
+    redis.call('PUBLISH', ARGV[3], id .. '|' .. message)
+end
+
+-- lease를 잃은 스케줄러(오래된 fencing token)의 진입 허용은 거부한다.
+if ARGV[6] ~= '' and redis.call('GET', KEYS[5]) ~= ARGV[6] then
+    return {}
+end
+
+local popped = redis.call('ZPOPMIN', KEYS[1], ARGV[1])
+local admitted = {}
+local tiers = {}
+for i = 1, #popped, 2 do
+    admitted[#admitted + 1] = popped[i]
+    local tier = tonumber(popped[i + 1]) % TIERS
+    tiers[tier] = tiers[tier] or {}
+    tiers[tier][#tiers[tier] + 1] = popped[i]
+end
+
+-- 대기열이 비었거나 TTL로 만료되었으면 registry에서 제거한다.
+if redis.call('ZCARD', KEYS[1]) == 0 then
+    redis.call('SREM', KEYS[4], ARGV[5])
+    redis.call('DEL', KEYS[9])
+end
+if #admitted == 0 then
+    return admitted
+end
+
+-- 등급별 대기 set에서도 제거하고, 가상 시각을 마지막으로 꺼낸 사용자의 finish로 옮긴다.
+for tier, members in pairs(tiers) do
+    local key = KEYS[TIER_KEYS + 1 + tier]
+    if key then
+        for from = 1, #members, BATCH do
+            redis.call('ZREM', key, unpack(members, from, math.min(from + BATCH - 1, #members)))
+        end
+    end
+end
+redis.call('HSET', KEYS[6], '_vtime', string.format('%.0f', math.floor(tonumber(popped[#popped]) / TIERS)))
+
+-- unpack 인자 수 제한을 피하기 위해 BATCH 단위로 나누어 기록한다.
+for from = 1, #admitted, BATCH do
+    local to = math.min(from + BATCH - 1, #admitted)
+    local members = {}
+    for i = from, to do
+        members[#members + 1] = ARGV[2]
+        members[#members + 1] = admitted[i]
+    end
+    redis.call('ZADD', KEYS[2], unpack(members))
+    redis.call('ZREM', KEYS[9], unpack(admitted, from, to))
+end
+redis.call('SADD', KEYS[8], ARGV[5])
+
+-- 변경 feed: 버전을 붙여 발행한다. (mirror는 버전이 건너뛰면 유실로 보고 재동기화)
+local version = redis.call('HINCRBY', KEYS[6], '_version', 1)
+redis.call('PUBLISH', ARGV[14], version .. '|A|' .. table.concat(admitted, ','))
+
+-- 이력 (write-behind 모드에서는 호출자가 버퍼를 거쳐 기록한다)
+if ARGV[13] == '1' then
+    local entry = 'A' .. string.format('%08x', tonumber(ARGV[2]))
+    local maxLength = ENTRY_LENGTH * tonumber(ARGV[11])
+    local shards = tonumber(ARGV[10])
+    local touched = {}
+    for _, userId in ipairs(admitted) do
+        redis.call('XADD', KEYS[3], 'MAXLEN', '~', ARGV[8], '*', 'userId', userId, 'action', 'ALLOW', 'timestamp', ARGV[2])
+        local shardKey = ARGV[4] .. (tonumber(userId) % shards)
+        local entries = entry .. (redis.call('HGET', shardKey, userId) or '')
+        redis.call('HSET', shardKey, userId, string.sub(entries, 1, maxLength))
+        touched[shardKey] = true
+    end
+    if tonumber(ARGV[12]) > 0 then
+        for shardKey in pairs(touched) do
+            redis.call('EXPIRE', shardKey, ARGV[12])
+        end
+    end
+    if ARGV[9] ~= '' then
+        redis.call('XTRIM', KEYS[3], 'MINID', '~', ARGV[9])
+    end
+end
+
+-- 사용자별 알림 대신 한 번의 묶음 알림 + head 알림 (userId 자리는 0)
+local head = redis.call('HINCRBY', KEYS[6], '_head', #admitted)
+emit('0:ALLOWED_BATCH:' .. table.concat(admitted, ','))
+emit('0:HEAD:' .. head)
+
+return admitted
@@ -0,0 +1,34 @@
+-- 진입 허용 (watermark 모드): 사용자별 쓰기 없이 watermark를 N만큼 전진시킨다.
+-- 진입한 사용자 목록을 알 수 없으므로 사용자별 ALLOW 이력은 남기지 않는다.
+-- watermark가 곧 head이므로 "HEAD" 알림 하나로 모든 대기자가 순위(가입 순번 - head)를 계산한다.
+-- KEYS[1]: 순번 hash key
+-- KEYS[2]: 활성 대기열 registry key
+-- KEYS[3]: 스케줄러 fencing token key
+-- KEYS[4]: 알림 이벤트 로그 stream key
+-- ARGV[1]: 진입 허용 인원
+-- ARGV[2]: 알림 채널
+-- ARGV[3]: 대기열 이름
+-- ARGV[4]: 스케줄러 fencing token (빈 값이면 검사하지 않음: 수동 진입 허용)
+-- ARGV[5]: 알림 이벤트 로그 최대 길이 (근사치)
+-- 반환: 진입 허용된 인원
+if ARGV[4] ~= '' and redis.call('GET', KEYS[3]) ~= ARGV[4] then
+    return 0
+end
+
+local state = redis.call('HMGET', KEYS[1], '_seq', '_watermark')
+local last = tonumber(state[1] or '0')
+local watermark = tonumber(state[2] or '0')
+local target = math.min(last, watermark + tonumber(ARGV[1]))
+
+if target >= last then
+    redis.call('SREM', KEYS[2], ARGV[3])
+end
+if target <= watermark then
+    return 0
+end
+
+redis.call('HSET', KEYS[1], '_watermark', target)
+local message = '0:HEAD:' .. target
+local id = redis.call('XADD', KEYS[4], 'MAXLEN', '~', ARGV[5], '*', 'message', message)
+redis.call('PUBLISH', ARGV[2], id .. '|' .. message)
+return target - watermark
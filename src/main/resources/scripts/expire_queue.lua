@@ -0,0 +1,16 @@
+-- 활성 대기열 key TTL 갱신 (스케줄러 tick마다 호출)
+-- 등록 스크립트는 새로 만든 key에만 TTL을 걸므로, 대기 중인 대기열이 만료되지 않도록 여기서 늘려 준다.
+-- 남은 시간이 TTL의 절반 이하일 때만 갱신해 EXPIRE 쓰기를 TTL 절반에 한 번으로 줄인다.
+-- KEYS[1]: 남은 시간 기준 key (wait key, watermark 모드는 순번 hash key)
+-- KEYS[2..]: 함께 갱신할 key (순번 hash, seen, 등급별 대기 key 등, 없는 key는 건너뛴다)
+-- ARGV[1]: TTL 초
+-- 반환: 갱신 여부 (1: 갱신, 0: 남은 시간이 충분하거나 대기열이 없음)
+local ttl = tonumber(ARGV[1])
+local remaining = redis.call('TTL', KEYS[1])
+if remaining == -2 or remaining > ttl / 2 then
+    return 0
+end
+for _, key in ipairs(KEYS) do
+    redis.call('EXPIRE', key, ttl)
+end
+return 1
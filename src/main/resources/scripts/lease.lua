@@ -0,0 +1,20 @@
+-- 스케줄러 lease 획득/갱신
+-- 비어 있으면 fencing token을 증가시켜 획득하고, 이미 소유 중이면 만료 시간만 연장한다.
+-- KEYS[1]: lease key (값: "{instanceId}:{fencingToken}")
+-- KEYS[2]: fencing token key
+-- ARGV[1]: instanceId
+-- ARGV[2]: lease TTL (밀리초)
+-- 반환: 소유 중인 fencing token, 다른 인스턴스가 소유 중이면 -1
+local current = redis.call('GET', KEYS[1])
+if current then
+    local owner, token = string.match(current, '^(.*):(%d+)$')
+    if owner == ARGV[1] then
+        redis.call('PEXPIRE', KEYS[1], ARGV[2])
+        return tonumber(token)
+    end
+    return -1
+end
+
+local token = redis.call('INCR', KEYS[2])
+redis.call('SET', KEYS[1], ARGV[1] .. ':' .. token, 'PX', ARGV[2])
+return token
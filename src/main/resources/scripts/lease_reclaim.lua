@@ -0,0 +1,20 @@
+-- 만료된 세션 lease 회수: 마지막 갱신 시각이 기준 이전인 사용자를 제거하고, 회수된 사용자를 알린다.
+-- KEYS[1]: 진입 허용(proceed) key
+-- KEYS[2]: 진입 허용 사용자가 있는 대기열 registry key
+-- ARGV[1]: 만료 기준 시각 (epoch second, 이 시각 이전에 갱신된 lease는 만료)
+-- ARGV[2]: 대기열 이름
+-- ARGV[3]: 진입 취소 알림 채널 (인스턴스별 진입 상태 near cache 무효화)
+-- 반환: 회수한 인원
+local BATCH = 1000
+
+local reclaimed = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', '(' .. ARGV[1])
+-- unpack 인자 수 제한을 피하기 위해 BATCH 단위로 나누어 제거하고 알린다.
+for from = 1, #reclaimed, BATCH do
+    local to = math.min(from + BATCH - 1, #reclaimed)
+    redis.call('ZREM', KEYS[1], unpack(reclaimed, from, to))
+    redis.call('PUBLISH', ARGV[3], ARGV[2] .. '|' .. table.concat(reclaimed, ',', from, to))
+end
+if redis.call('ZCARD', KEYS[1]) == 0 then
+    redis.call('SREM', KEYS[2], ARGV[2])
+end
+return #reclaimed
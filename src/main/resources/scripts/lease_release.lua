@@ -0,0 +1,9 @@
+-- 스케줄러 lease 반납 (소유자일 때만 삭제)
+-- KEYS[1]: lease key
+-- ARGV[1]: instanceId
+-- 반환: 삭제된 key 수
+local current = redis.call('GET', KEYS[1])
+if current and string.match(current, '^(.*):%d+$') == ARGV[1] then
+    return redis.call('DEL', KEYS[1])
+end
+return 0
@@ -0,0 +1,11 @@
+-- wait queue mirror 초기화 / 재동기화: 변경 feed 버전과 wait queue 전체를 원자적으로 읽는다.
+-- 이후 mirror는 이 버전 다음 변경부터 feed로 이어서 반영한다.
+-- KEYS[1]: 대기열(wait) key
+-- KEYS[2]: 순번 hash key (필드 _version: 변경 feed 버전)
+-- 반환: {버전, userId, score, userId, score, ...} (대기 순서대로)
+local reply = {tonumber(redis.call('HGET', KEYS[2], '_version') or '0')}
+local members = redis.call('ZRANGE', KEYS[1], 0, -1, 'WITHSCORES')
+for i = 1, #members do
+    reply[#reply + 1] = members[i]
+end
+return reply
@@ -0,0 +1,13 @@
+-- 가입 순번 조회: wait score에서 등급을 찾아 등급별 대기 set의 순번(score)을 읽는다.
+-- KEYS[1]: 대기열(wait) key
+-- KEYS[2..]: 등급별 대기 key (등급 번호 순서대로, 등급 수만큼)
+-- ARGV[1]: userId
+-- 반환: 가입 순번 (대기 중이 아니면 -1)
+local TIERS = 16  -- 최대 등급 수 (PriorityTiers.MAX_TIERS)
+
+local score = redis.call('ZSCORE', KEYS[1], ARGV[1])
+if not score then
+    return -1
+end
+local key = KEYS[2 + tonumber(score) % TIERS]
+return key and tonumber(redis.call('ZSCORE', key, ARGV[1])) or -1
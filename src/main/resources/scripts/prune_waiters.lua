@@ -0,0 +1,54 @@
+-- 이탈한 대기 사용자 정리: 마지막 활동 시각이 기준 이전인 사용자를 batch 단위로 wait queue에서 제거한다.
+-- KEYS[1]: 대기열(wait) key
+-- KEYS[2]: 대기 사용자 마지막 활동 시각(seen) key (member: userId, score: epoch second)
+-- KEYS[3]: 활성 대기열 registry key
+-- KEYS[4]: 순번 hash key (필드 _version: 변경 feed 버전, _finish:{등급}: 등급의 마지막 finish)
+-- KEYS[5]: 알림 이벤트 로그 stream key
+-- KEYS[6..]: 등급별 대기 key (등급 번호 순서대로, 등급 수만큼)
+-- ARGV[1]: 만료 기준 시각 (epoch second, 이 시각 이전에 마지막으로 활동한 사용자는 이탈로 본다)
+-- ARGV[2]: 한 번에 제거할 최대 인원
+-- ARGV[3]: 대기열 이름
+-- ARGV[4]: 대기열 변경 feed 채널 (인스턴스별 wait queue mirror용)
+-- ARGV[5]: 알림 채널
+-- ARGV[6]: 알림 이벤트 로그 최대 길이 (근사치)
+-- 반환: 제거한 인원 (ARGV[2]와 같으면 남은 이탈 사용자가 더 있을 수 있다)
+local TIERS = 16  -- 최대 등급 수 (PriorityTiers.MAX_TIERS)
+local TIER_KEYS = 5  -- 등급별 대기 key 앞의 KEYS 개수
+
+local stale = redis.call('ZRANGEBYSCORE', KEYS[2], '-inf', '(' .. ARGV[1], 'LIMIT', 0, ARGV[2])
+if #stale > 0 then
+    local tiers = {}
+    for _, userId in ipairs(stale) do
+        local score = redis.call('ZSCORE', KEYS[1], userId)
+        if score then
+            local tier = tonumber(score) % TIERS
+            tiers[tier] = tiers[tier] or {}
+            tiers[tier][#tiers[tier] + 1] = userId
+        end
+    end
+    for tier, members in pairs(tiers) do
+        local key = KEYS[TIER_KEYS + 1 + tier]
+        if key then
+            redis.call('ZREM', key, unpack(members))
+        end
+        -- 등급이 비었으면 이탈자 몫만큼 늘어난 finish를 버린다. (다음 등록은 가상 시각부터)
+        if not key or redis.call('ZCARD', key) == 0 then
+            redis.call('HDEL', KEYS[4], '_finish:' .. tier)
+        end
+    end
+    redis.call('ZREM', KEYS[1], unpack(stale))
+    redis.call('ZREM', KEYS[2], unpack(stale))
+    local version = redis.call('HINCRBY', KEYS[4], '_version', 1)
+    redis.call('PUBLISH', ARGV[4], version .. '|D|' .. table.concat(stale, ','))
+    -- 앞에서 빠진 인원만큼 순위가 바뀌므로 대기실 연결이 순위를 다시 조회하게 알린다. (userId 자리는 0)
+    local message = '0:PRUNED:' .. #stale
+    local id = redis.call('XADD', KEYS[5], 'MAXLEN', '~', ARGV[6], '*', 'message', message)
+    redis.call('PUBLISH', ARGV[5], id .. '|' .. message)
+end
+
+-- 대기열이 비었으면 registry와 seen key를 함께 정리한다.
+if redis.call('ZCARD', KEYS[1]) == 0 then
+    redis.call('SREM', KEYS[3], ARGV[3])
+    redis.call('DEL', KEYS[2])
+end
+return #stale
@@ -0,0 +1,9 @@
+-- 알림 이벤트 발행: 이벤트 로그에 기록하고 로그 ID를 붙여 발행한다.
+-- 메시지 형식: {로그 ID}|userId:event:data
+-- KEYS[1]: 알림 이벤트 로그 stream key
+-- ARGV[1]: 알림 채널
+-- ARGV[2]: 메시지 (userId:event:data)
+-- ARGV[3]: 알림 이벤트 로그 최대 길이 (근사치)
+-- 반환: 메시지를 받은 구독자 수
+local id = redis.call('XADD', KEYS[1], 'MAXLEN', '~', ARGV[3], '*', 'message', ARGV[2])
+return redis.call('PUBLISH', ARGV[1], id .. '|' .. ARGV[2])
@@ -0,0 +1,10 @@
+-- 대기열 통계: 대기 인원, 진입 허용 인원, 등급별 대기 인원을 한 번에 조회한다.
+-- KEYS[1]: 대기열(wait) key
+-- KEYS[2]: 진입 허용(proceed) key
+-- KEYS[3..]: 등급 순서대로 등급별 대기 key
+-- 반환: {대기 인원, 진입 허용 인원, 등급별 대기 인원...}
+local stats = {redis.call('ZCARD', KEYS[1]), redis.call('ZCARD', KEYS[2])}
+for i = 3, #KEYS do
+    stats[#stats + 1] = redis.call('ZCARD', KEYS[i])
+end
+return stats
@@ -0,0 +1,19 @@
+-- 여러 사용자 순위 일괄 조회 (묶어서 한 번에 조회해 Redis 왕복을 줄인다)
+-- KEYS[1]: 조회할 sorted set key (wait 또는 proceed)
+-- KEYS[2]: (선택) 대기 사용자 마지막 활동 시각(seen) key - 있으면 조회한 사용자의 활동 시각도 갱신한다.
+-- ARGV[1]: 현재 시각 (epoch second)
+-- ARGV[2..]: userId
+-- 반환: userId 순서대로 0부터 시작하는 순위 (멤버가 아니면 -1)
+local ranks = {}
+for i = 2, #ARGV do
+    local rank = redis.call('ZRANK', KEYS[1], ARGV[i])
+    if rank then
+        ranks[#ranks + 1] = rank
+        if KEYS[2] then
+            redis.call('ZADD', KEYS[2], 'XX', ARGV[1], ARGV[i])
+        end
+    else
+        ranks[#ranks + 1] = -1
+    end
+end
+return ranks
@@ -0,0 +1,107 @@
+-- 대기열 등록: 용량 확인 → 순번 발급 → 등록 → TTL(새 key만) → 순위 → 이력 → 알림을 한 번에 원자적으로 처리한다.
+-- score = 가상 완료 시각(finish) * TIERS + 등급 번호 (등급별 가중치 비율로 진입, 같은 등급 안에서는 엄격한 선착순, PriorityTiers)
+-- 등급별 대기 sorted set(score: 가입 순번)에도 함께 넣어 등급 안 순위 / 등급별 대기 인원을 조회한다.
+-- KEYS[1]: 대기열(wait) key
+-- KEYS[2]: 사용자별 이력 shard hash key (필드: userId)
+-- KEYS[3]: 대기열 전체 이력 stream key
+-- KEYS[4]: 활성 대기열 registry key
+-- KEYS[5]: 순번 hash key (필드 _seq: 마지막 가입 순번, _version: 변경 feed 버전, _vtime: 가상 시각, _finish:{등급}: 등급의 마지막 finish)
+-- KEYS[6]: 알림 이벤트 로그 stream key
+-- KEYS[7]: 대기 사용자 마지막 활동 시각(seen) key (member: userId, score: epoch second)
+-- KEYS[8..]: 등급별 대기 key (등급 번호 순서대로, 등급 수만큼)
+-- ARGV[1]: userId
+-- ARGV[2]: 등급 번호 (0이 가장 높은 등급)
+-- ARGV[3]: 최대 용량 (0이면 무제한)
+-- ARGV[4]: TTL 초 (0이면 만료 없음)
+-- ARGV[5]: 이력 timestamp (epoch second)
+-- ARGV[6]: 알림 채널
+-- ARGV[7]: 대기열 이름
+-- ARGV[8]: 알림 이벤트 로그 최대 길이 (근사치)
+-- ARGV[9]: 전체 이력 최대 길이 (근사치)
+-- ARGV[10]: 전체 이력 보관 최소 ID (이보다 오래된 항목 삭제, 빈 값이면 시간 기준 삭제 안 함)
+-- ARGV[11]: 사용자별 이력 최대 개수
+-- ARGV[12]: 사용자별 이력 shard TTL 초 (0이면 만료 없음)
+-- ARGV[13]: 스크립트 안에서 이력 기록 여부 (1: inline)
+-- ARGV[14]: 대기열 변경 feed 채널 (인스턴스별 wait queue mirror용)
+-- ARGV[15]: 등급 stride (가중치에 반비례하는 가상 시각 증가량)
+-- 반환: {status, rank, 가입 순번}  status = 1(신규 등록), 0(이미 등록됨), -1(용량 초과)
+local TIERS = 16  -- 최대 등급 수 (PriorityTiers.MAX_TIERS)
+local TIER_KEYS = 7  -- 등급별 대기 key 앞의 KEYS 개수
+-- 사용자별 이력: shard hash의 userId 필드 앞에 고정 길이 항목(action 코드 1자 + timestamp 16진수 8자)을 붙이고 최대 개수로 자른다.
+local ENTRY_LENGTH = 9
+
+-- TTL이 없는 key(새로 만든 key)에만 만료 시간을 건다. (등록마다 EXPIRE를 쓰지 않고, 활성 대기열은 스케줄러가 갱신 - expire_queue.lua)
+-- 대기열의 key가 함께 만료되도록 wait key에 남은 시간이 있으면 그 시간에 맞춘다. (나중에 만든 등급별 대기 key 등)
+local function expireWithQueue(key, ttl)
+    if redis.call('TTL', key) == -1 then
+        local remaining = redis.call('PTTL', KEYS[1])
+        if remaining > 0 then
+            redis.call('PEXPIRE', key, remaining)
+        else
+            redis.call('EXPIRE', key, ttl)
+        end
+    end
+end
+
+-- 등급별 대기 key (설정에서 빠진 등급이면 nil)
+local function tierKey(tier)
+    return KEYS[TIER_KEYS + 1 + tier]
+end
+
+local existing = redis.call('ZRANK', KEYS[1], ARGV[1])
+if existing then
+    redis.call('ZADD', KEYS[7], ARGV[5], ARGV[1])
+    local tier = tonumber(redis.call('ZSCORE', KEYS[1], ARGV[1])) % TIERS
+    local key = tierKey(tier)
+    return {0, existing + 1, key and tonumber(redis.call('ZSCORE', key, ARGV[1])) or -1}
+end
+
+local capacity = tonumber(ARGV[3])
+if capacity > 0 and redis.call('ZCARD', KEYS[1]) >= capacity then
+    return {-1, -1, -1}
+end
+
+local position = redis.call('HINCRBY', KEYS[5], '_seq', 1)
+-- 가상 완료 시각: 등급이 비어 있었으면 가상 시각부터, 아니면 등급의 마지막 finish 뒤에 stride만큼
+local state = redis.call('HMGET', KEYS[5], '_vtime', '_finish:' .. ARGV[2])
+local finish = math.max(tonumber(state[1]) or 0, tonumber(state[2]) or 0) + tonumber(ARGV[15])
+local score = string.format('%.0f', finish * TIERS + tonumber(ARGV[2]))
+redis.call('HSET', KEYS[5], '_finish:' .. ARGV[2], string.format('%.0f', finish))
+redis.call('ZADD', KEYS[1], score, ARGV[1])
+redis.call('ZADD', tierKey(tonumber(ARGV[2])), position, ARGV[1])
+redis.call('ZADD', KEYS[7], ARGV[5], ARGV[1])
+redis.call('SADD', KEYS[4], ARGV[7])
+-- 변경 feed: 버전을 붙여 발행한다. (mirror는 버전이 건너뛰면 유실로 보고 재동기화)
+local version = redis.call('HINCRBY', KEYS[5], '_version', 1)
+redis.call('PUBLISH', ARGV[14], version .. '|R|' .. ARGV[1] .. ':' .. score)
+local ttl = tonumber(ARGV[4])
+if ttl > 0 then
+    expireWithQueue(KEYS[1], ttl)
+    -- 없는 key는 TTL이 -2라 건너뛴다.
+    for i = TIER_KEYS + 1, #KEYS do
+        expireWithQueue(KEYS[i], ttl)
+    end
+    expireWithQueue(KEYS[5], ttl)
+    expireWithQueue(KEYS[7], ttl)
+end
+local rank = redis.call('ZRANK', KEYS[1], ARGV[1]) + 1
+
+-- 이력 (write-behind 모드에서는 호출자가 버퍼를 거쳐 기록한다)
+if ARGV[13] == '1' then
+    local entries = 'R' .. string.format('%08x', tonumber(ARGV[5])) .. (redis.call('HGET', KEYS[2], ARGV[1]) or '')
+    redis.call('HSET', KEYS[2], ARGV[1], string.sub(entries, 1, ENTRY_LENGTH * tonumber(ARGV[11])))
+    if tonumber(ARGV[12]) > 0 then
+        redis.call('EXPIRE', KEYS[2], ARGV[12])
+    end
+    redis.call('XADD', KEYS[3], 'MAXLEN', '~', ARGV[9], '*', 'userId', ARGV[1], 'action', 'REGISTER', 'timestamp', ARGV[5])
+    if ARGV[10] ~= '' then
+        redis.call('XTRIM', KEYS[3], 'MINID', '~', ARGV[10])
+    end
+end
+
+-- 이벤트 로그에 기록하고 로그 ID를 붙여 발행한다. (재연결 시 Last-Event-ID 이후 이벤트 재전송)
+local message = ARGV[1] .. ':REGISTERED:' .. rank
+local id = redis.call('XADD', KEYS[6], 'MAXLEN', '~', ARGV[8], '*', 'message', message)
+redis.call('PUBLISH', ARGV[6], id .. '|' .. message)
+
+return {1, rank, position}
@@ -0,0 +1,175 @@
+-- 대기열 일괄 등록: 같은 대기열에 몰린 등록 요청 묶음을 스크립트 한 번으로 처리한다. (RegistrationCoalescer)
+-- 사용자별 결과는 register.lua를 요청 순서대로 실행한 것과 같다. (같은 묶음 안 중복 요청은 이미 등록됨)
+-- score = 가상 완료 시각(finish) * TIERS + 등급 번호 (같은 등급 안에서는 요청 순서대로 순번과 finish를 발급한다, PriorityTiers)
+-- KEYS[1]: 대기열(wait) key
+-- KEYS[2]: 대기열 전체 이력 stream key
+-- KEYS[3]: 활성 대기열 registry key
+-- KEYS[4]: 순번 hash key (필드 _seq: 마지막 가입 순번, _version: 변경 feed 버전, _vtime: 가상 시각, _finish:{등급}: 등급의 마지막 finish)
+-- KEYS[5]: 알림 이벤트 로그 stream key
+-- KEYS[6]: 대기 사용자 마지막 활동 시각(seen) key
+-- KEYS[7..]: 등급별 대기 key (등급 번호 순서대로, 등급 수만큼)
+-- ARGV[1]: 최대 용량 (0이면 무제한)
+-- ARGV[2]: TTL 초 (0이면 만료 없음)
+-- ARGV[3]: 이력 timestamp (epoch second)
+-- ARGV[4]: 알림 채널
+-- ARGV[5]: 대기열 이름
+-- ARGV[6]: 알림 이벤트 로그 최대 길이 (근사치)
+-- ARGV[7]: 전체 이력 최대 길이 (근사치)
+-- ARGV[8]: 전체 이력 보관 최소 ID (이보다 오래된 항목 삭제, 빈 값이면 시간 기준 삭제 안 함)
+-- ARGV[9]: 사용자별 이력 shard key prefix (뒤에 userId % shard 수를 붙인다)
+-- ARGV[10]: 사용자별 이력 shard 수
+-- ARGV[11]: 사용자별 이력 최대 개수
+-- ARGV[12]: 사용자별 이력 shard TTL 초 (0이면 만료 없음)
+-- ARGV[13]: 스크립트 안에서 이력 기록 여부 (1: inline)
+-- ARGV[14]: 대기열 변경 feed 채널 (인스턴스별 wait queue mirror용)
+-- ARGV[15]: 등급 순서대로 stride 목록 (쉼표로 구분)
+-- ARGV[16..]: userId, 등급 번호 (0이 가장 높은 등급) 쌍
+-- 반환: 요청 순서대로 {status, rank, 가입 순번} 을 이어 붙인 목록  status = 1(신규 등록), 0(이미 등록됨), -1(용량 초과)
+local TIERS = 16  -- 최대 등급 수 (PriorityTiers.MAX_TIERS)
+local TIER_KEYS = 6  -- 등급별 대기 key 앞의 KEYS 개수
+local BATCH = 1000
+-- 사용자별 이력: shard hash의 userId 필드 앞에 고정 길이 항목(action 코드 1자 + timestamp 16진수 8자)을 붙이고 최대 개수로 자른다.
+local ENTRY_LENGTH = 9
+
+-- TTL이 없는 key(새로 만든 key)에만 만료 시간을 건다. (등록마다 EXPIRE를 쓰지 않고, 활성 대기열은 스케줄러가 갱신 - expire_queue.lua)
+-- 대기열의 key가 함께 만료되도록 wait key에 남은 시간이 있으면 그 시간에 맞춘다. (나중에 만든 등급별 대기 key 등)
+local function expireWithQueue(key, ttl)
+    if redis.call('TTL', key) == -1 then
+        local remaining = redis.call('PTTL', KEYS[1])
+        if remaining > 0 then
+            redis.call('PEXPIRE', key, remaining)
+        else
+            redis.call('EXPIRE', key, ttl)
+        end
+    end
+end
+
+-- 등급별 대기 key (설정에서 빠진 등급이면 nil)
+local function tierKey(tier)
+    return KEYS[TIER_KEYS + 1 + tier]
+end
+
+local capacity = tonumber(ARGV[1])
+local size = redis.call('ZCARD', KEYS[1])
+local last = redis.call('HINCRBY', KEYS[4], '_seq', 0)
+local vtime = tonumber(redis.call('HGET', KEYS[4], '_vtime')) or 0
+local strides = {}
+for stride in string.gmatch(ARGV[15], '[^,]+') do
+    strides[#strides + 1] = tonumber(stride)
+end
+-- 등급별 마지막 finish (묶음 안에서 처음 나온 등급만 읽는다)
+local finishes = {}
+
+-- 1. 상태 판정과 순번 발급 (중복 / 용량 확인은 앞선 요청의 결과를 반영한다)
+local userIds, statuses = {}, {}
+local added = {}
+local scores, feed, seen = {}, {}, {}
+local tierScores = {}
+for i = 16, #ARGV, 2 do
+    local userId = ARGV[i]
+    local status
+    if added[userId] or redis.call('ZSCORE', KEYS[1], userId) then
+        status = 0
+    elseif capacity > 0 and size >= capacity then
+        status = -1
+    else
+        last = last + 1
+        size = size + 1
+        added[userId] = true
+        local tier = tonumber(ARGV[i + 1])
+        if not finishes[tier] then
+            finishes[tier] = tonumber(redis.call('HGET', KEYS[4], '_finish:' .. tier)) or 0
+            tierScores[tier] = {}
+        end
+        finishes[tier] = math.max(vtime, finishes[tier]) + strides[tier + 1]
+        local score = string.format('%.0f', finishes[tier] * TIERS + tier)
+        scores[#scores + 1] = score
+        scores[#scores + 1] = userId
+        tierScores[tier][#tierScores[tier] + 1] = last
+        tierScores[tier][#tierScores[tier] + 1] = userId
+        feed[#feed + 1] = userId .. ':' .. score
+        status = 1
+    end
+    if status >= 0 then
+        seen[#seen + 1] = ARGV[3]
+        seen[#seen + 1] = userId
+    end
+    userIds[#userIds + 1] = userId
+    statuses[#statuses + 1] = status
+end
+
+-- 2. 등록 (unpack 인자 수 제한을 피하기 위해 BATCH 단위로 나누어 기록한다)
+if #feed > 0 then
+    for from = 1, #scores, BATCH * 2 do
+        redis.call('ZADD', KEYS[1], 'NX', unpack(scores, from, math.min(from + BATCH * 2 - 1, #scores)))
+    end
+    for tier, members in pairs(tierScores) do
+        for from = 1, #members, BATCH * 2 do
+            redis.call('ZADD', tierKey(tier), unpack(members, from, math.min(from + BATCH * 2 - 1, #members)))
+        end
+        redis.call('HSET', KEYS[4], '_finish:' .. tier, string.format('%.0f', finishes[tier]))
+    end
+    redis.call('HSET', KEYS[4], '_seq', last)
+    redis.call('SADD', KEYS[3], ARGV[5])
+    -- 변경 feed: 묶음 하나를 버전 하나로 발행한다.
+    local version = redis.call('HINCRBY', KEYS[4], '_version', 1)
+    redis.call('PUBLISH', ARGV[14], version .. '|R|' .. table.concat(feed, ','))
+end
+for from = 1, #seen, BATCH * 2 do
+    redis.call('ZADD', KEYS[6], unpack(seen, from, math.min(from + BATCH * 2 - 1, #seen)))
+end
+local ttl = tonumber(ARGV[2])
+if #feed > 0 and ttl > 0 then
+    expireWithQueue(KEYS[1], ttl)
+    -- 없는 key는 TTL이 -2라 건너뛴다.
+    for i = TIER_KEYS + 1, #KEYS do
+        expireWithQueue(KEYS[i], ttl)
+    end
+    expireWithQueue(KEYS[4], ttl)
+    expireWithQueue(KEYS[6], ttl)
+end
+
+-- 3. 순위, 이력, 알림
+local reply = {}
+local touched = {}
+for i, userId in ipairs(userIds) do
+    local status = statuses[i]
+    if status < 0 then
+        reply[#reply + 1] = -1
+        reply[#reply + 1] = -1
+        reply[#reply + 1] = -1
+    else
+        local rank = redis.call('ZRANK', KEYS[1], userId) + 1
+        reply[#reply + 1] = status
+        reply[#reply + 1] = rank
+        local tier = tonumber(redis.call('ZSCORE', KEYS[1], userId)) % TIERS
+        local key = tierKey(tier)
+        reply[#reply + 1] = key and tonumber(redis.call('ZSCORE', key, userId)) or -1
+        if status == 1 then
+            -- 이력 (write-behind 모드에서는 호출자가 버퍼를 거쳐 기록한다)
+            if ARGV[13] == '1' then
+                local shardKey = ARGV[9] .. (tonumber(userId) % tonumber(ARGV[10]))
+                local entries = 'R' .. string.format('%08x', tonumber(ARGV[3])) .. (redis.call('HGET', shardKey, userId) or '')
+                redis.call('HSET', shardKey, userId, string.sub(entries, 1, ENTRY_LENGTH * tonumber(ARGV[11])))
+                touched[shardKey] = true
+                redis.call('XADD', KEYS[2], 'MAXLEN', '~', ARGV[7], '*', 'userId', userId, 'action', 'REGISTER', 'timestamp', ARGV[3])
+            end
+            -- 이벤트 로그에 기록하고 로그 ID를 붙여 발행한다. (재연결 시 Last-Event-ID 이후 이벤트 재전송)
+            local message = userId .. ':REGISTERED:' .. rank
+            local id = redis.call('XADD', KEYS[5], 'MAXLEN', '~', ARGV[6], '*', 'message', message)
+            redis.call('PUBLISH', ARGV[4], id .. '|' .. message)
+        end
+    end
+end
+if ARGV[13] == '1' and #feed > 0 then
+    if tonumber(ARGV[12]) > 0 then
+        for shardKey in pairs(touched) do
+            redis.call('EXPIRE', shardKey, ARGV[12])
+        end
+    end
+    if ARGV[8] ~= '' then
+        redis.call('XTRIM', KEYS[2], 'MINID', '~', ARGV[8])
+    end
+end
+
+return reply
@@ -0,0 +1,71 @@
+-- 대기열 등록 (watermark 모드): 가입 순번을 발급하고 순위 = 순번 - watermark 로 계산한다.
+-- KEYS[1]: 순번 hash key (필드 _seq: 마지막 순번, _watermark: 진입 허용된 마지막 순번, {userId}: 사용자 순번)
+-- KEYS[2]: 사용자별 이력 shard hash key (필드: userId)
+-- KEYS[3]: 대기열 전체 이력 stream key
+-- KEYS[4]: 활성 대기열 registry key
+-- KEYS[5]: 알림 이벤트 로그 stream key
+-- ARGV[1]: userId
+-- ARGV[2]: 최대 용량 (0이면 무제한)
+-- ARGV[3]: TTL 초 (0이면 만료 없음)
+-- ARGV[4]: 이력 timestamp (epoch second)
+-- ARGV[5]: 알림 채널
+-- ARGV[6]: 대기열 이름
+-- ARGV[7]: 알림 이벤트 로그 최대 길이 (근사치)
+-- ARGV[8]: 전체 이력 최대 길이 (근사치)
+-- ARGV[9]: 전체 이력 보관 최소 ID (이보다 오래된 항목 삭제, 빈 값이면 시간 기준 삭제 안 함)
+-- ARGV[10]: 사용자별 이력 최대 개수
+-- ARGV[11]: 사용자별 이력 shard TTL 초 (0이면 만료 없음)
+-- ARGV[12]: 스크립트 안에서 이력 기록 여부 (1: inline)
+-- 반환: {status, rank, 가입 순번}  status = 1(신규 등록), 0(이미 등록됨, 진입 허용된 경우 rank -1), -1(용량 초과)
+-- 사용자별 이력: shard hash의 userId 필드 앞에 고정 길이 항목(action 코드 1자 + timestamp 16진수 8자)을 붙이고 최대 개수로 자른다.
+local ENTRY_LENGTH = 9
+
+-- TTL이 없는 key(새로 만든 key)에만 만료 시간을 건다. (등록마다 EXPIRE를 쓰지 않고, 활성 대기열은 스케줄러가 갱신 - expire_queue.lua)
+local function expireIfPersistent(key, ttl)
+    if redis.call('TTL', key) == -1 then
+        redis.call('EXPIRE', key, ttl)
+    end
+end
+
+local state = redis.call('HMGET', KEYS[1], ARGV[1], '_seq', '_watermark')
+local watermark = tonumber(state[3] or '0')
+if state[1] then
+    local rank = tonumber(state[1]) - watermark
+    if rank <= 0 then
+        rank = -1
+    end
+    return {0, rank, tonumber(state[1])}
+end
+
+local last = tonumber(state[2] or '0')
+local capacity = tonumber(ARGV[2])
+if capacity > 0 and last - watermark >= capacity then
+    return {-1, -1, -1}
+end
+
+local position = redis.call('HINCRBY', KEYS[1], '_seq', 1)
+redis.call('HSET', KEYS[1], ARGV[1], position)
+local ttl = tonumber(ARGV[3])
+if ttl > 0 then
+    expireIfPersistent(KEYS[1], ttl)
+end
+redis.call('SADD', KEYS[4], ARGV[6])
+local rank = position - watermark
+
+-- 이력 (write-behind 모드에서는 호출자가 버퍼를 거쳐 기록한다)
+if ARGV[12] == '1' then
+    local entries = 'R' .. string.format('%08x', tonumber(ARGV[4])) .. (redis.call('HGET', KEYS[2], ARGV[1]) or '')
+    redis.call('HSET', KEYS[2], ARGV[1], string.sub(entries, 1, ENTRY_LENGTH * tonumber(ARGV[10])))
+    if tonumber(ARGV[11]) > 0 then
+        redis.call('EXPIRE', KEYS[2], ARGV[11])
+    end
+    redis.call('XADD', KEYS[3], 'MAXLEN', '~', ARGV[8], '*', 'userId', ARGV[1], 'action', 'REGISTER', 'timestamp', ARGV[4])
+    if ARGV[9] ~= '' then
+        redis.call('XTRIM', KEYS[3], 'MINID', '~', ARGV[9])
+    end
+end
+local message = ARGV[1] .. ':REGISTERED:' .. rank
+local id = redis.call('XADD', KEYS[5], 'MAXLEN', '~', ARGV[7], '*', 'message', message)
+redis.call('PUBLISH', ARGV[5], id .. '|' .. message)
+
+return {1, rank, position}
@@ -0,0 +1,33 @@
+-- 이력 묶음 저장: 여러 이력을 사용자별 이력 shard hash와 대기열 전체 이력 stream에 한 번에 기록한다.
+-- (write-behind 버퍼의 묶음을 호출 한 번으로 flush, 항목마다 key가 달라 KEYS 대신 ARGV로 전달한다)
+-- 이력 key를 ARGV로 받거나 스크립트 안에서 만드므로(allow.lua, register_batch.lua 포함) Redis Cluster에서는 동작하지 않는다. (standalone / sentinel 전용)
+-- ARGV[1]: 전체 이력 최대 길이 (근사치)
+-- ARGV[2]: 전체 이력 보관 최소 ID (이보다 오래된 항목 삭제, 빈 값이면 시간 기준 삭제 안 함)
+-- ARGV[3]: 사용자별 이력 최대 개수
+-- ARGV[4]: 사용자별 이력 shard TTL 초 (0이면 만료 없음)
+-- ARGV[5..]: 이력마다 6개 (사용자별 이력 shard key, 전체 이력 stream key, userId, action, timestamp, 사용자별 이력 항목)
+-- 반환: 저장한 이력 수
+local FIELDS = 6
+local maxEntries = tonumber(ARGV[3])
+local ttl = tonumber(ARGV[4])
+local streams = {}
+local saved = 0
+
+for i = 5, #ARGV, FIELDS do
+    local userKey, allKey, userId, entry = ARGV[i], ARGV[i + 1], ARGV[i + 2], ARGV[i + 5]
+    local entries = entry .. (redis.call('HGET', userKey, userId) or '')
+    redis.call('HSET', userKey, userId, string.sub(entries, 1, string.len(entry) * maxEntries))
+    if ttl > 0 then
+        redis.call('EXPIRE', userKey, ttl)
+    end
+    redis.call('XADD', allKey, 'MAXLEN', '~', ARGV[1], '*', 'userId', userId, 'action', ARGV[i + 3], 'timestamp', ARGV[i + 4])
+    streams[allKey] = true
+    saved = saved + 1
+end
+
+if ARGV[2] ~= '' then
+    for allKey in pairs(streams) do
+        redis.call('XTRIM', allKey, 'MINID', '~', ARGV[2])
+    end
+end
+return saved
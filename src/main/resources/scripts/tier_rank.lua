@@ -0,0 +1,18 @@
+-- 등급별 순위 조회: 전체 순위(진입 예상 순서)와 같은 등급 안 순위를 한 번에 조회한다.
+-- KEYS[1]: 대기열(wait) key
+-- KEYS[2]: 대기 사용자 마지막 활동 시각(seen) key - 조회한 사용자의 활동 시각도 갱신한다.
+-- KEYS[3..]: 등급별 대기 key (등급 번호 순서대로, 등급 수만큼)
+-- ARGV[1]: userId
+-- ARGV[2]: 현재 시각 (epoch second)
+-- 반환: {등급 번호, 0부터 시작하는 전체 순위, 0부터 시작하는 등급 안 순위} (대기 중이 아니면 {-1, -1, -1})
+local TIERS = 16  -- 최대 등급 수 (PriorityTiers.MAX_TIERS)
+
+local score = redis.call('ZSCORE', KEYS[1], ARGV[1])
+if not score then
+    return {-1, -1, -1}
+end
+redis.call('ZADD', KEYS[2], 'XX', ARGV[2], ARGV[1])
+local tier = tonumber(score) % TIERS
+local key = KEYS[3 + tier]
+local tierRank = key and redis.call('ZRANK', key, ARGV[1]) or -1
+return {tier, redis.call('ZRANK', KEYS[1], ARGV[1]), tierRank}
@@ -0,0 +1,11 @@
+-- 마지막 활동 시각 갱신: sorted set 멤버의 score를 현재 시각으로 바꾼다. (멤버가 없으면 추가하지 않는다)
+-- 진입 허용 사용자의 세션 lease 갱신(proceed)과 대기 사용자의 liveness 갱신(seen)에 함께 사용한다.
+-- KEYS[1]: 갱신할 sorted set key
+-- ARGV[1]: userId
+-- ARGV[2]: 현재 시각 (epoch second)
+-- 반환: 1(갱신), 0(멤버가 아님: 진입 허용/대기 중이 아니거나 만료로 회수됨)
+if not redis.call('ZSCORE', KEYS[1], ARGV[1]) then
+    return 0
+end
+redis.call('ZADD', KEYS[1], 'XX', ARGV[2], ARGV[1])
+return 1
@@ -0,0 +1,18 @@
+-- 여러 사용자의 마지막 활동 시각 일괄 갱신 (멤버가 아니면 추가하지 않는다)
+-- mirror에서 응답한 순위 조회의 liveness 갱신을 인스턴스별로 모아 한 번에 기록한다.
+-- KEYS[1]: 대기 사용자 마지막 활동 시각(seen) key
+-- ARGV[1]: 현재 시각 (epoch second)
+-- ARGV[2..]: userId
+-- 반환: 갱신 요청한 인원
+local BATCH = 1000
+
+-- unpack 인자 수 제한을 피하기 위해 BATCH 단위로 나누어 기록한다.
+for from = 2, #ARGV, BATCH do
+    local members = {}
+    for i = from, math.min(from + BATCH - 1, #ARGV) do
+        members[#members + 1] = ARGV[1]
+        members[#members + 1] = ARGV[i]
+    end
+    redis.call('ZADD', KEYS[1], 'XX', unpack(members))
+end
+return #ARGV - 1
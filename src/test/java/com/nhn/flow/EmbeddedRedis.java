@@ -10,19 +10,27 @@ import java.io.IOException;
 @TestConfiguration
 public class EmbeddedRedis {
 
-    private final RedisServer redisServer;
-
-    public EmbeddedRedis() throws IOException {
-        this.redisServer = new RedisServer(63790);
-    }
+    // 설정이 다른 테스트 context가 함께 캐시되므로 서버 하나를 공유하고, 마지막 context가 닫힐 때 종료한다.
+    private static RedisServer redisServer;
+    private static int contexts;
 
     @PostConstruct
     public void start() throws IOException {
-        this.redisServer.start();
+        synchronized (EmbeddedRedis.class) {
+            if (contexts == 0) {
+                redisServer = new RedisServer(63790);
+                redisServer.start();
+            }
+            contexts++;
+        }
     }
 
     @PreDestroy
     public void stop() throws IOException {
-        this.redisServer.stop();
+        synchronized (EmbeddedRedis.class) {
+            if (--contexts == 0) {
+                redisServer.stop();
+            }
+        }
     }
 }
@@ -1,6 +1,9 @@
 package com.nhn.flow.controller;
 
 import com.nhn.flow.EmbeddedRedis;
+import com.nhn.flow.dto.BatchRegisterRequest;
+import com.nhn.flow.dto.QueueLookupRequest;
+import com.nhn.flow.dto.QueueLookupResponse;
 import com.nhn.flow.service.UserQueueService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -10,8 +13,12 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.annotation.Import;
 import org.springframework.data.redis.connection.ReactiveRedisConnection;
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.test.StepVerifier;
+
+import java.util.List;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 @Import(EmbeddedRedis.class)
@@ -75,5 +82,122 @@ public class UserQueueControllerTest {
             .jsonPath("$.allowedCount").isEqualTo(2)
             .jsonPath("$.queue").isEqualTo("default");
     }
-}
 
+    @Test
+    @DisplayName("대기열 통계 조회 API - 등급별 대기 인원")
+    void getQueueStatisticsByTier() {
+        // given: 일반 2명, VIP 1명 대기 중
+        userQueueService.registerWaitQueue("default", 100L).block();
+        userQueueService.registerWaitQueue("default", 101L).block();
+        userQueueService.registerWaitQueue("default", 102L, true).block();
+
+        // when: 통계 조회 API 호출
+        // then: 등급별 대기 인원 반환
+        webTestClient.get()
+            .uri("/api/v1/queue/statistics?queue=default")
+            .exchange()
+            .expectStatus().isOk()
+            .expectBody()
+            .jsonPath("$.waitingCount").isEqualTo(3)
+            .jsonPath("$.waitingByTier.vip").isEqualTo(1)
+            .jsonPath("$.waitingByTier.normal").isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("등급 지정 등록 / 등급별 순위 조회 API - 없는 등급은 400 (UQ-009)")
+    void registerWithTierAndGetTierRank() {
+        // given: 일반 2명 등록 후 tier=vip 로 1명 등록
+        userQueueService.registerWaitQueue("default", 100L).block();
+        userQueueService.registerWaitQueue("default", 101L).block();
+        webTestClient.post()
+            .uri("/api/v1/queue?queue=default&user_id=102&tier=vip")
+            .exchange()
+            .expectStatus().isOk()
+            .expectBody()
+            .jsonPath("$.rank").isEqualTo(1);
+
+        // when & then: 일반 사용자 101은 전체 3순위, 일반 등급 안 2순위
+        webTestClient.get()
+            .uri("/api/v1/queue/rank/tier?queue=default&user_id=101")
+            .exchange()
+            .expectStatus().isOk()
+            .expectBody()
+            .jsonPath("$.tier").isEqualTo("normal")
+            .jsonPath("$.rank").isEqualTo(3)
+            .jsonPath("$.tierRank").isEqualTo(2);
+
+        // 없는 등급
+        webTestClient.post()
+            .uri("/api/v1/queue?queue=default&user_id=103&tier=gold")
+            .exchange()
+            .expectStatus().isBadRequest()
+            .expectBody()
+            .jsonPath("$.code").isEqualTo("UQ-009");
+    }
+
+    @Test
+    @DisplayName("세션 lease 반납 API - 잘못된 대기열 이름은 400 (UQ-003)")
+    void releaseLeaseWithInvalidQueue() {
+        webTestClient.delete()
+            .uri("/api/v1/queue/lease?queue= &user_id=100")
+            .exchange()
+            .expectStatus().isBadRequest()
+            .expectBody()
+            .jsonPath("$.code").isEqualTo("UQ-003");
+    }
+
+    @Test
+    @DisplayName("일괄 등록 API - 사용자별 결과 (VIP 우선, 중복 / 잘못된 userId / 없는 등급은 status로 응답)")
+    void registerWaitQueueBatch() {
+        // given: 일반 1명, VIP 1명, 중복 1명, 잘못된 userId 1명, 없는 등급 1명
+        BatchRegisterRequest request = new BatchRegisterRequest(List.of(
+            new BatchRegisterRequest.User(100L, false, null),
+            new BatchRegisterRequest.User(101L, true, null),
+            new BatchRegisterRequest.User(100L, false, null),
+            new BatchRegisterRequest.User(-1L, false, null),
+            new BatchRegisterRequest.User(102L, false, "gold")));
+
+        // when: 일괄 등록 API 호출
+        // then: 요청 순서대로 결과, VIP가 1순위
+        webTestClient.post()
+            .uri("/api/v1/queue/batch?queue=batch")
+            .bodyValue(request)
+            .exchange()
+            .expectStatus().isOk()
+            .expectBody()
+            .jsonPath("$.length()").isEqualTo(5)
+            .jsonPath("$[0].status").isEqualTo("CREATED")
+            .jsonPath("$[0].rank").isEqualTo(2)
+            .jsonPath("$[1].status").isEqualTo("CREATED")
+            .jsonPath("$[1].rank").isEqualTo(1)
+            .jsonPath("$[2].status").isEqualTo("EXISTING")
+            .jsonPath("$[3].status").isEqualTo("INVALID_USER_ID")
+            .jsonPath("$[4].status").isEqualTo("INVALID_TIER");
+    }
+
+    @Test
+    @DisplayName("일괄 조회 API - 순위와 진입 허용 여부를 NDJSON으로 응답")
+    void lookup() {
+        // given: 3명 대기 중 1명 진입 허용
+        userQueueService.registerWaitQueue("lookup", 100L).block();
+        userQueueService.registerWaitQueue("lookup", 101L).block();
+        userQueueService.registerWaitQueue("lookup", 102L).block();
+        userQueueService.allowUser("lookup", 1L).block();
+
+        // when: 일괄 조회 API 호출 (미등록 사용자 포함)
+        // then: 요청 순서대로 사용자별 결과
+        StepVerifier.create(webTestClient.post()
+                .uri("/api/v1/queue/lookup?queue=lookup")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .bodyValue(new QueueLookupRequest(List.of(100L, 101L, 102L, 999L)))
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(QueueLookupResponse.class)
+                .getResponseBody())
+            .expectNext(new QueueLookupResponse(100L, -1L, true))
+            .expectNext(new QueueLookupResponse(101L, 1L, false))
+            .expectNext(new QueueLookupResponse(102L, 2L, false))
+            .expectNext(new QueueLookupResponse(999L, -1L, false))
+            .verifyComplete();
+    }
+}
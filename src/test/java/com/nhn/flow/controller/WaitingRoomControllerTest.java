@@ -0,0 +1,69 @@
+package com.nhn.flow.controller;
+
+import com.nhn.flow.EmbeddedRedis;
+import com.nhn.flow.service.UserQueueService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.redis.connection.ReactiveRedisConnection;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@Import(EmbeddedRedis.class)
+@ActiveProfiles("test")
+public class WaitingRoomControllerTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private UserQueueService userQueueService;
+
+    @Autowired
+    private ReactiveRedisTemplate<String, String> reactiveRedisTemplate;
+
+    @BeforeEach
+    public void beforeEach() {
+        ReactiveRedisConnection connection = reactiveRedisTemplate.getConnectionFactory().getReactiveConnection();
+        connection.serverCommands().flushAll().block();
+    }
+
+    @Test
+    @DisplayName("대기실 입장 - 대기열이 가득 차면 순위 -1 대신 용량 초과 안내 페이지를 보여준다")
+    void waitingRoomQueueFull() {
+        // given: 용량(5명)만큼 대기 중
+        for (long userId = 100L; userId < 105L; userId++) {
+            userQueueService.registerWaitQueue("default", userId).block();
+        }
+
+        // when: 6번째 사용자 입장
+        // then: 503 + 용량 초과 안내
+        String body = webTestClient.get()
+            .uri("/waiting-room?queue=default&user_id=105&redirect_url=https://example.com")
+            .exchange()
+            .expectStatus().isEqualTo(HttpStatus.SERVICE_UNAVAILABLE)
+            .expectBody(String.class)
+            .returnResult()
+            .getResponseBody();
+        assertTrue(body.contains("대기열이 가득 찼습니다."));
+    }
+
+    @Test
+    @DisplayName("대기실 입장 - 용량 초과가 아닌 에러는 그대로 에러 응답으로 전달한다")
+    void waitingRoomPropagatesOtherErrors() {
+        webTestClient.get()
+            .uri("/waiting-room?queue=default&user_id=-1&redirect_url=https://example.com")
+            .exchange()
+            .expectStatus().isBadRequest()
+            .expectBody()
+            .jsonPath("$.code").isEqualTo("UQ-002");
+    }
+}
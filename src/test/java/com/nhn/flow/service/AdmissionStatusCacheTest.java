@@ -0,0 +1,50 @@
+package com.nhn.flow.service;
+
+import com.nhn.flow.EmbeddedRedis;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@Import(EmbeddedRedis.class)
+@ActiveProfiles("test")
+class AdmissionStatusCacheTest {
+
+    @Autowired
+    private AdmissionStatusCache admissionStatusCache;
+
+    @AfterEach
+    public void afterEach() {
+        LongStream.range(0, 1_000).forEach(userId -> admissionStatusCache.invalidate("cache", userId));
+        ReflectionTestUtils.setField(admissionStatusCache, "maxSize", 100_000);
+    }
+
+    @Test
+    @DisplayName("진입 허용을 표시하면 조회되고, 무효화하면 조회되지 않는다")
+    void markAndInvalidate() {
+        admissionStatusCache.markAllowed("cache", 1L);
+        assertTrue(admissionStatusCache.isAllowed("cache", 1L));
+
+        admissionStatusCache.invalidate("cache", 1L);
+        assertFalse(admissionStatusCache.isAllowed("cache", 1L));
+    }
+
+    @Test
+    @DisplayName("max-size를 넘으면 max-size 이하로 정리된다")
+    void evictOverMaxSize() {
+        ReflectionTestUtils.setField(admissionStatusCache, "maxSize", 100);
+
+        LongStream.range(0, 1_000).forEach(userId -> admissionStatusCache.markAllowed("cache", userId));
+
+        assertTrue(admissionStatusCache.size() <= 100);
+    }
+}
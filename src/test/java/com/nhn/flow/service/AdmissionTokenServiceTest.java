@@ -0,0 +1,74 @@
+package com.nhn.flow.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdmissionTokenServiceTest {
+
+    private static final Instant NOW = Instant.parse("2025-01-01T00:00:00Z");
+    private static final String PREVIOUS_KEY = "previous:previous-secret-0123456789abcdefghij";
+    private static final String CURRENT_KEY = "current:current-secret-0123456789abcdefghijk";
+
+    private final AdmissionTokenService tokenService = tokenService("current", NOW);
+
+    @Test
+    @DisplayName("발급한 토큰은 같은 대기열, 같은 사용자에게만 유효하다")
+    void verifyIssuedToken() {
+        String token = tokenService.issue("default", 100L);
+
+        assertTrue(tokenService.verify("default", 100L, token));
+        assertFalse(tokenService.verify("default", 101L, token));
+        assertFalse(tokenService.verify("other", 100L, token));
+    }
+
+    @Test
+    @DisplayName("변조되었거나 형식이 잘못된 토큰은 유효하지 않다")
+    void rejectTamperedToken() {
+        String token = tokenService.issue("default", 100L);
+        // 만료 시각을 늘린 토큰
+        String[] parts = token.split("\\.");
+        String extended = String.join(".", parts[0], parts[1], parts[2], String.valueOf(Long.parseLong(parts[3]) + 3600), parts[4]);
+
+        assertFalse(tokenService.verify("default", 100L, extended));
+        assertFalse(tokenService.verify("default", 100L, ""));
+        assertFalse(tokenService.verify("default", 100L, "d333a5d4eb24f3f5cdd767d79b8c01aad3cd73d3537c70dec430455d37afe4b8"));
+        assertFalse(tokenService.verify("default", 100L, "current.100.x.y." + parts[4]));
+    }
+
+    @Test
+    @DisplayName("만료 시각이 지난 토큰은 유효하지 않다")
+    void rejectExpiredToken() {
+        String token = tokenService.issue("default", 100L);
+
+        assertTrue(tokenService("current", NOW.plusSeconds(300)).verify("default", 100L, token));
+        assertFalse(tokenService("current", NOW.plusSeconds(301)).verify("default", 100L, token));
+    }
+
+    @Test
+    @DisplayName("키를 교체해도 이전 키로 서명한 토큰은 키가 남아 있는 동안 유효하다")
+    void verifyTokenSignedByPreviousKey() {
+        String token = tokenService("previous", NOW).issue("default", 100L);
+
+        assertTrue(tokenService.verify("default", 100L, token));
+        assertFalse(new AdmissionTokenService(CURRENT_KEY, "current", 300, Clock.fixed(NOW, ZoneOffset.UTC))
+            .verify("default", 100L, token));
+    }
+
+    @Test
+    @DisplayName("32바이트보다 짧은 서명 키 secret은 거부한다")
+    void rejectShortSecret() {
+        assertThrows(IllegalArgumentException.class,
+            () -> new AdmissionTokenService("current:short-secret", "current", 300, Clock.fixed(NOW, ZoneOffset.UTC)));
+    }
+
+    private static AdmissionTokenService tokenService(final String activeKeyId, final Instant now) {
+        return new AdmissionTokenService(PREVIOUS_KEY + "," + CURRENT_KEY, activeKeyId, 300,
+            Clock.fixed(now, ZoneOffset.UTC));
+    }
+}
@@ -0,0 +1,89 @@
+package com.nhn.flow.service;
+
+import com.nhn.flow.EmbeddedRedis;
+import com.nhn.flow.dto.BatchRegisterRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.redis.connection.ReactiveRedisConnection;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+    "queue.store=memory",
+    "queue.ttl-seconds=0",
+    "queue.session.lease-seconds=0",
+    "queue.liveness.stale-seconds=0",
+    "queue.history.write-mode=inline"
+})
+@Import(EmbeddedRedis.class)
+@ActiveProfiles("test")
+class MemoryQueueStoreServiceTest {
+
+    @Autowired
+    private UserQueueService userQueueService;
+
+    @Autowired
+    private QueueNotificationHub queueNotificationHub;
+
+    @Autowired
+    private QueueHistoryService queueHistoryService;
+
+    @Autowired
+    private ReactiveRedisTemplate<String, String> reactiveRedisTemplate;
+
+    @BeforeEach
+    public void beforeEach() {
+        ReactiveRedisConnection connection = reactiveRedisTemplate.getConnectionFactory().getReactiveConnection();
+        connection.serverCommands().flushAll().block();
+    }
+
+    @Test
+    @DisplayName("인메모리 저장소도 등록 / 진입 허용 알림을 발행해 대기자가 ALLOWED를 받는다")
+    void publishEventsFromService() {
+        // given: 1명 등록
+        userQueueService.registerWaitQueue("memory-events", 100L).block();
+
+        // when: 구독 후 1명 진입 허용
+        // then: 등록 알림은 재전송으로, 진입 허용은 ALLOWED로 수신
+        StepVerifier.create(queueNotificationHub.subscribeUser("memory-events", 100L, "0-0")
+                .filter(event -> "REGISTERED".equals(event.event()) || "ALLOWED".equals(event.event()))
+                .take(2))
+            .expectNextMatches(event -> "REGISTERED".equals(event.event()) && "1".equals(event.data()))
+            .then(() -> userQueueService.allowUser("memory-events", 1L).block())
+            .expectNextMatches(event -> "ALLOWED".equals(event.event()) && event.userId() == 100L)
+            .expectComplete()
+            .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    @DisplayName("인메모리 저장소는 inline 모드에서도 등록 / 진입 허용 이력을 기록한다")
+    void saveHistoryInInlineMode() {
+        // given: 단건 1명, 일괄 1명 등록
+        userQueueService.registerWaitQueue("memory-history", 100L).block();
+        userQueueService.registerWaitQueueBatch("memory-history", List.of(new BatchRegisterRequest.User(101L, null, null)))
+            .blockLast();
+
+        // when: 1명 진입 허용
+        userQueueService.allowUser("memory-history", 1L).block();
+
+        // then
+        StepVerifier.create(queueHistoryService.getHistoryList("memory-history", 100L, 2))
+            .expectNextMatches(history -> "ALLOW".equals(history.action()))
+            .expectNextMatches(history -> "REGISTER".equals(history.action()))
+            .verifyComplete();
+        StepVerifier.create(queueHistoryService.getHistory("memory-history", 101L))
+            .expectNextMatches(history -> "REGISTER".equals(history.action()))
+            .verifyComplete();
+        assertEquals(3, queueHistoryService.getQueueHistory("memory-history", 10).count().block());
+    }
+}
@@ -0,0 +1,239 @@
+package com.nhn.flow.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MemoryQueueStoreTest {
+
+    private final MemoryQueueStore store = new MemoryQueueStore(new PriorityTiers("vip:3,normal:1"));
+
+    @Test
+    @DisplayName("인메모리 저장소가 지원하지 않는 lease / liveness / TTL / watermark / adaptive 설정이면 기동에 실패한다")
+    void rejectUnsupportedSettings() {
+        PriorityTiers tiers = new PriorityTiers("vip:3,normal:1");
+
+        assertDoesNotThrow(() -> new MemoryQueueStore(tiers, 100_000L, "proceed-set", 0, 0, 0, "fixed"));
+        IllegalStateException error = assertThrows(IllegalStateException.class,
+            () -> new MemoryQueueStore(tiers, 100_000L, "proceed-set", 600, 300, 0, "fixed"));
+        assertTrue(error.getMessage().contains("queue.ttl-seconds=600"));
+        assertTrue(error.getMessage().contains("queue.session.lease-seconds=300"));
+        assertThrows(IllegalStateException.class, () -> new MemoryQueueStore(tiers, 100_000L, "proceed-set", 0, 0, 120, "fixed"));
+        assertThrows(IllegalStateException.class, () -> new MemoryQueueStore(tiers, 100_000L, "watermark", 0, 0, 0, "fixed"));
+        assertThrows(IllegalStateException.class, () -> new MemoryQueueStore(tiers, 100_000L, "proceed-set", 0, 0, 0, "adaptive"));
+    }
+
+    @Test
+    @DisplayName("VIP가 일반 사용자보다 앞서고, 같은 등급 안에서는 선착순이다")
+    void orderByPriorityThenSequence() {
+        // given: 일반 2명, VIP 1명 순서로 등록
+        store.register("memory", 100L, 1, 0).block();
+        store.register("memory", 101L, 1, 0).block();
+        QueueStore.Registration vip = store.register("memory", 102L, 0, 0).block();
+
+        // then: VIP 1순위, 가입 순번은 등록 순서
+        assertEquals(new QueueStore.Registration(QueueStore.RegisterStatus.CREATED, 1L, 3L), vip);
+        StepVerifier.create(store.ranks("memory", List.of(100L, 101L, 102L, 999L)))
+            .expectNext(List.of(2L, 3L, 1L, -1L))
+            .verifyComplete();
+        StepVerifier.create(store.position("memory", 101L))
+            .expectNext(2L)
+            .verifyComplete();
+        StepVerifier.create(store.tierRank("memory", 101L))
+            .expectNext(new QueueStore.TierRank(1, 3L, 2L))
+            .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("공정성 시뮬레이션: 대기열이 밀려 있는 동안 등급별 진입 인원은 가중치 비율을 따른다")
+    void weightedFairAdmission() {
+        // given: 3등급 (4:2:1), 낮은 등급부터 등급별 1000명씩 몰아서 등록 (높은 등급이 늦게 와도 비율은 같다)
+        MemoryQueueStore tiered = new MemoryQueueStore(new PriorityTiers("partner:4,member:2,normal:1"));
+        for (int tier = 2; tier >= 0; tier--) {
+            for (long i = 0; i < 1000; i++) {
+                tiered.register("fair", tier * 10_000L + i + 1, tier, 0).block();
+            }
+        }
+
+        // when: 7명씩 100번 진입 허용
+        long[] admitted = new long[3];
+        for (int round = 0; round < 100; round++) {
+            long[] batch = new long[3];
+            for (long userId : tiered.admit("fair", 7L, "").block()) {
+                batch[(int) (userId / 10_000L)]++;
+            }
+            // then: 묶음마다 4:2:1
+            assertArrayEquals(new long[]{4, 2, 1}, batch);
+            for (int tier = 0; tier < 3; tier++) {
+                admitted[tier] += batch[tier];
+            }
+        }
+
+        // then: 누적 400 / 200 / 100명, 등급 안에서는 선착순, 남은 인원은 등급별로 집계
+        assertArrayEquals(new long[]{400, 200, 100}, admitted);
+        StepVerifier.create(tiered.tierRank("fair", 20_101L))
+            .expectNext(new QueueStore.TierRank(2, 7L, 1L))
+            .verifyComplete();
+        StepVerifier.create(tiered.sizes("fair"))
+            .expectNext(new QueueStore.Sizes(2300L, 700L, List.of(600L, 800L, 900L)))
+            .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("공정성 시뮬레이션: 등록과 진입이 섞여도 높은 등급이 낮은 등급을 굶기지 않고, 비어 있던 등급은 몫을 쌓아 두지 않는다")
+    void weightedFairAdmissionUnderArrivals() {
+        Random random = new Random(7);
+        long nextUserId = 1;
+        long[] admitted = new long[2];
+        // 매 tick 평균 VIP 4명 / 일반 2명이 무작위로 도착하고 4명씩 진입 (두 등급 모두 계속 밀려 있다)
+        for (int tick = 0; tick < 2000; tick++) {
+            for (int i = 0; i < 6; i++) {
+                int tier = random.nextInt(3) == 0 ? 1 : 0;
+                store.register("arrivals", tier * 1_000_000L + nextUserId++, tier, 0).block();
+            }
+            for (long userId : store.admit("arrivals", 4L, "").block()) {
+                admitted[(int) (userId / 1_000_000L)]++;
+            }
+        }
+
+        // then: 3:1 (±2%)
+        double vipShare = (double) admitted[0] / (admitted[0] + admitted[1]);
+        assertEquals(0.75, vipShare, 0.02);
+
+        // when: VIP만 대기하며 100명 진입한 뒤 일반 사용자가 처음 도착
+        for (long i = 0; i < 300; i++) {
+            store.register("idle", i + 1, 0, 0).block();
+        }
+        store.admit("idle", 100L, "").block();
+        store.register("idle", 1_000_001L, 1, 0).block();
+
+        // then: 새로 온 일반 사용자는 현재 가상 시각부터 시작해 VIP 3명 뒤에 선다.
+        StepVerifier.create(store.rank("idle", 1_000_001L))
+            .expectNext(4L)
+            .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("이미 등록된 사용자는 기존 순위를 받고, 용량을 넘으면 등록되지 않는다")
+    void registerExistingAndCapacity() {
+        store.register("memory", 100L, 1, 2).block();
+        store.register("memory", 101L, 1, 2).block();
+
+        assertEquals(QueueStore.RegisterStatus.EXISTING, store.register("memory", 100L, 1, 2).block().status());
+        assertEquals(QueueStore.RegisterStatus.CAPACITY_EXCEEDED, store.register("memory", 102L, 1, 2).block().status());
+    }
+
+    @Test
+    @DisplayName("진입 허용은 앞순위부터 꺼내고, 대기 / 진입 인원과 head를 갱신한다")
+    void admitFromHead() {
+        // given: 5명 등록
+        for (long userId = 100L; userId < 105L; userId++) {
+            store.register("memory", userId, 1, 0).block();
+        }
+
+        // when: 2명 진입 허용
+        StepVerifier.create(store.admit("memory", 2L, ""))
+            .expectNext(List.of(100L, 101L))
+            .verifyComplete();
+
+        // then
+        StepVerifier.create(store.admitted("memory", List.of(100L, 102L)))
+            .expectNext(List.of(true, false))
+            .verifyComplete();
+        StepVerifier.create(store.sizes("memory"))
+            .expectNext(new QueueStore.Sizes(3L, 2L, List.of(0L, 3L)))
+            .verifyComplete();
+        StepVerifier.create(store.rank("memory", 102L))
+            .expectNext(1L)
+            .verifyComplete();
+        StepVerifier.create(store.head("memory"))
+            .expectNext(2L)
+            .verifyComplete();
+        StepVerifier.create(store.activeQueues())
+            .expectNext("memory")
+            .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("진입 허용 기록은 max-admitted 명까지만 남기고 가장 먼저 진입한 사용자부터 정리한다")
+    void boundAdmittedUsers() {
+        // given: 진입 허용 기록을 3명까지 남기는 저장소에 5명 등록
+        MemoryQueueStore bounded = new MemoryQueueStore(new PriorityTiers("vip:3,normal:1"), 3L);
+        for (long userId = 100L; userId < 105L; userId++) {
+            bounded.register("bounded", userId, 1, 0).block();
+        }
+
+        // when: 2명씩 두 번 진입 허용
+        bounded.admit("bounded", 2L, "").block();
+        bounded.admit("bounded", 2L, "").block();
+
+        // then: 가장 먼저 진입한 100번만 정리되고, head는 누적 인원을 유지
+        StepVerifier.create(bounded.admitted("bounded", List.of(100L, 101L, 102L, 103L)))
+            .expectNext(List.of(false, true, true, true))
+            .verifyComplete();
+        StepVerifier.create(bounded.sizes("bounded"))
+            .expectNext(new QueueStore.Sizes(1L, 3L, List.of(0L, 1L)))
+            .verifyComplete();
+        StepVerifier.create(bounded.head("bounded"))
+            .expectNext(4L)
+            .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("skip list 순위는 무작위 삽입 / 삭제 / 꺼내기 후에도 정렬 기준 순위와 같다")
+    void skipListRankMatchesSortedOrder() {
+        OrderStatisticSkipList skipList = new OrderStatisticSkipList();
+        TreeSet<long[]> expected = new TreeSet<>((left, right) -> left[0] != right[0]
+            ? Long.compare(left[0], right[0]) : Long.compare(left[1], right[1]));
+        Random random = new Random(42);
+
+        for (int i = 0; i < 20_000; i++) {
+            int operation = random.nextInt(10);
+            if (operation < 6 || expected.isEmpty()) {
+                long[] entry = {random.nextInt(1_000), random.nextInt(1_000_000) + 1L};
+                if (expected.add(entry)) {
+                    skipList.insert(entry[0], entry[1]);
+                }
+            } else if (operation < 8) {
+                long[] first = expected.pollFirst();
+                assertEquals(first[1], skipList.pollFirst());
+            } else {
+                long[] removed = new ArrayList<>(expected).get(random.nextInt(expected.size()));
+                expected.remove(removed);
+                assertTrue(skipList.delete(removed[0], removed[1]));
+            }
+        }
+
+        assertEquals(expected.size(), skipList.size());
+        long rank = 1;
+        for (long[] entry : expected) {
+            assertEquals(rank++, skipList.rank(entry[0], entry[1]));
+        }
+        assertEquals(0L, skipList.rank(-1L, 1L));
+    }
+
+    @Test
+    @DisplayName("long 해시 맵은 삭제 후에도 남은 키를 모두 찾는다")
+    void longLongHashMapRemove() {
+        LongLongHashMap map = new LongLongHashMap();
+        for (long key = 1; key <= 10_000; key++) {
+            map.put(key, key * 10);
+        }
+        for (long key = 1; key <= 10_000; key += 2) {
+            assertTrue(map.remove(key));
+        }
+
+        assertEquals(5_000, map.size());
+        for (long key = 1; key <= 10_000; key++) {
+            assertEquals(key % 2 == 0 ? key * 10 : -1L, map.get(key, -1L));
+        }
+        assertFalse(map.remove(1L));
+    }
+}
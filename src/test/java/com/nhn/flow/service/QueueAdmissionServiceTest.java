@@ -0,0 +1,103 @@
+package com.nhn.flow.service;
+
+import com.nhn.flow.EmbeddedRedis;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.redis.connection.ReactiveRedisConnection;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@Import(EmbeddedRedis.class)
+@ActiveProfiles("test")
+class QueueAdmissionServiceTest {
+
+    @Autowired
+    private QueueAdmissionService queueAdmissionService;
+
+    @Autowired
+    private UserQueueService userQueueService;
+
+    @Autowired
+    private ReactiveRedisTemplate<String, String> reactiveRedisTemplate;
+
+    @BeforeEach
+    public void beforeEach() {
+        ReactiveRedisConnection connection = reactiveRedisTemplate.getConnectionFactory().getReactiveConnection();
+        connection.serverCommands().flushAll().subscribe();
+    }
+
+    @AfterEach
+    public void afterEach() {
+        ReflectionTestUtils.setField(queueAdmissionService, "admissionMode", "fixed");
+    }
+
+    @Test
+    @DisplayName("fixed 모드에서는 tick마다 max-allow-user-count 명을 진입시킨다")
+    void fixedAdmissionCount() {
+        StepVerifier.create(queueAdmissionService.admissionCount("default"))
+            .expectNext(3L)
+            .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("adaptive 모드에서는 목표 동시 접속자 수에 도달하면 진입을 멈춘다")
+    void adaptiveAdmissionCount() {
+        // given: 목표 동시 접속자 4명, 대기 5명
+        ReflectionTestUtils.setField(queueAdmissionService, "admissionMode", "adaptive");
+        ReflectionTestUtils.setField(queueAdmissionService, "targetConcurrency", 4L);
+        for (long userId = 100L; userId < 105L; userId++) {
+            userQueueService.registerWaitQueue("adaptive", userId).block();
+        }
+
+        // when: 진입 허용 인원 0명
+        // then: 여유 4명 * gain(0.5) = 2명
+        StepVerifier.create(queueAdmissionService.admissionCount("adaptive"))
+            .expectNext(2L)
+            .verifyComplete();
+
+        // when: 진입 허용 인원이 목표치(4명)에 도달
+        userQueueService.allowUser("adaptive", 4L).block();
+
+        // then: 더 이상 진입시키지 않음
+        StepVerifier.create(queueAdmissionService.admissionCount("adaptive"))
+            .expectNext(0L)
+            .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("adaptive 모드는 watermark 진입 방식과 함께 쓸 수 없다")
+    void adaptiveRejectsWatermarkMode() {
+        ReflectionTestUtils.setField(queueAdmissionService, "admissionMode", "adaptive");
+        ReflectionTestUtils.setField(userQueueService, "admissionMode", "watermark");
+        try {
+            assertThrows(IllegalStateException.class, () -> queueAdmissionService.validateAdmissionMode());
+        } finally {
+            ReflectionTestUtils.setField(userQueueService, "admissionMode", "proceed-set");
+        }
+    }
+
+    @Test
+    @DisplayName("이전 tick이 끝나기 전에는 다음 tick을 시작하지 않는다")
+    void skipTickWhilePreviousInFlight() {
+        // given: 끝나지 않은 tick
+        Sinks.Empty<Void> previous = Sinks.empty();
+        assertTrue(queueAdmissionService.startTick(previous.asMono()));
+
+        // when & then: 진행 중에는 건너뛰고, 끝나면 다시 실행
+        assertFalse(queueAdmissionService.startTick(Mono.empty()));
+        previous.tryEmitEmpty();
+        assertTrue(queueAdmissionService.startTick(Mono.empty()));
+    }
+}
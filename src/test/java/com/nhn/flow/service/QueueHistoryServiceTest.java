@@ -1,6 +1,7 @@
 package com.nhn.flow.service;
 
 import com.nhn.flow.EmbeddedRedis;
+import com.nhn.flow.dto.QueueHistoryResponse;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -9,14 +10,26 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.annotation.Import;
 import org.springframework.data.redis.connection.ReactiveRedisConnection;
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.test.context.ActiveProfiles;
+import reactor.core.publisher.Flux;
 import reactor.test.StepVerifier;
 
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
 @SpringBootTest
 @Import(EmbeddedRedis.class)
 @ActiveProfiles("test")
 public class QueueHistoryServiceTest {
 
+    // 여러 key의 MEMORY USAGE 합계
+    private static final RedisScript<Long> MEMORY_USAGE_SCRIPT = RedisScript.of(
+        "local total = 0 for _, key in ipairs(KEYS) do total = total + (redis.call('MEMORY', 'USAGE', key) or 0) end return total",
+        Long.class);
+
     @Autowired
     private QueueHistoryService queueHistoryService;
 
@@ -76,5 +89,94 @@ public class QueueHistoryServiceTest {
             .expectNextCount(3)
             .verifyComplete();
     }
-}
 
+    @Test
+    @DisplayName("전체 이력은 cursor로 최신순 페이지 조회할 수 있다")
+    void getQueueHistoryByCursor() {
+        // given: 4명의 사용자가 등록
+        for (long userId = 100L; userId < 104L; userId++) {
+            userQueueService.registerWaitQueue("default", userId).block();
+        }
+
+        // when: 첫 페이지 2개 조회
+        List<QueueHistoryResponse> firstPage = queueHistoryService.getQueueHistory("default", 2, null, null)
+            .collectList()
+            .block();
+
+        // then: 최신순 103, 102 / 다음 페이지는 101, 100
+        assertEquals(List.of(103L, 102L), firstPage.stream().map(QueueHistoryResponse::userId).toList());
+        StepVerifier.create(queueHistoryService.getQueueHistory("default", 2, firstPage.get(1).id(), null))
+            .expectNextMatches(history -> history.userId().equals(101L))
+            .expectNextMatches(history -> history.userId().equals(100L))
+            .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("write-behind 버퍼로 묶어서 기록한 이력이 모두 저장된다")
+    void saveHistoriesThroughWriteBehind() {
+        // given: 1,000건 동시 저장 (test 프로필 await-flush)
+        Flux.range(1, 1_000)
+            .flatMap(userId -> queueHistoryService.saveHistory("batch", (long) userId, "REGISTER"))
+            .blockLast();
+
+        // when: 전체 이력 조회
+        // then: 1,000건 모두 저장, 사용자별 이력도 조회 가능
+        StepVerifier.create(queueHistoryService.getQueueHistory("batch", 2_000))
+            .expectNextCount(1_000)
+            .verifyComplete();
+        StepVerifier.create(queueHistoryService.getHistory("batch", 500L))
+            .expectNextMatches(history -> history.action().equals("REGISTER"))
+            .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("await-flush 모드에서 이력 기록에 실패해도 호출자에게 에러를 넘기지 않고 실패 건수만 센다")
+    void countFailedFlushWithoutError() {
+        // given: 사용자별 이력 shard key를 hash가 아닌 값으로 덮어써 기록이 실패하게 함
+        reactiveRedisTemplate.opsForValue().set(queueHistoryService.userHistoryKey("broken", 100L), "not-a-hash").block();
+        long failed = queueHistoryService.getFailedHistories();
+
+        // when: 이력 저장 (test 프로필 await-flush)
+        // then: 에러 없이 완료, 실패 건수 1 증가
+        StepVerifier.create(queueHistoryService.saveHistory("broken", 100L, "REGISTER"))
+            .verifyComplete();
+        assertEquals(failed + 1, queueHistoryService.getFailedHistories());
+    }
+
+    @Test
+    @DisplayName("사용자별 이력은 사용자마다 key를 만들던 방식보다 메모리를 훨씬 적게 사용한다")
+    void userHistoryMemoryPerUser() {
+        // given: 10,000명의 등록 이력 저장 (test 프로필 shard 128개)
+        int users = 10_000;
+        Flux.range(1, users)
+            .flatMap(userId -> queueHistoryService.saveHistory("memory", (long) userId, "REGISTER"))
+            .blockLast();
+        List<String> shardKeys = LongStream.range(0, queueHistoryService.userHistoryShards())
+            .mapToObj(shard -> queueHistoryService.userHistoryKey("memory", shard))
+            .toList();
+
+        // given: 비교용으로 1,000명은 이전 방식(사용자별 list key)으로 저장
+        int legacyUsers = 1_000;
+        List<String> legacyKeys = LongStream.rangeClosed(1, legacyUsers)
+            .mapToObj(userId -> "users:queue:memory:history:" + userId)
+            .toList();
+        Flux.fromIterable(legacyKeys)
+            .flatMap(key -> reactiveRedisTemplate.opsForList().leftPush(key, key.substring(key.lastIndexOf(':') + 1) + ":REGISTER:1700000000"))
+            .blockLast();
+
+        // when: 사용자당 메모리 (MEMORY USAGE 합계)
+        long compactBytesPerUser = memoryUsage(shardKeys) / users;
+        long legacyBytesPerUser = memoryUsage(legacyKeys) / legacyUsers;
+
+        // then: 이전 방식 대비 1/4 미만, 이력 조회는 그대로 동작
+        assertTrue(compactBytesPerUser * 4 < legacyBytesPerUser,
+            () -> "compact: %d bytes, legacy: %d bytes".formatted(compactBytesPerUser, legacyBytesPerUser));
+        StepVerifier.create(queueHistoryService.getHistory("memory", 1234L))
+            .expectNextMatches(history -> history.userId().equals(1234L) && history.action().equals("REGISTER"))
+            .verifyComplete();
+    }
+
+    private long memoryUsage(final List<String> keys) {
+        return reactiveRedisTemplate.execute(MEMORY_USAGE_SCRIPT, keys, List.of()).blockFirst();
+    }
+}
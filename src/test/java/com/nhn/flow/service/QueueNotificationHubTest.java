@@ -0,0 +1,217 @@
+package com.nhn.flow.service;
+
+import com.nhn.flow.EmbeddedRedis;
+import com.nhn.flow.dto.QueueEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.ReactiveRedisConnection;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import reactor.core.Disposable;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@Import(EmbeddedRedis.class)
+@ActiveProfiles("test")
+class QueueNotificationHubTest {
+
+    @Autowired
+    private QueueNotificationHub queueNotificationHub;
+
+    @Autowired
+    private UserQueueService userQueueService;
+
+    @Autowired
+    private QueueNotificationService queueNotificationService;
+
+    @Autowired
+    private ReactiveRedisTemplate<String, String> reactiveRedisTemplate;
+
+    @BeforeEach
+    public void beforeEach() {
+        ReactiveRedisConnection connection = reactiveRedisTemplate.getConnectionFactory().getReactiveConnection();
+        connection.serverCommands().flushAll().block();
+    }
+
+    @Test
+    @DisplayName("진입 허용 묶음 알림은 해당 사용자 구독자에게만 ALLOWED로 전달된다")
+    void routeAllowedEventToUser() {
+        // given: 100번은 대기, 101번은 구독만 함
+        userQueueService.registerWaitQueue("hub", 100L).block();
+
+        // when: 100번, 101번 구독 중 1명 진입 허용
+        List<QueueEvent> othersEvents = new CopyOnWriteArrayList<>();
+        Disposable other = queueNotificationHub.subscribeUser("hub", 101L).subscribe(othersEvents::add);
+
+        // then: 100번은 ALLOWED 수신
+        StepVerifier.create(queueNotificationHub.subscribeUser("hub", 100L)
+                .filter(event -> "ALLOWED".equals(event.event()))
+                .take(1))
+            .then(() -> {
+                sleep(500);  // Redis 구독 완료 대기
+                userQueueService.allowUser("hub", 1L).block();
+            })
+            .expectNextMatches(event -> event.userId() == 100L)
+            .expectComplete()
+            .verify(Duration.ofSeconds(5));
+
+        // then: 101번은 ALLOWED를 받지 않음 (HEAD 같은 전체 알림만 수신)
+        other.dispose();
+        assertTrue(othersEvents.stream().noneMatch(event -> "ALLOWED".equals(event.event())));
+    }
+
+    @Test
+    @DisplayName("대기열 구독은 연결이 모두 끊기면 해제된다")
+    void releaseChannelWhenAllSubscribersLeave() {
+        StepVerifier.create(queueNotificationHub.subscribeQueue("hub-release").take(Duration.ofMillis(300)))
+            .then(() -> assertEquals(1, queueNotificationHub.getSubscriberCount("hub-release")))
+            .verifyComplete();
+
+        assertEquals(0, queueNotificationHub.getSubscriberCount("hub-release"));
+    }
+
+    @Test
+    @DisplayName("느린 연결에는 밀린 HEAD 이벤트 중 최신 값만 전달된다")
+    void coalesceHeadEventsForSlowSubscriber() {
+        String channel = queueNotificationService.getChannelTopic("hub-slow").getTopic();
+
+        // given: 요청 없이 구독만 한 느린 연결
+        // when: HEAD 이벤트 5번 발행 후 1건 요청
+        // then: 마지막 HEAD(5)만 수신
+        StepVerifier.create(queueNotificationHub.subscribeQueue("hub-slow"), 0)
+            .then(() -> {
+                sleep(500);  // Redis 구독 완료 대기
+                for (int head = 1; head <= 5; head++) {
+                    reactiveRedisTemplate.convertAndSend(channel, "0:HEAD:" + head).block();
+                }
+                sleep(500);  // 메시지 전달 대기
+            })
+            .thenRequest(1)
+            .expectNextMatches(event -> "HEAD".equals(event.event()) && "5".equals(event.data()))
+            .thenCancel()
+            .verify(Duration.ofSeconds(5));
+
+        assertTrue(queueNotificationHub.getMetrics().coalescedEvents() >= 4);
+    }
+
+    @Test
+    @DisplayName("덮어쓴 최신 값 이벤트는 맨 뒤로 옮겨져 로그 ID 순서대로 전달된다")
+    void coalescedEventKeepsIdOrder() {
+        String channel = queueNotificationService.getChannelTopic("hub-order").getTopic();
+
+        // given: 요청 없이 구독만 한 느린 연결
+        // when: HEAD(1-1), REGISTERED(1-2), HEAD(1-3) 발행 후 요청
+        // then: REGISTERED(1-2), HEAD(1-3) 순서로 수신
+        StepVerifier.create(queueNotificationHub.subscribeQueue("hub-order"), 0)
+            .then(() -> {
+                sleep(500);  // Redis 구독 완료 대기
+                reactiveRedisTemplate.convertAndSend(channel, "1-1|0:HEAD:1").block();
+                reactiveRedisTemplate.convertAndSend(channel, "1-2|100:REGISTERED:1").block();
+                reactiveRedisTemplate.convertAndSend(channel, "1-3|0:HEAD:2").block();
+                sleep(500);  // 메시지 전달 대기
+            })
+            .thenRequest(2)
+            .expectNextMatches(event -> "REGISTERED".equals(event.event()) && "1-2".equals(event.id()))
+            .expectNextMatches(event -> "HEAD".equals(event.event()) && "1-3".equals(event.id()))
+            .thenCancel()
+            .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    @DisplayName("전송 버퍼가 넘치면 밀린 이벤트를 모두 보낸 뒤 스트림을 끝낸다 (Last-Event-ID로 재연결)")
+    void completeStreamOnBufferOverflow() {
+        String channel = queueNotificationService.getChannelTopic("hub-overflow").getTopic();
+
+        // given: 요청 없이 구독만 한 느린 연결 (buffer-size 16)
+        // when: 버려지면 안 되는 이벤트 20건 발행 후 요청
+        // then: 앞의 16건을 받고 스트림 종료
+        StepVerifier.create(queueNotificationHub.subscribeQueue("hub-overflow"), 0)
+            .then(() -> {
+                sleep(500);  // Redis 구독 완료 대기
+                for (int i = 1; i <= 20; i++) {
+                    reactiveRedisTemplate.convertAndSend(channel, "1-" + i + "|" + (100 + i) + ":REGISTERED:" + i).block();
+                }
+                sleep(500);  // 메시지 전달 대기
+            })
+            .thenRequest(Long.MAX_VALUE)
+            .expectNextCount(15)
+            .expectNextMatches(event -> "1-16".equals(event.id()))
+            .expectComplete()
+            .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    @DisplayName("Last-Event-ID 이후 발행된 이벤트만 이벤트 로그에서 재전송된다")
+    void replayEventsAfterLastEventId() {
+        // given: 3명 등록 (REGISTERED 이벤트 3건 기록)
+        userQueueService.registerWaitQueue("hub-replay", 100L).block();
+        userQueueService.registerWaitQueue("hub-replay", 101L).block();
+        userQueueService.registerWaitQueue("hub-replay", 102L).block();
+        String firstEventId = reactiveRedisTemplate.opsForStream()
+            .range(queueNotificationService.getEventLogKey("hub-replay"), Range.unbounded())
+            .blockFirst()
+            .getId()
+            .getValue();
+
+        // when: 첫 이벤트 ID로 재연결
+        // then: 이후 이벤트 2건만 재전송
+        StepVerifier.create(queueNotificationHub.subscribeQueue("hub-replay", firstEventId).take(2))
+            .expectNextMatches(event -> "REGISTERED".equals(event.event()) && event.userId() == 101L && event.id() != null)
+            .expectNextMatches(event -> "REGISTERED".equals(event.event()) && event.userId() == 102L)
+            .expectComplete()
+            .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    @DisplayName("재연결 직후(Redis 구독 확인 전)에 발행된 이벤트도 빠지지 않는다")
+    void resumeDoesNotLoseEventsBeforeSubscribeConfirmed() {
+        // given: 발행 스크립트를 미리 적재해 재연결 직후 바로 발행되게 함
+        queueNotificationService.notifyRankChanged("hub-gap-warmup", 100L, 1L).block();
+
+        for (int i = 0; i < 10; i++) {
+            // given: 1명 등록 (REGISTERED 이벤트 기록), 아직 구독이 없는 대기열
+            String queue = "hub-gap-" + i;
+            userQueueService.registerWaitQueue(queue, 100L).block();
+            String lastEventId = queueNotificationHub.getLatestEventId(queue).block();
+
+            // when: 재연결하자마자 이벤트 발행 (재전송 로그 조회와 Redis 구독 확인 사이)
+            // then: 재전송이나 실시간 구독 중 한 곳으로 수신
+            StepVerifier.create(queueNotificationHub.subscribeUser(queue, 100L, lastEventId))
+                .then(() -> queueNotificationService.notifyRankChanged(queue, 100L, 1L).block())
+                .expectNextMatches(event -> "RANK_CHANGED".equals(event.event()) && event.userId() == 100L)
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+        }
+    }
+
+    @Test
+    @DisplayName("이벤트 로그에 없는 Last-Event-ID로 재연결하면 RESYNC를 먼저 받는다")
+    void resyncWhenLastEventIdIsTrimmed() {
+        userQueueService.registerWaitQueue("hub-resync", 100L).block();
+
+        StepVerifier.create(queueNotificationHub.subscribeUser("hub-resync", 100L, "1-0").take(2))
+            .expectNextMatches(event -> "RESYNC".equals(event.event()))
+            .expectNextMatches(event -> "REGISTERED".equals(event.event()) && event.userId() == 100L)
+            .expectComplete()
+            .verify(Duration.ofSeconds(5));
+    }
+
+    private static void sleep(final long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.nhn.flow.service;
+
+import com.nhn.flow.EmbeddedRedis;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.redis.connection.ReactiveRedisConnection;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@Import(EmbeddedRedis.class)
+@ActiveProfiles("test")
+class QueueReadServiceTest {
+
+    @Autowired
+    private QueueReadService queueReadService;
+
+    @Autowired
+    private UserQueueService userQueueService;
+
+    @Autowired
+    private ReactiveRedisTemplate<String, String> reactiveRedisTemplate;
+
+    @BeforeEach
+    public void beforeEach() {
+        ReactiveRedisConnection connection = reactiveRedisTemplate.getConnectionFactory().getReactiveConnection();
+        connection.serverCommands().flushAll().block();
+    }
+
+    @Test
+    @DisplayName("동시에 들어온 순위 조회는 묶어서 조회되고, 사용자별로 올바른 순위를 받는다")
+    void collapseConcurrentRankLookups() {
+        // given: 3명 대기
+        userQueueService.registerWaitQueue("read", 100L).block();
+        userQueueService.registerWaitQueue("read", 101L).block();
+        userQueueService.registerWaitQueue("read", 102L).block();
+        long redisCallsBefore = queueReadService.getMetrics().redisCalls();
+
+        // when: 3명 + 미등록 1명의 순위를 50번씩 동시에 조회
+        List<Long> userIds = List.of(100L, 101L, 102L, 999L);
+        List<List<Long>> results = Flux.range(0, 50)
+            .flatMap(round -> Flux.fromIterable(userIds)
+                .flatMapSequential(userId -> queueReadService.getRank("read", userId))
+                .collectList())
+            .collectList()
+            .block();
+
+        // then: 모든 조회가 올바른 순위를 받고, Redis 호출은 요청 수(200)보다 훨씬 적다
+        assertEquals(50, results.size());
+        results.forEach(ranks -> assertEquals(List.of(1L, 2L, 3L, -1L), ranks));
+        long redisCalls = queueReadService.getMetrics().redisCalls() - redisCallsBefore;
+        assertTrue(redisCalls < 50, "redisCalls: " + redisCalls);
+    }
+
+    @Test
+    @DisplayName("진입 허용 여부와 통계 조회도 묶음 조회 결과가 개별 조회와 같다")
+    void allowedAndStatistics() {
+        // given: 3명 대기 중 1명 진입 허용
+        userQueueService.registerWaitQueue("read", 100L).block();
+        userQueueService.registerWaitQueue("read", 101L).block();
+        userQueueService.registerWaitQueue("read", 102L).block();
+        userQueueService.allowUser("read", 1L).block();
+
+        // when & then
+        StepVerifier.create(Flux.merge(queueReadService.isAllowed("read", 100L), queueReadService.isAllowed("read", 101L)).collectList())
+            .expectNextMatches(allowed -> allowed.size() == 2 && allowed.contains(true) && allowed.contains(false))
+            .verifyComplete();
+        StepVerifier.create(Flux.range(0, 10).flatMap(i -> queueReadService.getStatistics("read")).collectList())
+            .expectNextMatches(statistics -> statistics.stream()
+                .allMatch(s -> s.waitingCount() == 2L && s.allowedCount() == 1L))
+            .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("진입 허용된 사용자는 near cache에서 응답하고, lease를 반납하면 무효화된다")
+    void nearCacheAdmissionStatus() throws InterruptedException {
+        // given: 1명 진입 허용 후 한 번 조회 (near cache 채움)
+        userQueueService.registerWaitQueue("read-cache", 100L).block();
+        userQueueService.allowUser("read-cache", 1L).block();
+        StepVerifier.create(queueReadService.isAllowed("read-cache", 100L))
+            .expectNext(true)
+            .verifyComplete();
+
+        // when: 다시 조회
+        // then: Redis 조회 없이 near cache에서 응답
+        long redisCallsBefore = queueReadService.getMetrics().redisCalls();
+        long hitsBefore = queueReadService.getMetrics().nearCacheHits();
+        StepVerifier.create(queueReadService.isAllowed("read-cache", 100L))
+            .expectNext(true)
+            .verifyComplete();
+        assertEquals(redisCallsBefore, queueReadService.getMetrics().redisCalls());
+        assertEquals(hitsBefore + 1, queueReadService.getMetrics().nearCacheHits());
+
+        // when: lease 반납 (진입 취소 알림으로 무효화)
+        userQueueService.releaseLease("read-cache", 100L).block();
+        Thread.sleep(300);  // 진입 취소 알림 전달 대기
+
+        // then: 다시 Redis에서 조회해 false
+        StepVerifier.create(queueReadService.isAllowed("read-cache", 100L))
+            .expectNext(false)
+            .verifyComplete();
+    }
+}
@@ -0,0 +1,86 @@
+package com.nhn.flow.service;
+
+import com.nhn.flow.EmbeddedRedis;
+import com.nhn.flow.exception.ApplicationException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.redis.connection.ReactiveRedisConnection;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+    "queue.register.coalesce.enabled=true",
+    "queue.register.coalesce.window-ms=20"
+})
+@Import(EmbeddedRedis.class)
+@ActiveProfiles("test")
+class RegistrationCoalescerTest {
+
+    @Autowired
+    private RegistrationCoalescer registrationCoalescer;
+
+    @Autowired
+    private UserQueueService userQueueService;
+
+    @Autowired
+    private ReactiveRedisTemplate<String, String> reactiveRedisTemplate;
+
+    @BeforeEach
+    public void beforeEach() {
+        ReactiveRedisConnection connection = reactiveRedisTemplate.getConnectionFactory().getReactiveConnection();
+        connection.serverCommands().flushAll().block();
+    }
+
+    @Test
+    @DisplayName("동시에 들어온 등록은 한 번에 처리되고, 요청마다 자기 순위 / 중복 / 용량 초과 결과를 받는다")
+    void coalesceConcurrentRegistrations() {
+        // given: 용량 5명인 대기열에 6명 + 중복 1명이 동시에 등록
+        List<Long> userIds = List.of(100L, 101L, 102L, 103L, 104L, 105L, 100L);
+
+        // when
+        List<String> results = Flux.fromIterable(userIds)
+            .flatMapSequential(userId -> userQueueService.registerWaitQueue("coalesce", userId)
+                .map(String::valueOf)
+                .onErrorResume(ApplicationException.class, e -> Mono.just(e.getCode())))
+            .collectList()
+            .block();
+
+        // then: 요청 순서대로 순위 발급, 6번째는 용량 초과, 중복 요청은 이미 등록됨
+        assertEquals(List.of("1", "2", "3", "4", "5", "UQ-005", "UQ-001"), results);
+        StepVerifier.create(userQueueService.getRanks("coalesce", List.of(100L, 104L, 105L)))
+            .expectNext(List.of(1L, 5L, -1L))
+            .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("처리 중인 등록 요청이 max-pending을 넘으면 새 요청은 바로 거절된다")
+    void shedLoadWhenFull() {
+        ReflectionTestUtils.setField(registrationCoalescer, "maxPending", 2);
+        try {
+            // when: 3명이 같은 window 안에 등록
+            List<String> results = Flux.just(100L, 101L, 102L)
+                .flatMapSequential(userId -> userQueueService.registerWaitQueue("coalesce-shed", userId)
+                    .map(String::valueOf)
+                    .onErrorResume(ApplicationException.class, e -> Mono.just(e.getCode())))
+                .collectList()
+                .block();
+
+            // then: 앞의 2명만 등록되고 3번째는 429 (UQ-007)
+            assertEquals(List.of("1", "2", "UQ-007"), results);
+        } finally {
+            ReflectionTestUtils.setField(registrationCoalescer, "maxPending", 20000);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.nhn.flow.service;
+
+import com.nhn.flow.EmbeddedRedis;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.redis.connection.ReactiveRedisConnection;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import reactor.test.StepVerifier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@Import(EmbeddedRedis.class)
+@ActiveProfiles("test")
+class SchedulerLeaseServiceTest {
+
+    @Autowired
+    private SchedulerLeaseService schedulerLeaseService;
+
+    @Autowired
+    private UserQueueService userQueueService;
+
+    @Autowired
+    private ReactiveRedisTemplate<String, String> reactiveRedisTemplate;
+
+    @BeforeEach
+    public void beforeEach() {
+        ReactiveRedisConnection connection = reactiveRedisTemplate.getConnectionFactory().getReactiveConnection();
+        connection.serverCommands().flushAll().block();
+    }
+
+    @Test
+    @DisplayName("lease를 획득하면 갱신해도 같은 fencing token을 유지한다")
+    void acquireAndRenewLease() {
+        Long token = schedulerLeaseService.tryAcquire().block();
+
+        assertNotNull(token);
+        assertTrue(token > 0);
+        assertEquals(token, schedulerLeaseService.tryAcquire().block());
+        assertEquals(token, schedulerLeaseService.currentFencingToken().getAsLong());
+    }
+
+    @Test
+    @DisplayName("다른 인스턴스가 lease를 가지고 있으면 획득하지 못한다")
+    void leaseHeldByOtherInstance() {
+        // given: 다른 인스턴스가 lease 소유
+        reactiveRedisTemplate.opsForValue().set("users:queue:scheduler:lease", "other-instance:7").block();
+
+        // when: lease 획득 시도
+        // then: 실패 (-1), 스케줄러 실행 불가
+        StepVerifier.create(schedulerLeaseService.tryAcquire())
+            .expectNext(-1L)
+            .verifyComplete();
+        assertTrue(schedulerLeaseService.currentFencingToken().isEmpty());
+    }
+
+    @Test
+    @DisplayName("오래된 fencing token으로는 진입 허용되지 않는다")
+    void staleFencingTokenIsRejected() {
+        // given: lease 획득 후 사용자 등록
+        Long token = schedulerLeaseService.tryAcquire().block();
+        userQueueService.registerWaitQueue("default", 100L).block();
+
+        // when: 이전 token으로 진입 허용
+        // then: 0명 진입
+        StepVerifier.create(userQueueService.allowUser("default", 3L, token - 1))
+            .expectNext(0L)
+            .verifyComplete();
+
+        // when: 현재 token으로 진입 허용
+        // then: 1명 진입
+        StepVerifier.create(userQueueService.allowUser("default", 3L, token))
+            .expectNext(1L)
+            .verifyComplete();
+    }
+}
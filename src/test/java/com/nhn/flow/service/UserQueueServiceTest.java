@@ -1,6 +1,8 @@
 package com.nhn.flow.service;
 
 import com.nhn.flow.EmbeddedRedis;
+import com.nhn.flow.dto.BatchRegisterRequest;
+import com.nhn.flow.dto.TierRankResponse;
 import com.nhn.flow.exception.ApplicationException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -11,8 +13,16 @@ import org.springframework.context.annotation.Import;
 import org.springframework.data.redis.connection.ReactiveRedisConnection;
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 @SpringBootTest
@@ -46,6 +56,24 @@ class UserQueueServiceTest {
             .verifyComplete();
     }
 
+    @Test
+    @DisplayName("같은 초에 등록해도 userId가 아닌 등록 순서대로 순위가 매겨진다")
+    void registerWaitQueueInStrictFifoOrder() {
+        // given: 큰 userId가 먼저 등록
+        userQueueService.registerWaitQueue("default", 300L).block();
+        userQueueService.registerWaitQueue("default", 200L).block();
+        userQueueService.registerWaitQueue("default", 100L).block();
+
+        // when: 순위 조회
+        // then: 등록 순서대로 1, 2, 3순위
+        StepVerifier.create(userQueueService.getRank("default", 300L))
+            .expectNext(1L)
+            .verifyComplete();
+        StepVerifier.create(userQueueService.getRank("default", 100L))
+            .expectNext(3L)
+            .verifyComplete();
+    }
+
     @Test
     @DisplayName("이미 대기열에 등록되어 있는데 또 등록할 경우 예외가 발생한다.")
     void alreadyRegisterWaitQueue() {
@@ -61,6 +89,23 @@ class UserQueueServiceTest {
 
     }
 
+    @Test
+    @DisplayName("대기실 입장 시 이미 등록된 사용자는 기존 순위를 받는다")
+    void registerOrGetRankForRegisteredUser() {
+        // given: 100, 101번 사용자가 등록됨
+        userQueueService.registerWaitQueue("default", 100L).block();
+        userQueueService.registerWaitQueue("default", 101L).block();
+
+        // when: 101번 사용자가 다시 입장
+        // then: 예외 없이 기존 순위 2번 반환, 대기 인원은 그대로
+        StepVerifier.create(userQueueService.registerOrGetRank("default", 101L))
+            .expectNext(2L)
+            .verifyComplete();
+        StepVerifier.create(userQueueService.getWaitQueueSize("default"))
+            .expectNext(2L)
+            .verifyComplete();
+    }
+
     @Test
     @DisplayName("대기열에 아무도 없을 때 진입 허용 시 0명이 진입한다")
     void emptyAllowUser() {
@@ -105,6 +150,47 @@ class UserQueueServiceTest {
             .verifyComplete();
     }
 
+    @Test
+    @DisplayName("진입 허용은 대기 순서대로 진행된다")
+    void allowUserAdmitsInOrder() {
+        // given: 3명의 사용자가 대기열에 등록됨
+        // when: 2명 진입 허용
+        // then: 먼저 등록한 100, 101번만 진입 가능
+        StepVerifier.create(
+            userQueueService.registerWaitQueue("default", 100L)
+                .then(userQueueService.registerWaitQueue("default", 101L))
+                .then(userQueueService.registerWaitQueue("default", 102L))
+                .then(userQueueService.allowUser("default", 2L))
+        )
+            .expectNext(2L)
+            .verifyComplete();
+        StepVerifier.create(userQueueService.isAllowed("default", 101L))
+            .expectNext(true)
+            .verifyComplete();
+        StepVerifier.create(userQueueService.isAllowed("default", 102L))
+            .expectNext(false)
+            .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("등록 응답은 순위와 함께 대기열 전체 가입 순번을 리턴한다")
+    void registerReturnsRankAndPosition() {
+        // given: 3명 등록 후 2명 진입 허용
+        userQueueService.registerWaitQueue("default", 100L).block();
+        userQueueService.registerWaitQueue("default", 101L).block();
+        userQueueService.registerWaitQueue("default", 102L).block();
+        userQueueService.allowUser("default", 2L).block();
+
+        // when: 새로운 사용자 등록
+        // then: 가입 순번 4 (진입 허용된 사용자 포함), 순위 2, head 2
+        StepVerifier.create(userQueueService.registerWaitQueueWithPosition("default", 103L, false))
+            .expectNextMatches(response -> response.rank() == 2L && response.position() == 4L)
+            .verifyComplete();
+        StepVerifier.create(userQueueService.getHead("default"))
+            .expectNext(2L)
+            .verifyComplete();
+    }
+
     @Test
     @DisplayName("진입 허용 후 새로운 사용자 등록 시 순위는 1번이다")
     void registerWaitQueueAfterAllowUser() {
@@ -205,27 +291,38 @@ class UserQueueServiceTest {
     }
 
     @Test
-    @DisplayName("올바른 토큰으로 검증 시 진입이 가능하다")
+    @DisplayName("진입 허용된 사용자가 발급받은 토큰으로 검증 시 진입이 가능하다")
     void isAllowedByValidToken() {
-        // given: 100번 사용자의 올바른 SHA-256 토큰
-        String token = "d333a5d4eb24f3f5cdd767d79b8c01aad3cd73d3537c70dec430455d37afe4b8";
+        // given: 100번 사용자 등록 후 진입 허용, 토큰 발급
+        userQueueService.registerWaitQueue("default", 100L).block();
+        userQueueService.allowUser("default", 1L).block();
+        String token = userQueueService.generateToken("default", 100L).block();
 
         // when: 토큰으로 진입 가능 여부 확인
-        // then: 진입 가능 (true)
+        // then: 진입 가능 (true), 다른 사용자나 다른 대기열에서는 진입 불가
         StepVerifier.create(userQueueService.isAllowedByToken("default", 100L, token))
             .expectNext(true)
             .verifyComplete();
+        StepVerifier.create(userQueueService.isAllowedByToken("default", 101L, token))
+            .expectNext(false)
+            .verifyComplete();
+        StepVerifier.create(userQueueService.isAllowedByToken("other", 100L, token))
+            .expectNext(false)
+            .verifyComplete();
     }
 
     @Test
-    @DisplayName("사용자별 SHA-256 토큰이 올바르게 생성된다")
-    void generateTokenTest() {
-        // given: default 큐, 100번 사용자
-        // when: 토큰 생성
-        // then: 예상되는 SHA-256 해시값 반환
+    @DisplayName("진입 허용되지 않은 사용자는 토큰을 발급받을 수 없다")
+    void generateTokenForNotAllowedUser() {
+        // given: 100번 사용자 대기 중
+        userQueueService.registerWaitQueue("default", 100L).block();
+
+        // when: 토큰 발급
+        // then: 진입 허용되지 않은 사용자 에러
         StepVerifier.create(userQueueService.generateToken("default", 100L))
-            .expectNext("d333a5d4eb24f3f5cdd767d79b8c01aad3cd73d3537c70dec430455d37afe4b8")
-            .verifyComplete();
+            .expectErrorMatches(exception -> exception instanceof ApplicationException &&
+                ((ApplicationException) exception).getCode().equals("UQ-006"))
+            .verify();
     }
 
     // === 유효성 검증 테스트 ===
@@ -316,6 +413,22 @@ class UserQueueServiceTest {
             .verify();
     }
 
+    @Test
+    @DisplayName("동시에 등록해도 대기열 최대 용량을 넘지 않는다")
+    void registerWaitQueueConcurrentlyWithinCapacity() {
+        // given: 큐 용량이 5명으로 제한됨
+        // when: 20명이 동시에 등록 시도
+        Flux.range(1, 20)
+            .flatMap(i -> userQueueService.registerWaitQueue("default", (long) i)
+                .onErrorResume(ApplicationException.class, e -> Mono.empty()))
+            .blockLast();
+
+        // then: 정확히 5명만 등록됨
+        StepVerifier.create(userQueueService.getWaitQueueSize("default"))
+            .expectNext(5L)
+            .verifyComplete();
+    }
+
     @Test
     @DisplayName("대기열 용량 조회가 정상적으로 동작한다")
     void getWaitQueueSize() {
@@ -341,6 +454,27 @@ class UserQueueServiceTest {
             .verifyComplete();
     }
 
+    @Test
+    @DisplayName("등록된 대기열은 registry에 추가되고 모두 진입하면 제거된다")
+    void activeQueueRegistry() {
+        // given: 두 대기열에 사용자 등록
+        userQueueService.registerWaitQueue("default", 100L).block();
+        userQueueService.registerWaitQueue("event", 100L).block();
+
+        // then: 두 대기열 모두 활성 상태
+        StepVerifier.create(userQueueService.getActiveQueues().collectList())
+            .expectNextMatches(queues -> queues.containsAll(List.of("default", "event")) && queues.size() == 2)
+            .verifyComplete();
+
+        // when: default 대기열이 모두 진입 허용됨
+        userQueueService.allowUser("default", 10L).block();
+
+        // then: event 대기열만 남음
+        StepVerifier.create(userQueueService.getActiveQueues())
+            .expectNext("event")
+            .verifyComplete();
+    }
+
     // === 대기열 TTL (만료 시간) 테스트 ===
 
     @Test
@@ -366,6 +500,46 @@ class UserQueueServiceTest {
             .verifyComplete();
     }
 
+    @Test
+    @DisplayName("등록은 기존 대기열의 TTL을 다시 걸지 않고, 스케줄러 갱신이 남은 시간이 절반 이하일 때만 늘린다")
+    void refreshQueueTtl() {
+        // given: 대기열 key의 남은 시간을 100초로 늘려 둠
+        userQueueService.registerWaitQueue("default", 100L).block();
+        reactiveRedisTemplate.expire("users:queue:default:wait", Duration.ofSeconds(100)).block();
+
+        // when: 다른 사용자 등록
+        // then: TTL(3초)로 다시 걸리지 않음
+        userQueueService.registerWaitQueue("default", 101L).block();
+        assertTrue(reactiveRedisTemplate.getExpire("users:queue:default:wait").block().getSeconds() > 3);
+
+        // when & then: 남은 시간이 충분하면 갱신하지 않음
+        StepVerifier.create(userQueueService.refreshQueueTtl("default"))
+            .expectNext(false)
+            .verifyComplete();
+
+        // when & then: 남은 시간이 절반 이하이면 등급별 대기 key까지 모두 TTL로 갱신
+        reactiveRedisTemplate.expire("users:queue:default:wait", Duration.ofSeconds(1)).block();
+        StepVerifier.create(userQueueService.refreshQueueTtl("default"))
+            .expectNext(true)
+            .verifyComplete();
+        assertTrue(reactiveRedisTemplate.getExpire("users:queue:default:wait").block().getSeconds() > 1);
+        assertTrue(reactiveRedisTemplate.getExpire("users:queue:default:wait:1").block().getSeconds() > 0);
+    }
+
+    @Test
+    @DisplayName("나중에 만든 등급별 대기 key는 wait key의 남은 시간에 맞춰 함께 만료된다")
+    void tierKeyExpiresWithQueue() {
+        // given: 일반 사용자 등록 후 대기열 key의 남은 시간을 100초로 늘려 둠
+        userQueueService.registerWaitQueue("default", 100L).block();
+        reactiveRedisTemplate.expire("users:queue:default:wait", Duration.ofSeconds(100)).block();
+
+        // when: 처음으로 VIP 사용자 등록 (VIP 등급 key 생성)
+        userQueueService.registerWaitQueue("default", 200L, true).block();
+
+        // then: VIP 등급 key도 TTL(3초)이 아닌 wait key의 남은 시간으로 걸림
+        assertTrue(reactiveRedisTemplate.getExpire("users:queue:default:wait:0").block().getSeconds() > 3);
+    }
+
     @Test
     @DisplayName("TTL이 설정된 대기열의 남은 시간을 조회할 수 있다")
     void getQueueTTL() {
@@ -456,4 +630,243 @@ class UserQueueServiceTest {
             .verifyComplete();
     }
 
-}
\ No newline at end of file
+    @Test
+    @DisplayName("진입 허용은 등급별 가중치(VIP 3 : 일반 1)로 나뉘어 일반 사용자도 밀리지 않는다")
+    void allowUserIsWeightedFairAcrossTiers() {
+        ReflectionTestUtils.setField(userQueueService, "queueMaxCapacity", 0L);
+        try {
+            // given: 일반 40명이 먼저, VIP 40명이 나중에 등록
+            for (long userId = 100L; userId < 140L; userId++) {
+                userQueueService.registerWaitQueue("default", userId).block();
+            }
+            for (long userId = 200L; userId < 240L; userId++) {
+                userQueueService.registerWaitQueue("default", userId, "vip").block();
+            }
+
+            // when: 4명씩 10번 진입 허용
+            // then: 묶음마다 VIP 3명 + 일반 1명
+            for (int round = 0; round < 10; round++) {
+                assertEquals(4L, userQueueService.allowUser("default", 4L).block());
+                assertTrue(userQueueService.isAllowed("default", 100L + round).block());
+                assertFalse(userQueueService.isAllowed("default", 101L + round).block());
+                assertTrue(userQueueService.isAllowed("default", 200L + 3 * round + 2).block());
+                assertFalse(userQueueService.isAllowed("default", 200L + 3 * round + 3).block());
+            }
+
+            // then: 등급별 대기 인원과 등급 안 순위
+            StepVerifier.create(userQueueService.getStatistics("default"))
+                .expectNextMatches(statistics -> statistics.waitingCount() == 40L
+                    && statistics.waitingByTier().equals(Map.of("vip", 10L, "normal", 30L)))
+                .verifyComplete();
+            StepVerifier.create(userQueueService.getTierRank("default", 110L))
+                .expectNext(new TierRankResponse("normal", 4L, 1L))
+                .verifyComplete();
+            StepVerifier.create(userQueueService.getPosition("default", 110L))
+                .expectNext(11L)
+                .verifyComplete();
+        } finally {
+            ReflectionTestUtils.setField(userQueueService, "queueMaxCapacity", 5L);
+        }
+    }
+
+    // === 세션 lease 테스트 ===
+
+    @Test
+    @DisplayName("갱신되지 않은 세션 lease만 회수되고, 갱신된 사용자는 진입 상태를 유지한다")
+    void reclaimExpiredLeases() {
+        // given: 2명 진입 허용 후 101번의 마지막 갱신 시각을 10분 전으로 설정
+        userQueueService.registerWaitQueue("default", 100L).block();
+        userQueueService.registerWaitQueue("default", 101L).block();
+        userQueueService.allowUser("default", 2L).block();
+        reactiveRedisTemplate.opsForZSet()
+            .add("users:queue:default:proceed", "101", Instant.now().minusSeconds(600).getEpochSecond())
+            .block();
+        StepVerifier.create(userQueueService.renewLease("default", 100L))
+            .expectNext(true)
+            .verifyComplete();
+
+        // when: 만료된 lease 회수
+        StepVerifier.create(userQueueService.reclaimExpiredLeases("default"))
+            .expectNext(1L)
+            .verifyComplete();
+
+        // then: 101번은 회수되어 갱신할 수 없고, 100번은 진입 상태 유지
+        StepVerifier.create(userQueueService.isAllowed("default", 101L))
+            .expectNext(false)
+            .verifyComplete();
+        StepVerifier.create(userQueueService.renewLease("default", 101L))
+            .expectNext(false)
+            .verifyComplete();
+        StepVerifier.create(userQueueService.isAllowed("default", 100L))
+            .expectNext(true)
+            .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("세션 lease를 반납하면 자리가 비고, 진입 사용자가 없으면 회수 대상 대기열에서 빠진다")
+    void releaseLease() {
+        // given: 1명 진입 허용
+        userQueueService.registerWaitQueue("default", 100L).block();
+        userQueueService.allowUser("default", 1L).block();
+        StepVerifier.create(userQueueService.getLeasedQueues())
+            .expectNext("default")
+            .verifyComplete();
+
+        // when: lease 반납 후 회수
+        StepVerifier.create(userQueueService.releaseLease("default", 100L))
+            .expectNext(true)
+            .verifyComplete();
+        StepVerifier.create(userQueueService.reclaimExpiredLeases("default"))
+            .expectNext(0L)
+            .verifyComplete();
+
+        // then: 진입 인원 0명, 회수 대상 대기열 없음
+        StepVerifier.create(userQueueService.getProceedQueueSize("default"))
+            .expectNext(0L)
+            .verifyComplete();
+        StepVerifier.create(userQueueService.getLeasedQueues())
+            .verifyComplete();
+    }
+
+    // === 대기 사용자 liveness 테스트 ===
+
+    @Test
+    @DisplayName("마지막 활동이 오래된 대기 사용자만 정리되고, 순위 조회는 liveness를 갱신한다")
+    void pruneStaleWaiters() {
+        // given: 3명 등록 후 100, 101번의 마지막 활동 시각을 10분 전으로 설정
+        userQueueService.registerWaitQueue("default", 100L).block();
+        userQueueService.registerWaitQueue("default", 101L).block();
+        userQueueService.registerWaitQueue("default", 102L).block();
+        long tenMinutesAgo = Instant.now().minusSeconds(600).getEpochSecond();
+        reactiveRedisTemplate.opsForZSet().add("users:queue:default:seen", "100", tenMinutesAgo).block();
+        reactiveRedisTemplate.opsForZSet().add("users:queue:default:seen", "101", tenMinutesAgo).block();
+
+        // when: 101번만 순위 조회(활동) 후 정리
+        StepVerifier.create(userQueueService.getRank("default", 101L))
+            .expectNext(2L)
+            .verifyComplete();
+        StepVerifier.create(userQueueService.pruneStaleWaiters("default"))
+            .expectNext(1L)
+            .verifyComplete();
+
+        // then: 100번만 제거되어 101번이 1순위
+        StepVerifier.create(userQueueService.getRank("default", 100L))
+            .expectNext(-1L)
+            .verifyComplete();
+        StepVerifier.create(userQueueService.getRank("default", 101L))
+            .expectNext(1L)
+            .verifyComplete();
+        StepVerifier.create(userQueueService.getWaitQueueSize("default"))
+            .expectNext(2L)
+            .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("이탈 사용자 정리는 batch 크기를 넘어도 모두 제거하고, 대기열이 비면 registry에서 빠진다")
+    void pruneStaleWaitersInBatches() {
+        ReflectionTestUtils.setField(userQueueService, "livenessPruneBatchSize", 2);
+        try {
+            // given: 5명 모두 10분 전 마지막 활동
+            long tenMinutesAgo = Instant.now().minusSeconds(600).getEpochSecond();
+            for (long userId = 100L; userId < 105L; userId++) {
+                userQueueService.registerWaitQueue("default", userId).block();
+                reactiveRedisTemplate.opsForZSet().add("users:queue:default:seen", String.valueOf(userId), tenMinutesAgo).block();
+            }
+
+            // when: 정리 (batch 2명씩 3번)
+            StepVerifier.create(userQueueService.pruneStaleWaiters("default"))
+                .expectNext(5L)
+                .verifyComplete();
+
+            // then: 대기열과 registry 모두 비어 있음
+            StepVerifier.create(userQueueService.getWaitQueueSize("default"))
+                .expectNext(0L)
+                .verifyComplete();
+            StepVerifier.create(userQueueService.getActiveQueues())
+                .verifyComplete();
+        } finally {
+            ReflectionTestUtils.setField(userQueueService, "livenessPruneBatchSize", 500);
+        }
+    }
+
+    @Test
+    @DisplayName("일괄 등록 사용자는 정리가 꺼져 있으면 남고, 켜져 있으면 등록 시각을 첫 활동으로 보고 정리된다")
+    void pruneBatchRegisteredWaiters() {
+        // given: 3명 일괄 등록 후 100, 101번의 마지막 활동 시각을 10분 전으로 설정
+        userQueueService.registerWaitQueueBatch("default", List.of(
+                new BatchRegisterRequest.User(100L, null, null),
+                new BatchRegisterRequest.User(101L, null, null),
+                new BatchRegisterRequest.User(102L, null, null)))
+            .blockLast();
+        long tenMinutesAgo = Instant.now().minusSeconds(600).getEpochSecond();
+        reactiveRedisTemplate.opsForZSet().add("users:queue:default:seen", "100", tenMinutesAgo).block();
+        reactiveRedisTemplate.opsForZSet().add("users:queue:default:seen", "101", tenMinutesAgo).block();
+
+        // when: 정리가 꺼진 기본값(0)으로 정리
+        // then: 아무도 제거되지 않음
+        ReflectionTestUtils.setField(userQueueService, "livenessStaleSeconds", 0L);
+        try {
+            StepVerifier.create(userQueueService.pruneStaleWaiters("default"))
+                .expectNext(0L)
+                .verifyComplete();
+        } finally {
+            ReflectionTestUtils.setField(userQueueService, "livenessStaleSeconds", 120L);
+        }
+
+        // when: 정리를 켠 상태(test 프로필 120초)에서 방금 등록한 102번만 남기고 정리
+        // then: 100, 101번 제거, 102번은 1순위
+        StepVerifier.create(userQueueService.pruneStaleWaiters("default"))
+            .expectNext(2L)
+            .verifyComplete();
+        StepVerifier.create(userQueueService.getRank("default", 102L))
+            .expectNext(1L)
+            .verifyComplete();
+    }
+
+    // === watermark 진입 허용 모드 테스트 ===
+
+    @Test
+    @DisplayName("watermark 모드에서는 watermark 전진만으로 순서대로 진입 허용된다")
+    void watermarkAdmission() {
+        ReflectionTestUtils.setField(userQueueService, "admissionMode", "watermark");
+        try {
+            // given: 3명 등록 (순위 1, 2, 3)
+            StepVerifier.create(
+                userQueueService.registerWaitQueue("default", 100L)
+                    .then(userQueueService.registerWaitQueue("default", 101L))
+                    .then(userQueueService.registerWaitQueue("default", 102L))
+            ).expectNext(3L).verifyComplete();
+
+            // when: 2명 진입 허용
+            StepVerifier.create(userQueueService.allowUser("default", 2L))
+                .expectNext(2L)
+                .verifyComplete();
+
+            // then: 100, 101번은 진입 가능, 102번은 1순위로 대기
+            StepVerifier.create(userQueueService.isAllowed("default", 101L))
+                .expectNext(true)
+                .verifyComplete();
+            StepVerifier.create(userQueueService.isAllowed("default", 102L))
+                .expectNext(false)
+                .verifyComplete();
+            StepVerifier.create(userQueueService.getRank("default", 102L))
+                .expectNext(1L)
+                .verifyComplete();
+            StepVerifier.create(userQueueService.getWaitQueueSize("default"))
+                .expectNext(1L)
+                .verifyComplete();
+            StepVerifier.create(userQueueService.getProceedQueueSize("default"))
+                .expectNext(2L)
+                .verifyComplete();
+
+            // when: 대기 인원보다 많이 진입 허용
+            // then: 남은 1명만 진입
+            StepVerifier.create(userQueueService.allowUser("default", 5L))
+                .expectNext(1L)
+                .verifyComplete();
+        } finally {
+            ReflectionTestUtils.setField(userQueueService, "admissionMode", "proceed-set");
+        }
+    }
+
+}
@@ -0,0 +1,92 @@
+package com.nhn.flow.service;
+
+import com.nhn.flow.EmbeddedRedis;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.redis.connection.ReactiveRedisConnection;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+    "queue.mirror.enabled=true",
+    "queue.mirror.verify-interval-ms=50",
+    "queue.mirror.max-staleness-ms=300"
+})
+@Import(EmbeddedRedis.class)
+@ActiveProfiles("test")
+class WaitQueueMirrorTest {
+
+    @Autowired
+    private WaitQueueMirror waitQueueMirror;
+
+    @Autowired
+    private UserQueueService userQueueService;
+
+    @Autowired
+    private ReactiveRedisTemplate<String, String> reactiveRedisTemplate;
+
+    @BeforeEach
+    public void beforeEach() {
+        ReactiveRedisConnection connection = reactiveRedisTemplate.getConnectionFactory().getReactiveConnection();
+        connection.serverCommands().flushAll().block();
+    }
+
+    @Test
+    @DisplayName("동기화된 mirror는 순위를 응답하고, 등록 / 진입 허용 변경 feed를 따라간다")
+    void followChangeFeed() throws InterruptedException {
+        // given: 3명 대기
+        userQueueService.registerWaitQueue("mirror", 100L).block();
+        userQueueService.registerWaitQueue("mirror", 101L).block();
+        userQueueService.registerWaitQueue("mirror", 102L).block();
+
+        // when: 처음 조회 (cold → 동기화 시작)
+        // then: Redis에서 조회하도록 null, 동기화 후에는 mirror에서 응답
+        assertNull(waitQueueMirror.getRank("mirror", 102L));
+        assertEquals(3L, awaitRank("mirror", 102L, 3L));
+
+        // when: 1명 진입 허용, VIP 1명 등록
+        userQueueService.allowUser("mirror", 1L).block();
+        userQueueService.registerWaitQueue("mirror", 103L, true).block();
+
+        // then: 변경이 반영된 순위, 진입 허용된 사용자는 mirror에 없다
+        assertEquals(1L, awaitRank("mirror", 103L, 1L));
+        assertEquals(3L, awaitRank("mirror", 102L, 3L));
+        assertNull(waitQueueMirror.getRank("mirror", 100L));
+    }
+
+    @Test
+    @DisplayName("변경 feed가 유실되면 (Redis 버전을 따라잡지 못하면) 다시 동기화한다")
+    void resyncOnLostChange() throws InterruptedException {
+        // given: 동기화된 mirror
+        userQueueService.registerWaitQueue("mirror-lost", 100L).block();
+        userQueueService.registerWaitQueue("mirror-lost", 101L).block();
+        waitQueueMirror.getRank("mirror-lost", 101L);
+        assertEquals(2L, awaitRank("mirror-lost", 101L, 2L));
+
+        // when: feed 없이 wait queue를 바꾸고 버전만 올림 (발행 유실)
+        reactiveRedisTemplate.opsForZSet().remove("users:queue:mirror-lost:wait", "100").block();
+        reactiveRedisTemplate.opsForHash().increment("users:queue:mirror-lost:sequence", "_version", 1L).block();
+
+        // then: max-staleness 후 재동기화되어 바뀐 순위를 응답
+        assertEquals(1L, awaitRank("mirror-lost", 101L, 1L));
+    }
+
+    // mirror가 기대한 순위를 응답할 때까지 대기 (최대 2초)
+    private Long awaitRank(final String queue, final long userId, final long expected) throws InterruptedException {
+        Long rank = null;
+        for (int i = 0; i < 40; i++) {
+            rank = waitQueueMirror.getRank(queue, userId);
+            if (rank != null && rank == expected) {
+                return rank;
+            }
+            Thread.sleep(50);
+        }
+        return rank;
+    }
+}
@@ -0,0 +1,140 @@
+package com.nhn.flow.service;
+
+import com.nhn.flow.EmbeddedRedis;
+import com.nhn.flow.dto.WaitingRoomEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.redis.connection.ReactiveRedisConnection;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@Import(EmbeddedRedis.class)
+@ActiveProfiles("test")
+class WaitingRoomEventServiceTest {
+
+    @Autowired
+    private WaitingRoomEventService waitingRoomEventService;
+
+    @Autowired
+    private UserQueueService userQueueService;
+
+    @Autowired
+    private QueueReadService queueReadService;
+
+    @Autowired
+    private ReactiveRedisTemplate<String, String> reactiveRedisTemplate;
+
+    @BeforeEach
+    public void beforeEach() {
+        ReactiveRedisConnection connection = reactiveRedisTemplate.getConnectionFactory().getReactiveConnection();
+        connection.serverCommands().flushAll().block();
+    }
+
+    @Test
+    @DisplayName("연결 직후(순위 조회와 알림 구독 사이)에 진입 허용되어도 ALLOWED를 받는다")
+    void allowedDuringConnectIsNotLost() {
+        // given: 1명 대기 중
+        userQueueService.registerWaitQueue("room", 100L).block();
+
+        // when: 대기실 연결 직후 진입 허용 (아직 구독이 확인되지 않은 시점)
+        // then: 순위 이벤트 뒤에든 바로든 ALLOWED 수신 후 종료
+        StepVerifier.create(waitingRoomEventService.streamWaitingRoom("room", 100L))
+            .then(() -> userQueueService.allowUser("room", 1L).block())
+            .thenConsumeWhile(event -> "RANK".equals(event.event()))
+            .expectNextMatches(event -> "ALLOWED".equals(event.event()) && event.token() != null)
+            .expectComplete()
+            .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    @DisplayName("앞의 대기 사용자가 이탈자로 정리되면 순위를 다시 조회해 보낸다")
+    void rankRefreshedAfterPrune() {
+        // given: 3명 대기 중, 100번은 마지막 활동이 10분 전
+        userQueueService.registerWaitQueue("room", 100L).block();
+        userQueueService.registerWaitQueue("room", 101L).block();
+        userQueueService.registerWaitQueue("room", 102L).block();
+        long tenMinutesAgo = Instant.now().minusSeconds(600).getEpochSecond();
+        reactiveRedisTemplate.opsForZSet().add("users:queue:room:seen", "100", tenMinutesAgo).block();
+
+        // when: 102번 연결 중 이탈자 정리 (head는 그대로)
+        // then: 3순위 → 2순위
+        StepVerifier.create(waitingRoomEventService.streamWaitingRoom("room", 102L))
+            .expectNextMatches(event -> "RANK".equals(event.event()) && event.rank() == 3L)
+            .then(() -> userQueueService.pruneStaleWaiters("room").block())
+            .expectNextMatches(event -> "RANK".equals(event.event()) && event.rank() == 2L)
+            .thenCancel()
+            .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    @DisplayName("HEAD 알림 하나에 여러 연결이 순위를 다시 조회해도 Redis 조회는 묶어서 보낸다")
+    void coalesceRankRefreshOnHead() {
+        ReflectionTestUtils.setField(userQueueService, "queueMaxCapacity", 0L);
+        try {
+            // given: 20명 대기, 뒤의 19명이 대기실 연결 (연결마다 첫 RANK 이후 1건만 받음)
+            for (long userId = 100L; userId < 120L; userId++) {
+                userQueueService.registerWaitQueue("room", userId).block();
+            }
+            Flux<WaitingRoomEvent> streams = Flux.range(101, 19)
+                .flatMap(userId -> waitingRoomEventService.streamWaitingRoom("room", (long) userId).take(2));
+            long[] redisCallsBefore = new long[1];
+
+            // when: 모든 연결이 첫 RANK를 받은 뒤 1명 진입 허용 (HEAD 알림 1건)
+            // then: 19개 연결 모두 한 칸 앞당겨진 RANK 수신, 재조회는 묶여서 Redis 조회 수가 연결 수보다 훨씬 적다
+            StepVerifier.create(streams)
+                .expectNextCount(19)
+                .then(() -> {
+                    redisCallsBefore[0] = queueReadService.getMetrics().redisCalls();
+                    userQueueService.allowUser("room", 1L).block();
+                })
+                .thenConsumeWhile(event -> "RANK".equals(event.event()) && event.rank() == event.userId() - 100L)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+            assertTrue(queueReadService.getMetrics().redisCalls() - redisCallsBefore[0] <= 3);
+        } finally {
+            ReflectionTestUtils.setField(userQueueService, "queueMaxCapacity", 5L);
+        }
+    }
+
+    @Test
+    @DisplayName("이벤트에는 로그 ID가 붙고, Last-Event-ID로 재연결하면 끊긴 동안의 진입 허용을 받는다")
+    void resumeWithLastEventId() {
+        // given: 1명 대기 중, 첫 연결에서 RANK 수신 후 끊김
+        userQueueService.registerWaitQueue("room", 100L).block();
+        WaitingRoomEvent first = waitingRoomEventService.streamWaitingRoom("room", 100L).blockFirst(Duration.ofSeconds(5));
+        assertEquals("RANK", first.event());
+        assertNotNull(first.id());
+
+        // when: 끊긴 동안 진입 허용 후 Last-Event-ID로 재연결
+        userQueueService.allowUser("room", 1L).block();
+
+        // then: 이후 로그 ID로 ALLOWED 수신
+        StepVerifier.create(waitingRoomEventService.streamWaitingRoom("room", 100L, first.id()))
+            .expectNextMatches(event -> "ALLOWED".equals(event.event())
+                && QueueNotificationHub.compareEventIds(event.id(), first.id()) > 0)
+            .expectComplete()
+            .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    @DisplayName("대기 중이 아닌 사용자는 NOT_WAITING을 받고 연결이 종료된다")
+    void notWaiting() {
+        StepVerifier.create(waitingRoomEventService.streamWaitingRoom("room", 100L))
+            .expectNextMatches(event -> "NOT_WAITING".equals(event.event()))
+            .expectComplete()
+            .verify(Duration.ofSeconds(5));
+    }
+}